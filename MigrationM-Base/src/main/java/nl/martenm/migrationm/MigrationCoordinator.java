@@ -0,0 +1,165 @@
+package nl.martenm.migrationm;
+
+import nl.martenm.migrationm.api.DatabaseManager;
+import nl.martenm.migrationm.api.MigrationSession;
+import nl.martenm.migrationm.api.MigrationStatus;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.databasemanager.JdbcDatabaseManager;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static nl.martenm.migrationm.MigrationM.PREFIX;
+
+/**
+ * Migrates multiple programs that share a database, for example all plugins of a server.
+ *
+ * Instead of every program checking its own status, the coordinator reads the status of all programs that use
+ * the same tracking table in a single query and sets up the table once. The migrations of the programs are then
+ * executed concurrently on a bounded amount of threads. A program only reads its status again when another node
+ * held its migration lock or its history is incomplete, another node may have migrated it in the meantime.
+ */
+public class MigrationCoordinator {
+
+    private final Logger logger;
+    private final int threads;
+    private final Map<String, MigrationM> programs = new LinkedHashMap<>();
+
+    /**
+     * @param logger The logger for messages about the coordination, programs log to their own logger
+     * @param threads The maximum amount of programs that are migrated at the same time
+     */
+    public MigrationCoordinator(Logger logger, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The amount of threads should be at least 1.");
+        }
+        this.logger = logger;
+        this.threads = threads;
+    }
+
+    /**
+     * Registers a program. The migrations of the program should have been added already.
+     * @param migrationM The MigrationM of the program
+     * @return This coordinator
+     */
+    public MigrationCoordinator register(MigrationM migrationM) {
+        String name = migrationM.getInfo().getName();
+        if (programs.containsKey(name)) {
+            throw new IllegalArgumentException("The program " + name + " has already been registered.");
+        }
+
+        programs.put(name, migrationM);
+        return this;
+    }
+
+    /**
+     * Executes the migrations of all registered programs.
+     * A failing program does not stop the migrations of the other programs.
+     * @return Whether the migrations succeeded by program name, in the order the programs were registered
+     */
+    public Map<String, Boolean> migrate() {
+        long time = System.currentTimeMillis();
+        Map<String, MigrationStatus> statuses = new HashMap<>();
+
+        for (List<MigrationM> group : groupByTrackingTable()) {
+            statuses.putAll(readStatuses(group));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, programs.size())),
+                new MigrationThreadFactory("coordinator"));
+        Map<String, Future<Boolean>> futures = new LinkedHashMap<>();
+        Map<String, Boolean> results = new LinkedHashMap<>();
+
+        try {
+            for (MigrationM migrationM : programs.values()) {
+                String name = migrationM.getInfo().getName();
+                MigrationStatus status = statuses.get(name);
+                if (status == null) {
+                    // The status could not be read, the reason has already been logged.
+                    results.put(name, false);
+                    continue;
+                }
+
+                futures.put(name, executor.submit(() -> migrationM.run(status).isSuccessful()));
+            }
+
+            for (Map.Entry<String, Future<Boolean>> entry : futures.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException ex) {
+                    logger.warning(String.format(PREFIX + "Failed to migrate %s: %s", entry.getKey(), ex.getCause().getMessage()));
+                    ex.getCause().printStackTrace();
+                    results.put(entry.getKey(), false);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.warning(PREFIX + "Interrupted while migrating the programs.");
+        } finally {
+            executor.shutdown();
+        }
+
+        // Keep the registration order, programs that were not reached because of an interrupt have failed.
+        Map<String, Boolean> ordered = new LinkedHashMap<>();
+        for (String name : programs.keySet()) {
+            ordered.put(name, results.getOrDefault(name, false));
+        }
+
+        time = System.currentTimeMillis() - time;
+        long failed = ordered.values().stream().filter(success -> !success).count();
+        logger.info(String.format(PREFIX + "Migrated %s programs, %s failed. (Took: %.3f seconds)",
+                ordered.size(), failed, ((float) time) / 1000));
+        return ordered;
+    }
+
+    /**
+     * Groups the programs that store their status in the same tracking table.
+     */
+    private Collection<List<MigrationM>> groupByTrackingTable() {
+        return programs.values().stream()
+                .collect(Collectors.groupingBy(migrationM -> trackingTable(migrationM.getDatabaseManager()),
+                        LinkedHashMap::new, Collectors.toList()))
+                .values();
+    }
+
+    private static Object trackingTable(DatabaseManager manager) {
+        if (manager instanceof JdbcDatabaseManager) {
+            JdbcDatabaseManager jdbc = (JdbcDatabaseManager) manager;
+            return Arrays.asList(jdbc.getSource(), jdbc.getTableName());
+        }
+        return manager;
+    }
+
+    /**
+     * Reads the status of a group of programs with a single session and sets up the tracking table once.
+     * @return The statuses, empty if they could not be read
+     */
+    private Map<String, MigrationStatus> readStatuses(List<MigrationM> group) {
+        List<ProgramInfo> infos = group.stream().map(MigrationM::getInfo).collect(Collectors.toList());
+
+        try (MigrationSession session = group.get(0).getDatabaseManager().openSession()) {
+            Map<String, MigrationStatus> statuses = session.getStatuses(infos);
+
+            if (statuses.values().stream().anyMatch(status -> !status.isSetup())) {
+                logger.info(PREFIX + "No existing migration structure detected.");
+                logger.info(PREFIX + "Creating one now...");
+                session.setup();
+
+                statuses.replaceAll((name, status) -> new MigrationStatus(true, status.getLastMigration(), status.isHistoryComplete()));
+            }
+
+            return statuses;
+        } catch (MigrationException ex) {
+            logger.warning(String.format(PREFIX + "Could not read the status of %s: %s",
+                    infos.stream().map(ProgramInfo::getName).collect(Collectors.joining(", ")), ex.getMessage()));
+            ex.printStackTrace();
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -1,27 +1,49 @@
 package nl.martenm.migrationm;
 
+import nl.martenm.migrationm.api.AppliedMigration;
 import nl.martenm.migrationm.api.DatabaseManager;
 import nl.martenm.migrationm.api.InputStreamProvider;
 import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationInstrumentation;
+import nl.martenm.migrationm.api.MigrationListener;
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.MigrationPlan;
+import nl.martenm.migrationm.api.MigrationResult;
+import nl.martenm.migrationm.api.MigrationSession;
+import nl.martenm.migrationm.api.MigrationSource;
+import nl.martenm.migrationm.api.MigrationStatus;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.source.ClasspathMigrationSource;
+import nl.martenm.migrationm.source.DirectoryMigrationSource;
+import nl.martenm.migrationm.source.MigrationBundle;
+import nl.martenm.migrationm.source.MigrationIndex;
+import nl.martenm.migrationm.source.ZipMigrationSource;
+import nl.martenm.migrationm.util.MigrationNames;
 import nl.martenm.migrationm.util.ProgramInfo;
 
 import java.io.*;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.CodeSource;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 /**
  * The MigrationM class takes care of all the logic that comes with locating the migrations
  * and applying the right ones.
  *
  * It's able to load migrations on runtime from the JAR file.
- * Only migrations that are older then the last migration date are executed.
+ * Migrations that are missing from the history of the database are executed. Database managers without a
+ * history only execute the migrations that are newer than the last migration.
  */
 public class MigrationM {
 
@@ -32,10 +54,14 @@ public class MigrationM {
 
     private DatabaseManager databaseManager;
 
-    private LocalDateTime lastMigration = LocalDateTime.of(2020, 1, 1, 1, 1);
-    private LocalDateTime oldestMigration = LocalDateTime.of(2020, 1, 1, 1, 1);
+    private final MigrationRegistry migrations = new MigrationRegistry();
 
-    public List<Migration> migrations = new ArrayList<>();
+    private boolean failOnDrift = false;
+    private boolean verifyAllChecksums = false;
+    private int parallelism = 1;
+    private Duration lockTimeout = Duration.ofMinutes(30);
+    private final List<MigrationListener> listeners = new CopyOnWriteArrayList<>();
+    private MigrationInstrumentation instrumentation = MigrationInstrumentation.NONE;
 
     public MigrationM(ProgramInfo info, DatabaseManager databaseManager) {
         this.info = info;
@@ -54,43 +80,350 @@ public class MigrationM {
      * @return True if the migration was successfully executed.
      */
     public boolean migrate() {
-        if (!databaseManager.isSetup()) {
-            logger.info(PREFIX + "No existing migration structure detected.");
-            logger.info(PREFIX + "Creating one now...");
-            databaseManager.setup();
-        }
+        return run().isSuccessful();
+    }
+
+    /**
+     * Executes the migrations that have not been executed yet without blocking the calling thread.
+     * Use {@link #addListener(MigrationListener)} to follow the progress.
+     *
+     * @param executor The executor that executes the migrations, e.g. an async scheduler of the host
+     * @return A future that completes with the result once the run has ended. It does not complete exceptionally
+     *         when a migration fails, check {@link MigrationResult#isSuccessful()} instead.
+     */
+    public CompletableFuture<MigrationResult> migrateAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(this::run, executor);
+    }
 
-        List<Migration> requiredMigrations = getRequiredMigrations();
+    /**
+     * Executes the migrations that have not been executed yet.
+     * The status is read once the lock is held, a status read before could miss the migrations of another node.
+     * @return The result of the run
+     */
+    MigrationResult run() {
+        return run(null);
+    }
 
-        if (requiredMigrations.size() == 0) {
-            logger.info(PREFIX + "Found no new migrations.");
-            return true;
+    /**
+     * Executes the migrations that have not been executed yet.
+     * @param knownStatus The status read before the lock was acquired or NULL to read it once the lock is held
+     * @return The result of the run
+     */
+    MigrationResult run(MigrationStatus knownStatus) {
+        List<MigrationListener> notified = listeners;
+        if (instrumentation.isEnabled()) {
+            notified = new ArrayList<>(listeners);
+            notified.add(instrumentation);
         }
+        MigrationRecorder recorder = new MigrationRecorder(logger, notified);
 
-        logger.info(String.format(PREFIX + "Found %s migrations. Executing now..", requiredMigrations.size()));
-        long time = System.currentTimeMillis();
+        // Only one node migrates the program at a time. A single session is used for the whole run.
+        try (MigrationLock lock = databaseManager.acquireLock(info, lockTimeout);
+             MigrationSession session = databaseManager.openSession()) {
+            session.setListener(recorder);
+            session.setInstrumentation(instrumentation);
 
-        int i = 1;
-        for(Migration migration : requiredMigrations) {
-            logger.info(String.format(PREFIX + "Executing migration (%s/%s) : %s", i, requiredMigrations.size(), migration.getName()));
+            // The node that held the lock has probably executed the migrations already.
+            if (lock.isContended()) {
+                logger.info(PREFIX + "Another node was migrating, reading the status again.");
+            }
 
-            try {
-                databaseManager.executeMigration(info, migration);
-            } catch (Exception ex) {
-                logger.warning(String.format(PREFIX + "An error occurred while applying the migration %s.", migration.getName()));
-                logger.warning(String.format(PREFIX + "Exception: %s", ex.getMessage()));
-                ex.printStackTrace();
+            // With a complete history the pending migrations follow from the history, which is read under the lock.
+            // Only the last migration date of an older status could be outdated.
+            MigrationStatus status = knownStatus;
+            if (status == null || lock.isContended() || !status.isHistoryComplete()) {
+                status = session.getStatus(info);
+            }
+
+            if (!status.isSetup()) {
+                logger.info(PREFIX + "No existing migration structure detected.");
+                logger.info(PREFIX + "Creating one now...");
+                session.setup();
+            }
+
+            Map<String, String> applied = session.getChecksums(info);
+            if (!verifyChecksums(applied) && failOnDrift) {
                 logger.warning(PREFIX + "Aborting migrations...");
-                return false;
+                return recorder.complete(false, new MigrationException("Migrations have been changed after they were applied.", null));
+            }
+
+            List<Migration> requiredMigrations = getRequiredMigrations(session, status, applied.keySet());
+
+            if (requiredMigrations.size() == 0) {
+                logger.info(PREFIX + "Found no new migrations.");
+                return recorder.complete(true, null);
+            }
+
+            logger.info(String.format(PREFIX + "Found %s migrations. Executing now..", requiredMigrations.size()));
+            long time = System.currentTimeMillis();
+
+            if (parallelism > 1 && requiredMigrations.size() > 1) {
+                MigrationScheduler scheduler = new MigrationScheduler(info, databaseManager, parallelism, recorder, instrumentation);
+                if (!scheduler.run(requiredMigrations, status.getLastMigration(), session)) {
+                    logger.warning(PREFIX + "Aborting migrations...");
+                    return recorder.complete(false, null);
+                }
+
+                time = System.currentTimeMillis() - time;
+                logger.info(String.format(PREFIX + "Migrations executed successfully. (Took: %.3f seconds)", ((float) time) / 1000));
+                return recorder.complete(true, null);
+            }
+
+            int i = 1;
+            for(Migration migration : requiredMigrations) {
+                logger.info(String.format(PREFIX + "Executing migration (%s/%s) : %s", i, requiredMigrations.size(), migration.getName()));
+                recorder.onStart(migration, i, requiredMigrations.size());
+
+                try {
+                    session.executeMigration(info, migration);
+                } catch (Exception ex) {
+                    logger.warning(String.format(PREFIX + "An error occurred while applying the migration %s.", migration.getName()));
+                    logger.warning(String.format(PREFIX + "Exception: %s", ex.getMessage()));
+                    ex.printStackTrace();
+                    logger.warning(PREFIX + "Aborting migrations...");
+                    recorder.failed(migration, ex);
+                    return recorder.complete(false, ex);
+                }
+
+                recorder.finished(migration);
+                i++;
             }
 
-            i++;
+            time = System.currentTimeMillis() - time;
+
+            logger.info(String.format(PREFIX + "Migrations executed successfully. (Took: %.3f seconds)", ((float) time) / 1000));
+            return recorder.complete(true, null);
+        } catch (MigrationException ex) {
+            logger.warning(String.format(PREFIX + "Could not prepare the migrations: %s", ex.getMessage()));
+            ex.printStackTrace();
+            logger.warning(PREFIX + "Aborting migrations...");
+            return recorder.complete(false, ex);
+        }
+    }
+
+    /**
+     * Shows what {@link #migrate()} would execute without executing anything.
+     *
+     * Every statement of the pending migrations is explained by the database (e.g. EXPLAIN on MySQL) and the
+     * durations are estimated from the timings recorded in the history of this program.
+     * Use {@link MigrationPlan#describe()} for a readable report.
+     * @return The plan
+     * @throws MigrationException When the status or the migrations could not be read
+     */
+    public MigrationPlan plan() throws MigrationException {
+        try (MigrationSession session = databaseManager.openSession()) {
+            MigrationStatus status = session.getStatus(info);
+            List<AppliedMigration> history = status.isSetup() ? session.getHistory(info) : Collections.emptyList();
+
+            Set<String> applied = history.stream().map(AppliedMigration::getName).collect(Collectors.toSet());
+            List<MigrationPlan.Step> steps = new ArrayList<>();
+
+            // Without a complete history the plan can't tell old migrations from migrations that were merged late.
+            List<Migration> required = status.isHistoryComplete()
+                    ? getPendingMigrations(applied)
+                    : getRequiredMigrations(status.getLastMigration(), applied);
+            for (Migration migration : required) {
+                steps.add(new MigrationPlan.Step(migration, session.explain(migration)));
+            }
+
+            List<AppliedMigration> samples = history.stream()
+                    .filter(migration -> migration.getDuration() != null && migration.getStatements() >= 0 && migration.getRows() >= 0)
+                    .collect(Collectors.toList());
+            return new MigrationPlan(steps, samples.size(), millisPerUnit(samples));
+        }
+    }
+
+    /**
+     * The time a statement or row took on average in the applied migrations.
+     * @param samples The applied migrations with recorded timings
+     * @return The milliseconds per statement or row, NaN if there are no samples
+     */
+    private static double millisPerUnit(List<AppliedMigration> samples) {
+        long millis = 0;
+        long units = 0;
+        for (AppliedMigration migration : samples) {
+            millis += migration.getDuration().toMillis();
+            units += migration.getStatements() + migration.getRows();
+        }
+        return units == 0 ? Double.NaN : (double) millis / units;
+    }
+
+    /**
+     * Adds a listener that is informed about the progress of the migrations.
+     * @param listener The listener
+     */
+    public void addListener(MigrationListener listener) {
+        listeners.add(listener);
+    }
+
+    ProgramInfo getInfo() {
+        return info;
+    }
+
+    DatabaseManager getDatabaseManager() {
+        return databaseManager;
+    }
+
+    /**
+     * Creates a MigrationM for another database with the same settings, used for the shards of a {@link ShardedMigrationM}.
+     * Listeners and the instrumentation are not copied.
+     * @param info The info of the program, the name should be the same
+     * @param databaseManager The manager of the other database
+     * @param migrations The migrations
+     * @return The new MigrationM
+     */
+    MigrationM copy(ProgramInfo info, DatabaseManager databaseManager, Collection<Migration> migrations) {
+        MigrationM copy = new MigrationM(info, databaseManager);
+        copy.failOnDrift = failOnDrift;
+        copy.verifyAllChecksums = verifyAllChecksums;
+        copy.parallelism = parallelism;
+        copy.lockTimeout = lockTimeout;
+        migrations.forEach(copy::addMigration);
+        return copy;
+    }
+
+    /**
+     * Sets the instrumentation that receives detailed timings, down to single statements.
+     * Set it before loading the migrations to also receive the time it took to locate them.
+     * @param instrumentation The instrumentation, use {@link MigrationInstrumentation#combine(MigrationInstrumentation...)} for multiple
+     * @see nl.martenm.migrationm.instrumentation.JfrInstrumentation
+     * @see nl.martenm.migrationm.instrumentation.JmxInstrumentation
+     */
+    public void setInstrumentation(MigrationInstrumentation instrumentation) {
+        this.instrumentation = instrumentation == null ? MigrationInstrumentation.NONE : instrumentation;
+    }
+
+    /**
+     * Compares the checksums of the migrations that have already been executed with the checksums stored at the time.
+     * A difference means the migration file has been edited after it was applied.
+     * Only migrations with a known checksum are compared, unless all checksums should be verified.
+     * @param stored The stored checksums by migration name
+     * @return True if no changed migrations were found
+     */
+    private boolean verifyChecksums(Map<String, String> stored) {
+        if (stored.isEmpty()) {
+            return true;
         }
 
-        time = System.currentTimeMillis() - time;
+        List<Migration> applied = stored.entrySet().stream()
+                .filter(entry -> entry.getValue() != null)
+                .map(entry -> migrations.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .filter(migration -> verifyAllChecksums || migration.isChecksumKnown())
+                .collect(Collectors.toList());
+
+        computeChecksums(applied);
+
+        List<Migration> changed = applied.stream()
+                .filter(migration -> migration.getChecksum() != null)
+                .filter(migration -> !migration.getChecksum().equals(stored.get(migration.getName())))
+                .collect(Collectors.toList());
+
+        for (Migration migration : changed) {
+            logger.warning(String.format(PREFIX + "The migration %s has been changed after it was applied.", migration.getName()));
+        }
 
-        logger.info(String.format(PREFIX + "Migrations executed successfully. (Took: %.3f seconds)", ((float) time) / 1000));
-        return true;
+        return changed.isEmpty();
+    }
+
+    /**
+     * Computes the checksums of all migrations in parallel.
+     * Checksums that are already known (e.g. from a migration index) are not computed again.
+     */
+    public void computeChecksums() {
+        computeChecksums(migrations.all());
+    }
+
+    private void computeChecksums(Collection<Migration> migrations) {
+        migrations.parallelStream().forEach(Migration::getChecksum);
+    }
+
+    /**
+     * Aborts the migrations when an already applied migration has been changed.
+     * By default only a warning is logged.
+     * @param failOnDrift True if changed migrations should abort the migrations
+     */
+    public void setFailOnDrift(boolean failOnDrift) {
+        this.failOnDrift = failOnDrift;
+    }
+
+    /**
+     * Reads and hashes every applied migration on each run to find changed migrations.
+     * By default only the checksums that are known without reading the migration are compared, e.g. those of a
+     * migration index or bundle, so a start does not read all migrations again.
+     * @param verifyAllChecksums True to compute the checksums of all applied migrations
+     */
+    public void setVerifyAllChecksums(boolean verifyAllChecksums) {
+        this.verifyAllChecksums = verifyAllChecksums;
+    }
+
+    /**
+     * Sets how long to wait when another node (e.g. another server of a cluster) is migrating the same program.
+     * @param lockTimeout The maximum time to wait for the migration lock
+     */
+    public void setLockTimeout(Duration lockTimeout) {
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Sets the maximum amount of migrations that are executed at the same time.
+     * Only migrations that declare the tables they touch in their header are executed in parallel,
+     * every parallel migration uses its own connection.
+     * @param parallelism The maximum amount of parallel migrations, 1 executes the migrations one by one
+     * @see nl.martenm.migrationm.util.MigrationHeader
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism should be at least 1.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the migrations that need to be executed according to the status of the session.
+     *
+     * Once the history is complete every migration that is not in it is required, also when it is older than the
+     * last migration. The first time the history is incomplete the migrations up to the last migration that are
+     * missing from it are recorded as a baseline: they were executed before the history was kept.
+     * @param session The session of the run
+     * @param status The status of the program
+     * @param applied The names of the migrations in the history
+     * @return A sorted list of migrations that need to be executed
+     * @throws MigrationException When the baseline could not be recorded
+     */
+    private List<Migration> getRequiredMigrations(MigrationSession session, MigrationStatus status, Set<String> applied) throws MigrationException {
+        LocalDateTime last = status.getLastMigration();
+        if (status.isHistoryComplete()) {
+            return getPendingMigrations(applied);
+        }
+
+        if (last != null) {
+            List<Migration> baseline = migrations.upTo(last);
+            baseline.removeIf(migration -> applied.contains(migration.getName()));
+
+            if (session.baseline(info, baseline)) {
+                if (!baseline.isEmpty()) {
+                    logger.info(String.format(PREFIX + "Recorded %s migrations that were executed before the history was kept.", baseline.size()));
+                }
+
+                Set<String> recorded = new HashSet<>(applied);
+                baseline.forEach(migration -> recorded.add(migration.getName()));
+                return getPendingMigrations(recorded);
+            }
+        }
+
+        return getRequiredMigrations(last, applied);
+    }
+
+    /**
+     * Returns the migrations that are not in the history.
+     * @param applied The names of the migrations in the history
+     * @return A sorted list of migrations that need to be executed
+     */
+    List<Migration> getPendingMigrations(Set<String> applied) {
+        List<Migration> pending = migrations.all();
+        pending.removeIf(migration -> applied.contains(migration.getName()));
+        return pending;
     }
 
     /**
@@ -98,19 +431,32 @@ public class MigrationM {
      * @return A sorted list of migrations that need to be excuted.
      */
     List<Migration> getRequiredMigrations() {
-        lastMigration = databaseManager.lastMigration(info);
+        return getRequiredMigrations(databaseManager.lastMigration(info));
+    }
 
-        // If there has never been a migration this could return null.
-        // In that case default to an old date.
-        if (lastMigration == null) {
-            lastMigration = LocalDateTime.of(2000, 1, 1, 1, 1);
-        }
+    /**
+     * Returns a list of migrations that are newer than the last migration.
+     * @param last The LocalDateTime of the last migration or NULL if there has never been one
+     * @return A sorted list of migrations that need to be excuted.
+     */
+    List<Migration> getRequiredMigrations(LocalDateTime last) {
+        return getRequiredMigrations(last, Collections.emptySet());
+    }
 
-        List<Migration> required = migrations.stream()
-                .filter(migration -> migration.getDate().isAfter(lastMigration))
-                .collect(Collectors.toList());
+    /**
+     * Returns a list of migrations that are newer than the last migration and have not been executed yet.
+     * Parallel runs can execute newer migrations before the last migration has moved past them.
+     * @param last The LocalDateTime of the last migration or NULL if there has never been one
+     * @param applied The names of the migrations that have been executed
+     * @return A sorted list of migrations that need to be excuted.
+     */
+    List<Migration> getRequiredMigrations(LocalDateTime last, Set<String> applied) {
+        // If there has never been a migration the last migration is NULL and all migrations are required.
+        List<Migration> required = migrations.newerThan(last);
 
-        required.sort(Comparator.comparing(Migration::getDate));
+        if (!applied.isEmpty()) {
+            required.removeIf(migration -> applied.contains(migration.getName()));
+        }
 
         return required;
     }
@@ -132,21 +478,27 @@ public class MigrationM {
      * @param streamProvider The StreamProvider to access the migration
      */
     public void addMigration(String fileName, InputStreamProvider streamProvider) {
-        // Parse the date - Regex used to remove the extension.
-        // Expected format: yyyy-M-d-HH.mm-description.extension
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-M-d-HH.mm");
+        // Parse the date - Expected format: yyyy-M-d-HH.mm-description.extension
+        LocalDateTime date = MigrationNames.parseDate(fileName);
 
-        int cutOff = fileName.indexOf(".");
-        String dateString = fileName.substring(0, cutOff + 3);
-
-        LocalDateTime date = LocalDateTime.parse(dateString, formatter);
+        addMigration(new Migration(date, fileName, streamProvider));
+    }
 
-        // Updated the oldest migration that has been found yet.
-        if (date.isAfter(oldestMigration)) {
-            oldestMigration = date;
-        }
+    /**
+     * Adds a migration to the migration manager.
+     * @param migration The migration
+     * @throws IllegalArgumentException When a migration with the same name has already been added
+     */
+    public void addMigration(Migration migration) {
+        migrations.add(migration);
+    }
 
-        migrations.add(new Migration(date, fileName, streamProvider));
+    /**
+     * The migrations that have been added.
+     * @return The migrations sorted by date, changes to the list are not reflected
+     */
+    public List<Migration> getMigrations() {
+        return migrations.all();
     }
 
     /**
@@ -155,52 +507,129 @@ public class MigrationM {
      * @param mainClass The main class that can be used to reach the resources in the jar.
      */
     public void loadMigrations(String folder, Class mainClass) {
-        long time = System.currentTimeMillis();
+        ClassLoader classLoader = mainClass.getClassLoader();
 
-        /*
-            The following piece of code will extract the migrations from the folder specified.
-            The difficult part is the fact that the jar file is a zipped file. Thus it requires some
-            tricks to get the right file names.
-
-            Credits for the code: https://stackoverflow.com/users/3474/erickson
-            Stackoverflow issue: https://stackoverflow.com/questions/1429172/how-to-list-the-files-inside-a-jar-file
-         */
+        // A bundle compiled at build time contains the migrations split into statements.
+        URL bundle = classLoader.getResource(MigrationBundle.resourceName(folder));
+        if (bundle != null) {
+            try {
+                loadMigrations(MigrationBundle.load(bundle), "bundle:" + folder);
+                return;
+            } catch (IOException e) {
+                logger.warning(String.format(PREFIX + "Could not read the migration bundle, locating the migrations instead: %s", e.getMessage()));
+            }
+        }
 
-        List<String> files = new ArrayList<>();
+        // An index generated at build time saves locating the migrations.
+        InputStream index = classLoader.getResourceAsStream(MigrationIndex.resourceName(folder));
 
-        CodeSource src = mainClass.getProtectionDomain().getCodeSource();
-        if (src != null) {
+        if (index != null) {
             try {
-                URL jar = src.getLocation();
-                ZipInputStream zip = new ZipInputStream(jar.openStream());
-                while (true) {
-                    ZipEntry e = zip.getNextEntry();
-                    if (e == null)
-                        break;
-                    String name = e.getName();
-                    if (name.startsWith(folder + "/")) {
-                        if (name.equals(folder + "/")) {
-                            continue;
-                        }
-                        files.add(name);
-                    }
-                }
+                loadMigrations(MigrationIndex.read(index), new ClasspathMigrationSource(classLoader, folder));
+                return;
             } catch (IOException e) {
-                e.printStackTrace();
+                logger.warning(String.format(PREFIX + "Could not read the migration index, locating the migrations instead: %s", e.getMessage()));
             }
         }
 
+        loadMigrations(locateMigrations(folder, mainClass));
+    }
+
+    /**
+     * Loads all the migrations of a bundle.
+     * @param bundle The bundle of the migrations.
+     * @param description A description of where the bundle was loaded from.
+     */
+    public void loadMigrations(MigrationBundle bundle, String description) {
+        long start = System.nanoTime();
+
+        for (Migration migration : bundle.getMigrations()) {
+            addMigration(migration);
+        }
+
+        if (instrumentation.isEnabled()) {
+            instrumentation.onDiscovery(description, bundle.size(), System.nanoTime() - start);
+        }
+        logger.info(String.format(PREFIX + "Loaded %s migrations from the migration bundle.", bundle.size()));
+    }
+
+    /**
+     * Loads all the migrations listed in a precomputed index.
+     * @param index The index of the migrations.
+     * @param source The source used to open the migrations.
+     */
+    public void loadMigrations(MigrationIndex index, MigrationSource source) {
+        long start = System.nanoTime();
+
+        for (MigrationIndex.Entry entry : index.getEntries()) {
+            addMigration(new Migration(entry.getDate(), entry.getName(), source.provider(entry.getName()), entry.getChecksum()));
+        }
+
+        if (instrumentation.isEnabled()) {
+            instrumentation.onDiscovery(source.describe(), index.getEntries().size(), System.nanoTime() - start);
+        }
+        logger.info(String.format(PREFIX + "Loaded %s migrations from the migration index.", index.getEntries().size()));
+    }
+
+    /**
+     * Loads all the migrations from the migration source.
+     * Only the names are read, the migrations themselves are opened when they are executed.
+     * @param source The source that contains the migrations.
+     */
+    public void loadMigrations(MigrationSource source) {
+        long start = System.nanoTime();
+
+        List<String> files = new ArrayList<>();
+        try {
+            files = source.list();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
         if (files.size() == 0) {
-            logger.warning(String.format(PREFIX + "No migrations were added while searching the directory: %s", folder));
+            logger.warning(String.format(PREFIX + "No migrations were added while searching the directory: %s", source.describe()));
             return;
         }
 
         for (String fileName : files) {
-            addMigration(fileName.substring(folder.length() + 1), () -> mainClass.getClassLoader().getResourceAsStream(fileName));
+            addMigration(fileName, source.provider(fileName));
+        }
+
+        long time = System.nanoTime() - start;
+        if (instrumentation.isEnabled()) {
+            instrumentation.onDiscovery(source.describe(), files.size(), time);
+        }
+        logger.info(String.format(PREFIX + "Locating the migrations took %.3f seconds", time / 1_000_000_000f));
+    }
+
+    /**
+     * Finds the best way to list the migrations of the main class.
+     * JAR files are listed using their central directory and exploded class directories are walked directly.
+     * If neither is possible a plain classpath lookup is used.
+     * @param folder The folder that contains the migrations.
+     * @param mainClass The main class that can be used to reach the resources.
+     * @return The source of the migrations
+     */
+    static MigrationSource locateMigrations(String folder, Class mainClass) {
+        CodeSource src = mainClass.getProtectionDomain().getCodeSource();
+        if (src != null && src.getLocation() != null && src.getLocation().getProtocol().equals("file")) {
+            try {
+                Path location = Paths.get(src.getLocation().toURI());
+
+                if (Files.isRegularFile(location)) {
+                    return new ZipMigrationSource(location, folder);
+                }
+
+                // IDEs might put the resources in a different directory than the classes.
+                if (Files.isDirectory(location.resolve(folder))) {
+                    return new DirectoryMigrationSource(location.resolve(folder));
+                }
+            } catch (URISyntaxException | IllegalArgumentException ex) {
+                ex.printStackTrace();
+            }
         }
 
-        time = System.currentTimeMillis() - time;
-        logger.info(String.format(PREFIX + "Locating the migrations took %.3f seconds", ((float) time) / 1000));
+        return new ClasspathMigrationSource(mainClass.getClassLoader(), folder);
     }
 
     /**
@@ -0,0 +1,113 @@
+package nl.martenm.migrationm;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationListener;
+import nl.martenm.migrationm.api.MigrationResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static nl.martenm.migrationm.MigrationM.PREFIX;
+
+/**
+ * Keeps track of the timings and statements of a single run and passes the updates on to the listeners.
+ * The recorder itself is given to the sessions as listener so it receives the progress of the statements.
+ */
+class MigrationRecorder implements MigrationListener {
+
+    private final Logger logger;
+    private final List<MigrationListener> listeners;
+    private final long start = System.nanoTime();
+
+    private final Map<String, Long> startTimes = new ConcurrentHashMap<>();
+    private final Map<String, Long> statements = new ConcurrentHashMap<>();
+    private final List<MigrationResult.Entry> executed = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile Migration failedMigration;
+    private volatile Exception failure;
+
+    MigrationRecorder(Logger logger, List<MigrationListener> listeners) {
+        this.logger = logger;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void onStart(Migration migration, int index, int total) {
+        startTimes.put(migration.getName(), System.nanoTime());
+        notify(listener -> listener.onStart(migration, index, total));
+    }
+
+    @Override
+    public void onProgress(Migration migration, long count) {
+        statements.put(migration.getName(), count);
+        if (!listeners.isEmpty()) {
+            notify(listener -> listener.onProgress(migration, count));
+        }
+    }
+
+    /**
+     * Records a migration that has been executed successfully.
+     * @param migration The migration
+     */
+    void finished(Migration migration) {
+        Duration duration = Duration.ofNanos(System.nanoTime() - startTimes.getOrDefault(migration.getName(), start));
+        long count = statements.getOrDefault(migration.getName(), 0L);
+
+        executed.add(new MigrationResult.Entry(migration, duration, count));
+        notify(listener -> listener.onFinish(migration, duration, count));
+    }
+
+    /**
+     * Records a migration that failed. Only the first failure is kept.
+     * @param migration The migration
+     * @param exception The reason
+     */
+    synchronized void failed(Migration migration, Exception exception) {
+        if (failure == null) {
+            failedMigration = migration;
+            failure = exception;
+        }
+        notify(listener -> listener.onFailure(migration, exception));
+    }
+
+    /**
+     * Ends the run.
+     * @param successful True if all migrations have been executed
+     * @param exception The reason the run failed if no migration has been recorded as failed, or NULL
+     * @return The result of the run
+     */
+    MigrationResult complete(boolean successful, Exception exception) {
+        if (failure == null) {
+            failure = exception;
+        }
+
+        MigrationResult result;
+        synchronized (executed) {
+            result = new MigrationResult(successful, new ArrayList<>(executed), failedMigration,
+                    successful ? null : failure, Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        notify(listener -> listener.onComplete(result));
+        return result;
+    }
+
+    /**
+     * A listener should never be able to break the migrations.
+     */
+    private void notify(Consumer<MigrationListener> action) {
+        for (MigrationListener listener : listeners) {
+            try {
+                action.accept(listener);
+            } catch (RuntimeException ex) {
+                logger.warning(String.format(PREFIX + "A migration listener threw an exception: %s", ex.getMessage()));
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package nl.martenm.migrationm;
+
+import nl.martenm.migrationm.api.Migration;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The migrations of a program, sorted by date.
+ *
+ * Migrations are keyed by their epoch second and name, so finding the migrations newer than the last migration
+ * is a tail view instead of a filter and sort over all migrations. Migrations can be added from multiple threads.
+ *
+ * Migrations with the same date are ordered by name. Only two migrations with the same name are rejected.
+ */
+class MigrationRegistry {
+
+    private final ConcurrentNavigableMap<Key, Migration> byDate = new ConcurrentSkipListMap<>();
+    private final Map<String, Migration> byName = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a migration.
+     * @param migration The migration
+     * @throws IllegalArgumentException When a migration with the same name has already been added
+     */
+    void add(Migration migration) {
+        Migration existing = byName.putIfAbsent(migration.getName(), migration);
+        if (existing != null) {
+            throw new IllegalArgumentException("The migration " + migration.getName() + " has already been added.");
+        }
+
+        byDate.put(new Key(epochSecond(migration.getDate()), migration.getName()), migration);
+    }
+
+    /**
+     * Finds a migration by its file name.
+     * @param name The file name
+     * @return The migration or NULL
+     */
+    Migration get(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * All migrations.
+     * @return A sorted copy of the migrations
+     */
+    List<Migration> all() {
+        return new ArrayList<>(byDate.values());
+    }
+
+    /**
+     * The migrations that are newer than the given date.
+     * @param date The date or NULL for all migrations
+     * @return A sorted copy of the migrations
+     */
+    List<Migration> newerThan(LocalDateTime date) {
+        if (date == null) {
+            return all();
+        }
+        return new ArrayList<>(byDate.tailMap(after(date), true).values());
+    }
+
+    /**
+     * The migrations that are not newer than the given date.
+     * @param date The date
+     * @return A sorted copy of the migrations
+     */
+    List<Migration> upTo(LocalDateTime date) {
+        return new ArrayList<>(byDate.headMap(after(date), false).values());
+    }
+
+    /**
+     * The newest migration.
+     * @return The newest migration or NULL if there are none
+     */
+    Migration newest() {
+        Map.Entry<Key, Migration> entry = byDate.lastEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    int size() {
+        return byDate.size();
+    }
+
+    void clear() {
+        byDate.clear();
+        byName.clear();
+    }
+
+    private static long epochSecond(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * The key before every migration that is newer than the date, the empty name comes before every name.
+     */
+    private static Key after(LocalDateTime date) {
+        return new Key(epochSecond(date) + 1, "");
+    }
+
+    private static class Key implements Comparable<Key> {
+
+        private final long epochSecond;
+        private final String name;
+
+        Key(long epochSecond, String name) {
+            this.epochSecond = epochSecond;
+            this.name = name;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int compare = Long.compare(epochSecond, other.epochSecond);
+            return compare != 0 ? compare : name.compareTo(other.name);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && compareTo((Key) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(epochSecond) * 31 + name.hashCode();
+        }
+    }
+}
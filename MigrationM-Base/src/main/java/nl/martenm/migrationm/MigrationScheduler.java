@@ -0,0 +1,204 @@
+package nl.martenm.migrationm;
+
+import nl.martenm.migrationm.api.DatabaseManager;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationInstrumentation;
+import nl.martenm.migrationm.api.MigrationSession;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.MigrationHeader;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+import static nl.martenm.migrationm.MigrationM.PREFIX;
+
+/**
+ * Executes independent migrations in parallel.
+ *
+ * The migrations are turned into a DAG using their {@link MigrationHeader}. A migration depends on the migrations
+ * it declares and on every older migration it might conflict with. Migrations without declared tables conflict with
+ * everything, so files without a header still run one after another in date order.
+ *
+ * Every worker uses its own session (and thus its own connection). The first failure stops the scheduling of new
+ * migrations, the migrations that are already running are allowed to finish.
+ */
+class MigrationScheduler {
+
+    private final ProgramInfo info;
+    private final Logger logger;
+    private final DatabaseManager databaseManager;
+    private final int parallelism;
+    private final MigrationRecorder recorder;
+    private final MigrationInstrumentation instrumentation;
+
+    MigrationScheduler(ProgramInfo info, DatabaseManager databaseManager, int parallelism,
+                       MigrationRecorder recorder, MigrationInstrumentation instrumentation) {
+        this.info = info;
+        this.logger = info.getLogger();
+        this.databaseManager = databaseManager;
+        this.parallelism = parallelism;
+        this.recorder = recorder;
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Executes the migrations.
+     * @param migrations The migrations to execute, sorted by date
+     * @param lastMigration The last migration that was executed before this run or NULL
+     * @param session The session of the run, used as one of the workers. It is not closed.
+     * @return True if all migrations were executed successfully
+     * @throws MigrationException When the migrations could not be scheduled
+     */
+    boolean run(List<Migration> migrations, LocalDateTime lastMigration, MigrationSession session) throws MigrationException {
+        int count = migrations.size();
+        List<List<Integer>> dependents = new ArrayList<>(count);
+        int[] remaining = new int[count];
+        buildGraph(migrations, dependents, remaining);
+
+        // Always pick the oldest migration that is ready, this keeps the runs deterministic.
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < count; i++) {
+            if (remaining[i] == 0) ready.add(i);
+        }
+
+        boolean[] done = new boolean[count];
+        BlockingQueue<MigrationSession> idle = new LinkedBlockingQueue<>();
+        idle.add(session);
+        List<MigrationSession> opened = new CopyOnWriteArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new MigrationThreadFactory(info.getName()));
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+
+        int running = 0;
+        int started = 0;
+        Exception failure = null;
+
+        try {
+            while (true) {
+                while (failure == null && running < parallelism && !ready.isEmpty()) {
+                    int index = ready.poll();
+                    Migration migration = migrations.get(index);
+                    LocalDateTime watermark = watermark(migrations, done, index, lastMigration);
+
+                    started++;
+                    logger.info(String.format(PREFIX + "Executing migration (%s/%s) : %s", started, count, migration.getName()));
+                    recorder.onStart(migration, started, count);
+
+                    completion.submit(() -> {
+                        MigrationSession worker = idle.poll();
+                        if (worker == null) {
+                            worker = databaseManager.openSession();
+                            worker.setListener(recorder);
+                            worker.setInstrumentation(instrumentation);
+                            opened.add(worker);
+                        }
+
+                        try {
+                            worker.executeMigration(info, migration, watermark);
+                            recorder.finished(migration);
+                        } catch (Exception ex) {
+                            logger.warning(String.format(PREFIX + "An error occurred while applying the migration %s.", migration.getName()));
+                            recorder.failed(migration, ex);
+                            throw ex;
+                        } finally {
+                            idle.add(worker);
+                        }
+                        return index;
+                    });
+                    running++;
+                }
+
+                if (running == 0) {
+                    break;
+                }
+
+                Future<Integer> future = completion.take();
+                running--;
+
+                try {
+                    int index = future.get();
+                    done[index] = true;
+
+                    for (int dependent : dependents.get(index)) {
+                        if (--remaining[dependent] == 0) {
+                            ready.add(dependent);
+                        }
+                    }
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                        logger.warning(String.format(PREFIX + "Exception: %s", failure.getMessage()));
+                        failure.printStackTrace();
+                        logger.warning(PREFIX + "Waiting for the running migrations to finish...");
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MigrationException("Interrupted while executing the migrations.", ex);
+        } finally {
+            executor.shutdown();
+            for (MigrationSession worker : opened) {
+                worker.close();
+            }
+        }
+
+        return failure == null;
+    }
+
+    /**
+     * Creates the edges of the DAG. An edge always points from an older to a newer migration.
+     */
+    private void buildGraph(List<Migration> migrations, List<List<Integer>> dependents, int[] remaining) throws MigrationException {
+        int count = migrations.size();
+        List<MigrationHeader> headers = new ArrayList<>(count);
+        Map<String, Integer> positions = new HashMap<>();
+
+        for (int i = 0; i < count; i++) {
+            Migration migration = migrations.get(i);
+            try {
+                headers.add(MigrationHeader.read(migration));
+            } catch (IOException ex) {
+                throw new MigrationException("Failed to read the header of " + migration.getName(), ex);
+            }
+            positions.put(migration.getName(), i);
+            dependents.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < count; i++) {
+            MigrationHeader header = headers.get(i);
+
+            // Dependencies that are not part of this run have been executed before.
+            for (String dependency : header.getDependencies()) {
+                Integer position = positions.get(dependency);
+                if (position != null && position > i) {
+                    throw new MigrationException(String.format("The migration %s depends on the newer migration %s.",
+                            migrations.get(i).getName(), dependency), null);
+                }
+            }
+
+            for (int j = 0; j < i; j++) {
+                if (header.getDependencies().contains(migrations.get(j).getName()) || header.conflictsWith(headers.get(j))) {
+                    dependents.get(j).add(i);
+                    remaining[i]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * The date up to which all migrations have been executed once the given migration has been executed.
+     */
+    private LocalDateTime watermark(List<Migration> migrations, boolean[] done, int index, LocalDateTime lastMigration) {
+        int first = 0;
+        while (first < migrations.size() && (done[first] || first == index)) {
+            first++;
+        }
+
+        return first == 0 ? lastMigration : migrations.get(first - 1).getDate();
+    }
+}
@@ -0,0 +1,214 @@
+package nl.martenm.migrationm;
+
+import nl.martenm.migrationm.api.DatabaseManager;
+import nl.martenm.migrationm.api.JavaMigration;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationResult;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.DataFileReader;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static nl.martenm.migrationm.MigrationM.PREFIX;
+
+/**
+ * Migrates the same program on many databases, for example a schema per tenant or a database per shard.
+ *
+ * The migrations are loaded once by a template {@link MigrationM}, its database manager is not used. Every shard
+ * executes the same migrations: a file is split into statements by the first shard that executes it, the other
+ * shards execute the statements from memory. The shards are migrated concurrently on a bounded amount of threads,
+ * each with its own lock and tracking tables.
+ */
+public class ShardedMigrationM {
+
+    /**
+     * 32 MiB chars of statements are kept in memory by default.
+     */
+    public static final long DEFAULT_STATEMENT_CACHE_SIZE = 32L * 1024 * 1024;
+
+    private final MigrationM template;
+    private final Logger logger;
+    private final int threads;
+    private final Map<String, DatabaseManager> shards = new LinkedHashMap<>();
+
+    private boolean failFast = false;
+    private boolean virtualThreads = false;
+    private long statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
+    /**
+     * @param template The MigrationM the migrations have been added to, its settings are used by every shard
+     * @param threads The maximum amount of shards that are migrated at the same time
+     */
+    public ShardedMigrationM(MigrationM template, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The amount of threads should be at least 1.");
+        }
+        this.template = template;
+        this.logger = template.getInfo().getLogger();
+        this.threads = threads;
+    }
+
+    /**
+     * Adds a shard.
+     * @param name The name of the shard, used in the log and the results
+     * @param databaseManager The database manager of the shard
+     * @return This runner
+     */
+    public ShardedMigrationM addShard(String name, DatabaseManager databaseManager) {
+        if (shards.containsKey(name)) {
+            throw new IllegalArgumentException("The shard " + name + " has already been added.");
+        }
+
+        shards.put(name, databaseManager);
+        return this;
+    }
+
+    /**
+     * Stops starting new shards once a shard has failed. Shards that are being migrated are finished.
+     * By default every shard is migrated, regardless of the other shards.
+     * @param failFast True to skip the remaining shards after a failure
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Migrates every shard on its own virtual thread when the runtime supports them (Java 21+), the amount of
+     * shards that are migrated at the same time is still limited. Falls back to platform threads otherwise.
+     * @param virtualThreads True to use virtual threads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Sets the amount of chars of split statements that are kept in memory during a run.
+     * Migrations that don't fit anymore are read and split by every shard.
+     * @param statementCacheSize The amount of chars, 0 to read the migrations for every shard
+     */
+    public void setStatementCacheSize(long statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Migrates all shards.
+     * @return The result by shard name, in the order the shards were added. Skipped shards have failed with a
+     *         {@link MigrationException}
+     */
+    public Map<String, MigrationResult> migrate() {
+        long time = System.currentTimeMillis();
+
+        AtomicLong budget = new AtomicLong(statementCacheSize);
+        List<Migration> migrations = new ArrayList<>();
+        for (Migration migration : template.getMigrations()) {
+            boolean split = !(migration instanceof JavaMigration) && DataFileReader.Format.of(migration.getName()) == null;
+            migrations.add(split ? new SharedMigration(migration, budget) : migration);
+        }
+
+        ExecutorService executor = createExecutor();
+        Semaphore permits = new Semaphore(threads);
+        AtomicBoolean failed = new AtomicBoolean(false);
+        Map<String, Future<MigrationResult>> futures = new LinkedHashMap<>();
+        Map<String, MigrationResult> results = new LinkedHashMap<>();
+
+        try {
+            for (Map.Entry<String, DatabaseManager> shard : shards.entrySet()) {
+                futures.put(shard.getKey(), executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        if (failFast && failed.get()) {
+                            return skipped();
+                        }
+
+                        MigrationResult result = template.copy(shardInfo(shard.getKey()), shard.getValue(), migrations).run();
+                        if (!result.isSuccessful()) {
+                            failed.set(true);
+                        }
+                        return result;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            for (Map.Entry<String, Future<MigrationResult>> entry : futures.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException ex) {
+                    logger.warning(String.format(PREFIX + "Failed to migrate the shard %s: %s", entry.getKey(), ex.getCause().getMessage()));
+                    ex.getCause().printStackTrace();
+                    failed.set(true);
+                    Exception failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause()
+                            : new MigrationException(ex.getCause().getMessage(), ex.getCause());
+                    results.put(entry.getKey(), new MigrationResult(false, Collections.emptyList(), null, failure, Duration.ZERO));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.warning(PREFIX + "Interrupted while migrating the shards.");
+        } finally {
+            executor.shutdown();
+        }
+
+        // Keep the order of the shards, shards that were not reached because of an interrupt have been skipped.
+        Map<String, MigrationResult> ordered = new LinkedHashMap<>();
+        for (String name : shards.keySet()) {
+            ordered.put(name, results.getOrDefault(name, skipped()));
+        }
+
+        time = System.currentTimeMillis() - time;
+        long unsuccessful = ordered.values().stream().filter(result -> !result.isSuccessful()).count();
+        logger.info(String.format(PREFIX + "Migrated %s shards, %s failed or skipped. (Took: %.3f seconds)",
+                ordered.size(), unsuccessful, ((float) time) / 1000));
+        for (Map.Entry<String, MigrationResult> entry : ordered.entrySet()) {
+            if (!entry.getValue().isSuccessful()) {
+                Exception failure = entry.getValue().getFailure();
+                logger.warning(String.format(PREFIX + "Shard %s: %s", entry.getKey(), failure == null ? "failed" : failure.getMessage()));
+            }
+        }
+        return ordered;
+    }
+
+    private static MigrationResult skipped() {
+        return new MigrationResult(false, Collections.emptyList(), null,
+                new MigrationException("Skipped, the run stopped before this shard was migrated.", null), Duration.ZERO);
+    }
+
+    /**
+     * The program info of a shard, its messages are prefixed with the name of the shard.
+     */
+    private ProgramInfo shardInfo(String shard) {
+        ProgramInfo info = template.getInfo();
+        Logger parent = info.getLogger();
+
+        Logger logger = new Logger(null, null) {
+            @Override
+            public void log(LogRecord record) {
+                record.setMessage("[" + shard + "] " + record.getMessage());
+                parent.log(record);
+            }
+        };
+        logger.setParent(parent);
+
+        return new ProgramInfo(info.getName(), info.getVersion(), logger);
+    }
+
+    private ExecutorService createExecutor() {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                logger.info(PREFIX + "Virtual threads are not available, using platform threads.");
+            }
+        }
+
+        return Executors.newFixedThreadPool(Math.min(threads, Math.max(1, shards.size())), new MigrationThreadFactory("shard"));
+    }
+}
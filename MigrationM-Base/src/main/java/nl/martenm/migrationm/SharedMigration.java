@@ -0,0 +1,138 @@
+package nl.martenm.migrationm;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.util.SqlStatementReader;
+import nl.martenm.migrationm.util.StatementIterator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A migration that is executed on many shards by the {@link ShardedMigrationM}.
+ *
+ * The first shard that executes the migration splits it into statements, they are kept in memory and every
+ * other shard executes them without reading and splitting the file again. The cached statements of all
+ * migrations share a budget of chars, a migration that does not fit anymore is read by every shard as usual.
+ */
+class SharedMigration extends Migration {
+
+    /**
+     * Marks a migration that did not fit in the budget or could not be read.
+     */
+    private static final Statements NOT_CACHED = new Statements(new String[0], new int[0]);
+
+    private final Migration migration;
+    private final AtomicLong budget;
+
+    /**
+     * The statements by the flags of the dialect they have been split for.
+     */
+    private final Map<Integer, Statements> cache = new ConcurrentHashMap<>();
+
+    SharedMigration(Migration migration, AtomicLong budget) {
+        super(migration.getDate(), migration.getName(), migration::getInputStream);
+        this.migration = migration;
+        this.budget = budget;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return migration.getInputStream();
+    }
+
+    @Override
+    public String getChecksum() {
+        return migration.getChecksum();
+    }
+
+    @Override
+    public StatementIterator getStatements(boolean backslashEscapes, boolean hashComments, boolean dollarQuotes) {
+        // Statements that have been split at build time don't have to be kept.
+        StatementIterator bundled = migration.getStatements(backslashEscapes, hashComments, dollarQuotes);
+        if (bundled != null) {
+            return bundled;
+        }
+
+        int flags = (backslashEscapes ? 1 : 0) | (hashComments ? 2 : 0) | (dollarQuotes ? 4 : 0);
+        Statements statements = cache.computeIfAbsent(flags, key -> split(backslashEscapes, hashComments, dollarQuotes));
+        return statements == NOT_CACHED ? null : statements.iterator();
+    }
+
+    private Statements split(boolean backslashEscapes, boolean hashComments, boolean dollarQuotes) {
+        InputStream stream = migration.getInputStream();
+        if (stream == null) {
+            return NOT_CACHED;
+        }
+
+        List<String> statements = new ArrayList<>();
+        List<Integer> lines = new ArrayList<>();
+        long size = 0;
+
+        try (SqlStatementReader reader = new SqlStatementReader(stream)
+                .backslashEscapes(backslashEscapes)
+                .hashComments(hashComments)
+                .dollarQuotes(dollarQuotes)) {
+            String sql;
+            while ((sql = reader.next()) != null) {
+                if (budget.addAndGet(-sql.length()) < 0) {
+                    budget.addAndGet(size + sql.length());
+                    return NOT_CACHED;
+                }
+
+                size += sql.length();
+                statements.add(sql);
+                lines.add(reader.getStatementLine());
+            }
+        } catch (IOException ex) {
+            // The shard reads the file itself and reports the failure.
+            budget.addAndGet(size);
+            return NOT_CACHED;
+        }
+
+        int[] starts = new int[lines.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = lines.get(i);
+        }
+        return new Statements(statements.toArray(new String[0]), starts);
+    }
+
+    private static class Statements {
+
+        private final String[] statements;
+        private final int[] lines;
+
+        Statements(String[] statements, int[] lines) {
+            this.statements = statements;
+            this.lines = lines;
+        }
+
+        StatementIterator iterator() {
+            return new StatementIterator() {
+                private int index = -1;
+
+                @Override
+                public String next() {
+                    if (index + 1 >= statements.length) {
+                        return null;
+                    }
+                    return statements[++index];
+                }
+
+                @Override
+                public int getStatementLine() {
+                    return index < 0 ? 1 : lines[index];
+                }
+
+                @Override
+                public void close() {
+                    index = statements.length - 1;
+                }
+            };
+        }
+    }
+}
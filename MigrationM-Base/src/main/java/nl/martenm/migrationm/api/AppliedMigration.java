@@ -0,0 +1,81 @@
+package nl.martenm.migrationm.api;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * A migration as it was recorded in the history when it was executed.
+ */
+public class AppliedMigration {
+
+    private final String name;
+    private final LocalDateTime appliedAt;
+    private final String checksum;
+    private final Duration duration;
+    private final long statements;
+    private final long rows;
+    private final String node;
+
+    /**
+     * @param name The file name of the migration
+     * @param appliedAt When the migration was executed
+     * @param checksum The checksum of the migration or NULL
+     * @param duration How long the migration took or NULL if it was not recorded
+     * @param statements The amount of executed statements, -1 if it was not recorded
+     * @param rows The amount of affected rows, -1 if it was not recorded
+     * @param node The node that executed the migration or NULL
+     */
+    public AppliedMigration(String name, LocalDateTime appliedAt, String checksum, Duration duration, long statements, long rows, String node) {
+        this.name = name;
+        this.appliedAt = appliedAt;
+        this.checksum = checksum;
+        this.duration = duration;
+        this.statements = statements;
+        this.rows = rows;
+        this.node = node;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDateTime getAppliedAt() {
+        return appliedAt;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * How long the migration took.
+     * @return The duration or NULL for migrations that were executed before durations were recorded (the baseline)
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * The amount of statements that were executed.
+     * @return The amount of statements or -1 if it was not recorded
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * The amount of rows the migration affected.
+     * @return The amount of rows or -1 if it was not recorded
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * The node (e.g. pid@host) that executed the migration.
+     * @return The node or NULL if it was not recorded
+     */
+    public String getNode() {
+        return node;
+    }
+}
@@ -0,0 +1,70 @@
+package nl.martenm.migrationm.api;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Walks a table in chunks of an integer key (keyset pagination) and commits after every chunk, so a large
+ * data change never holds its locks and undo log for long.
+ *
+ * The last key of every committed chunk is stored as a checkpoint in the same transaction. When the migration
+ * is executed again after a failure or a restart, the backfill continues after that key.
+ * Work of the migration before the backfill is committed together with the first chunk.
+ */
+public interface Backfill {
+
+    /**
+     * Processes the rows of a chunk.
+     */
+    @FunctionalInterface
+    interface Chunk {
+
+        /**
+         * @param connection The connection of the migration, the chunk is committed afterwards
+         * @param from The first key of the chunk
+         * @param to The last key of the chunk (inclusive)
+         * @throws SQLException When the chunk failed, the backfill stops and the chunk is rolled back
+         */
+        void process(Connection connection, long from, long to) throws SQLException;
+    }
+
+    /**
+     * Sets the amount of rows per chunk, 1000 by default.
+     * @param rows The amount of rows
+     * @return This backfill
+     */
+    Backfill chunkSize(int rows);
+
+    /**
+     * Limits the rows per second, the backfill pauses between chunks when it is ahead. Unlimited by default.
+     * @param rows The maximum rows per second, 0 for no limit
+     * @return This backfill
+     */
+    Backfill rowsPerSecond(double rows);
+
+    /**
+     * Processes the table chunk by chunk.
+     * @param chunk What to do with every chunk
+     * @return The amount of rows that have been walked by this run
+     * @throws SQLException When a chunk failed
+     */
+    long run(Chunk chunk) throws SQLException;
+
+    /**
+     * Executes a statement for every chunk. The first and the last key of the chunk are the first two parameters,
+     * e.g. UPDATE items SET price_cents = price * 100 WHERE id BETWEEN ? AND ?
+     * @param sql The statement
+     * @return The amount of rows that have been walked by this run
+     * @throws SQLException When a chunk failed
+     */
+    default long update(String sql) throws SQLException {
+        return run((connection, from, to) -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, from);
+                statement.setLong(2, to);
+                statement.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package nl.martenm.migrationm.api;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Passes every call on to multiple instrumentations.
+ *
+ * @see MigrationInstrumentation#combine(MigrationInstrumentation...)
+ */
+class CompositeInstrumentation implements MigrationInstrumentation {
+
+    private final List<MigrationInstrumentation> instrumentations;
+
+    CompositeInstrumentation(List<MigrationInstrumentation> instrumentations) {
+        this.instrumentations = instrumentations;
+    }
+
+    @Override
+    public void onDiscovery(String source, int migrations, long nanos) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onDiscovery(source, migrations, nanos);
+        }
+    }
+
+    @Override
+    public void onStart(Migration migration, int index, int total) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onStart(migration, index, total);
+        }
+    }
+
+    @Override
+    public void onProgress(Migration migration, long statements) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onProgress(migration, statements);
+        }
+    }
+
+    @Override
+    public void onStatement(Migration migration, int line, String sql, long parseNanos, long executeNanos, long rows) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onStatement(migration, line, sql, parseNanos, executeNanos, rows);
+        }
+    }
+
+    @Override
+    public void onCommit(Migration migration, long nanos, long rows) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onCommit(migration, nanos, rows);
+        }
+    }
+
+    @Override
+    public void onRetry(Migration migration, boolean transaction, int attempt, long delayMillis) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onRetry(migration, transaction, attempt, delayMillis);
+        }
+    }
+
+    @Override
+    public void onFinish(Migration migration, Duration duration, long statements) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onFinish(migration, duration, statements);
+        }
+    }
+
+    @Override
+    public void onFailure(Migration migration, Exception exception) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onFailure(migration, exception);
+        }
+    }
+
+    @Override
+    public void onComplete(MigrationResult result) {
+        for (MigrationInstrumentation instrumentation : instrumentations) {
+            instrumentation.onComplete(result);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package nl.martenm.migrationm.api;
 import nl.martenm.migrationm.api.exceptions.MigrationException;
 import nl.martenm.migrationm.util.ProgramInfo;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 /**
@@ -42,4 +43,27 @@ public interface DatabaseManager {
      * @throws MigrationException A wrapper for exceptions thrown during the executing of the migration.
      */
     void executeMigration(ProgramInfo info, Migration migration) throws MigrationException;
+
+    /**
+     * Opens a session that is used for a whole migration run.
+     * By default the session simply calls the methods of this database manager.
+     * @return A new session that should be closed after use
+     * @throws MigrationException When the session could not be opened
+     */
+    default MigrationSession openSession() throws MigrationException {
+        return new DatabaseManagerSession(this);
+    }
+
+    /**
+     * Acquires the lock that makes sure only one node migrates the program at a time.
+     * When another node holds the lock this method waits until it is released or the timeout has passed.
+     * By default nothing is locked.
+     * @param info The program info
+     * @param timeout How long to wait for the lock
+     * @return The lock, it should be closed after the run
+     * @throws MigrationException When the lock could not be acquired in time
+     */
+    default MigrationLock acquireLock(ProgramInfo info, Duration timeout) throws MigrationException {
+        return MigrationLock.NONE;
+    }
 }
@@ -0,0 +1,37 @@
+package nl.martenm.migrationm.api;
+
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+/**
+ * The session used for database managers that do not provide their own.
+ * Every call is simply passed on to the database manager.
+ */
+class DatabaseManagerSession implements MigrationSession {
+
+    private final DatabaseManager databaseManager;
+
+    DatabaseManagerSession(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+    }
+
+    @Override
+    public MigrationStatus getStatus(ProgramInfo info) {
+        return new MigrationStatus(databaseManager.isSetup(), databaseManager.lastMigration(info));
+    }
+
+    @Override
+    public void setup() {
+        databaseManager.setup();
+    }
+
+    @Override
+    public void executeMigration(ProgramInfo info, Migration migration) throws MigrationException {
+        databaseManager.executeMigration(info, migration);
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
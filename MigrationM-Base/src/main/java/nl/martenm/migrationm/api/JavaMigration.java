@@ -0,0 +1,62 @@
+package nl.martenm.migrationm.api;
+
+import nl.martenm.migrationm.util.MigrationNames;
+
+import java.io.InputStream;
+
+/**
+ * A migration written in Java, for changes that are too large or too complex for a single SQL file.
+ *
+ * The name follows the same format as the file names of other migrations (yyyy-M-d-HH.mm-description) and
+ * determines when the migration is executed. Register it with {@link nl.martenm.migrationm.MigrationM#addMigration(Migration)}.
+ *
+ * <pre>
+ * public class BackfillPrices extends JavaMigration {
+ *     public BackfillPrices() {
+ *         super("2024-3-1-10.00-backfill_prices");
+ *     }
+ *
+ *     public void migrate(MigrationContext context) throws Exception {
+ *         context.backfill("items", "id")
+ *                 .rowsPerSecond(5000)
+ *                 .update("UPDATE items SET price_cents = price * 100 WHERE id BETWEEN ? AND ?");
+ *     }
+ * }
+ * </pre>
+ */
+public abstract class JavaMigration extends Migration {
+
+    /**
+     * @param name The name of the migration, starting with its date
+     */
+    protected JavaMigration(String name) {
+        this(name, null);
+    }
+
+    /**
+     * @param name The name of the migration, starting with its date
+     * @param checksum A checksum that changes when the migration changes, e.g. a version, or NULL
+     */
+    protected JavaMigration(String name, String checksum) {
+        super(MigrationNames.parseDate(name), name, null, checksum);
+    }
+
+    /**
+     * Executes the migration. Everything that is not committed (e.g. by a backfill) is committed afterwards,
+     * together with the migration history. When an exception is thrown the uncommitted work is rolled back.
+     *
+     * A migration that fails is executed again, only the chunks that a backfill has committed are skipped.
+     * @param context The connection and helpers of the migration
+     * @throws Exception When the migration failed
+     */
+    public abstract void migrate(MigrationContext context) throws Exception;
+
+    /**
+     * Java migrations have no contents.
+     * @return NULL
+     */
+    @Override
+    public InputStream getInputStream() {
+        return null;
+    }
+}
@@ -1,6 +1,14 @@
 package nl.martenm.migrationm.api;
 
+import nl.martenm.migrationm.util.Checksums;
+import nl.martenm.migrationm.util.Compression;
+import nl.martenm.migrationm.util.StatementIterator;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
 
 /**
@@ -15,6 +23,8 @@ public class Migration {
 
     private final InputStreamProvider provider;
 
+    private volatile String checksum;
+
     /**
      * Standard constructor for a migration.
      * @param date The date on which the migration was created.
@@ -22,9 +32,21 @@ public class Migration {
      * @param provider The provider that provides the InputStream of the migration.
      */
     public Migration(LocalDateTime date, String fileName, InputStreamProvider provider) {
+        this(date, fileName, provider, null);
+    }
+
+    /**
+     * Constructor for a migration of which the checksum is already known, for example from a migration index.
+     * @param date The date on which the migration was created.
+     * @param fileName The full file name of the migration.
+     * @param provider The provider that provides the InputStream of the migration.
+     * @param checksum The hex encoded SHA-256 checksum of the contents or NULL if unknown.
+     */
+    public Migration(LocalDateTime date, String fileName, InputStreamProvider provider, String checksum) {
         this.date = date;
         this.fileName = fileName;
         this.provider = provider;
+        this.checksum = checksum;
     }
 
     /**
@@ -45,9 +67,118 @@ public class Migration {
 
     /**
      * The InputStream of the migration. Loaded by the InputStreamProvider.
+     * A compressed migration (.gz) is decompressed while it is read, see {@link Compression}.
+     * If the checksum is not known yet it is computed while the stream is read.
      * @return The InputStream of the migration
      */
     public InputStream getInputStream() {
-        return this.provider.getInputStream();
+        InputStream stream = open();
+        if (checksum != null || stream == null) {
+            return stream;
+        }
+
+        return new ChecksumInputStream(stream);
+    }
+
+    /**
+     * The statements of this migration when they have been split at build time, see
+     * {@link nl.martenm.migrationm.source.MigrationBundle}. How a file is split depends on the SQL dialect.
+     * @param backslashEscapes True if a backslash escapes the next character inside quoted strings
+     * @param hashComments True if # starts a line comment
+     * @param dollarQuotes True if $$ and $tag$ start a quoted string
+     * @return The statements or NULL if the migration has to be split while it is read
+     */
+    public StatementIterator getStatements(boolean backslashEscapes, boolean hashComments, boolean dollarQuotes) {
+        return null;
+    }
+
+    /**
+     * The hex encoded SHA-256 checksum of the contents of this migration.
+     * The contents are only read if the checksum is not known yet and no stream has been fully read before.
+     * @return The checksum or NULL if the migration has no contents
+     */
+    public String getChecksum() {
+        if (checksum == null && provider != null) {
+            try (InputStream stream = open()) {
+                if (stream != null) {
+                    checksum = Checksums.sha256(stream);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to compute the checksum of " + fileName, ex);
+            }
+        }
+
+        return checksum;
+    }
+
+    /**
+     * True if the checksum is known without reading the contents, e.g. from a migration index or bundle, or because
+     * the contents have been read before.
+     * @return True if {@link #getChecksum()} is cheap
+     */
+    public boolean isChecksumKnown() {
+        return checksum != null;
+    }
+
+    private InputStream open() {
+        try {
+            return Compression.decompress(fileName, provider.getInputStream());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to decompress " + fileName, ex);
+        }
+    }
+
+    /**
+     * Digests the bytes that are read and stores the checksum once the end of the stream has been reached.
+     */
+    private class ChecksumInputStream extends FilterInputStream {
+
+        private final MessageDigest digest = Checksums.newDigest();
+        private boolean done = false;
+
+        ChecksumInputStream(InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value == -1) {
+                finish();
+            } else {
+                digest.update((byte) value);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read == -1) {
+                finish();
+            } else {
+                digest.update(bytes, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes can't be digested.
+            done = true;
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void finish() {
+            if (!done) {
+                done = true;
+                checksum = Checksums.toHex(digest.digest());
+            }
+        }
     }
 }
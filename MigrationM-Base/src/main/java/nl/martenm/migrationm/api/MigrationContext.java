@@ -0,0 +1,31 @@
+package nl.martenm.migrationm.api;
+
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.sql.Connection;
+
+/**
+ * What a {@link JavaMigration} can use while it is executed.
+ */
+public interface MigrationContext {
+
+    /**
+     * The connection of the migration. It is not in auto commit mode and should not be closed.
+     * @return The connection
+     */
+    Connection getConnection();
+
+    /**
+     * The program the migration belongs to.
+     * @return The program info
+     */
+    ProgramInfo getInfo();
+
+    /**
+     * Creates a backfill that walks a table in chunks of its key.
+     * @param table The table
+     * @param key An integer column with unique values, usually the primary key
+     * @return The backfill, it's started by {@link Backfill#run(Backfill.Chunk)}
+     */
+    Backfill backfill(String table, String key);
+}
@@ -0,0 +1,100 @@
+package nl.martenm.migrationm.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Receives detailed timings of a migration run, down to single statements.
+ *
+ * Besides the updates of a {@link MigrationListener} the instrumentation is told how long it took to locate the
+ * migrations, how long every statement took to parse and execute and how long the commit took.
+ * The statement methods are called on the hot path of a migration, so they should return quickly.
+ *
+ * Timings are only measured when {@link #isEnabled()} returns true, {@link #NONE} costs nothing.
+ *
+ * @see nl.martenm.migrationm.instrumentation.JfrInstrumentation
+ * @see nl.martenm.migrationm.instrumentation.JmxInstrumentation
+ */
+public interface MigrationInstrumentation extends MigrationListener {
+
+    /**
+     * Instrumentation that does nothing and is never called.
+     */
+    MigrationInstrumentation NONE = new MigrationInstrumentation() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Checked once per migration, the other methods are only called when this returns true.
+     * @return True if the instrumentation should receive the timings
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called after the migrations have been located.
+     * @param source A description of where the migrations were found
+     * @param migrations The amount of migrations that were found
+     * @param nanos How long locating the migrations took
+     */
+    default void onDiscovery(String source, int migrations, long nanos) {
+    }
+
+    /**
+     * Called after every statement of a migration.
+     *
+     * Statements that are batched are only sent to the database when the batch is full, their rows are
+     * reported together with the statement that completed the batch.
+     * @param migration The migration
+     * @param line The line the statement starts on
+     * @param sql The statement
+     * @param parseNanos How long reading the statement from the migration took
+     * @param executeNanos How long executing (or batching) the statement took
+     * @param rows The amount of rows that were affected
+     */
+    default void onStatement(Migration migration, int line, String sql, long parseNanos, long executeNanos, long rows) {
+    }
+
+    /**
+     * Called after the transaction of a migration has been committed.
+     * @param migration The migration
+     * @param nanos How long the commit took
+     * @param rows The amount of rows affected by the whole migration, including the last batch
+     */
+    default void onCommit(Migration migration, long nanos, long rows) {
+    }
+
+    /**
+     * Called before a statement or a whole migration is executed again after a transient failure, e.g. a deadlock.
+     * @param migration The migration
+     * @param transaction True if the transaction was rolled back and the migration is executed again,
+     *                    false if only the failed statement is executed again
+     * @param attempt The number of the retry, starting at 1
+     * @param delayMillis How long is waited before the retry
+     */
+    default void onRetry(Migration migration, boolean transaction, int attempt, long delayMillis) {
+    }
+
+    /**
+     * Combines multiple instrumentations, e.g. JFR and JMX.
+     * @param instrumentations The instrumentations
+     * @return An instrumentation that calls all enabled instrumentations
+     */
+    static MigrationInstrumentation combine(MigrationInstrumentation... instrumentations) {
+        List<MigrationInstrumentation> enabled = new ArrayList<>();
+        for (MigrationInstrumentation instrumentation : Arrays.asList(instrumentations)) {
+            if (instrumentation != null && instrumentation.isEnabled()) {
+                enabled.add(instrumentation);
+            }
+        }
+
+        if (enabled.isEmpty()) return NONE;
+        if (enabled.size() == 1) return enabled.get(0);
+        return new CompositeInstrumentation(enabled);
+    }
+}
@@ -0,0 +1,55 @@
+package nl.martenm.migrationm.api;
+
+import java.time.Duration;
+
+/**
+ * Receives updates while the migrations are executed, for example to show the progress of a long upgrade.
+ *
+ * When migrations are executed in parallel the methods can be called from multiple threads at the same time.
+ * The methods are called on the thread that executes the migration, so they should return quickly.
+ */
+public interface MigrationListener {
+
+    /**
+     * Called before a migration is executed.
+     * @param migration The migration
+     * @param index The position of the migration in this run, starting at 1
+     * @param total The amount of migrations in this run
+     */
+    default void onStart(Migration migration, int index, int total) {
+    }
+
+    /**
+     * Called after every statement of a migration.
+     * Database managers that don't report statements never call this method.
+     * CSV and TSV data migrations report their progress in rows, after every batch.
+     * @param migration The migration
+     * @param statements The amount of statements (or rows) that have been executed so far
+     */
+    default void onProgress(Migration migration, long statements) {
+    }
+
+    /**
+     * Called after a migration has been executed successfully.
+     * @param migration The migration
+     * @param duration How long the migration took
+     * @param statements The amount of statements of the migration
+     */
+    default void onFinish(Migration migration, Duration duration, long statements) {
+    }
+
+    /**
+     * Called when a migration failed. The migration has been rolled back.
+     * @param migration The migration
+     * @param exception The reason
+     */
+    default void onFailure(Migration migration, Exception exception) {
+    }
+
+    /**
+     * Called once the run has ended, successful or not.
+     * @param result The result of the run
+     */
+    default void onComplete(MigrationResult result) {
+    }
+}
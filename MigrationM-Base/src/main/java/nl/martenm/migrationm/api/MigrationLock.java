@@ -0,0 +1,37 @@
+package nl.martenm.migrationm.api;
+
+/**
+ * A lock that makes sure only one node migrates a program at a time, e.g. when a cluster starts at once.
+ * The lock is held for a whole migration run and released by closing it.
+ *
+ * @see DatabaseManager#acquireLock(nl.martenm.migrationm.util.ProgramInfo, java.time.Duration)
+ */
+public interface MigrationLock extends AutoCloseable {
+
+    /**
+     * A lock that does not lock anything, used by database managers that don't support locking.
+     */
+    MigrationLock NONE = new MigrationLock() {
+        @Override
+        public boolean isContended() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * True if another node held the lock when it was requested. That node has probably executed the
+     * migrations in the meantime, so a status read before the lock was acquired is outdated.
+     * @return True if the lock had to be waited for
+     */
+    boolean isContended();
+
+    /**
+     * Releases the lock.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,183 @@
+package nl.martenm.migrationm.api;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * What a migration run would execute, with estimates of its cost. Nothing has been executed to create it.
+ *
+ * Every statement costs one unit plus the amount of rows the database expects it to touch. The time per unit
+ * is measured from the migrations in the history, so durations are only known once migrations with recorded
+ * durations have been executed on the database.
+ */
+public class MigrationPlan {
+
+    private final List<Step> steps;
+    private final int samples;
+    private final double millisPerUnit;
+
+    /**
+     * @param steps The pending migrations in the order they would be executed
+     * @param samples The amount of applied migrations the time per unit is based on
+     * @param millisPerUnit The time a statement or row takes, NaN if there is no history to base it on
+     */
+    public MigrationPlan(List<Step> steps, int samples, double millisPerUnit) {
+        this.steps = steps;
+        this.samples = samples;
+        this.millisPerUnit = millisPerUnit;
+    }
+
+    /**
+     * The pending migrations.
+     * @return The steps in the order they would be executed
+     */
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * The amount of applied migrations the durations are based on.
+     * @return The amount of samples
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * True if durations can be estimated.
+     * @return False if there is no history with recorded durations
+     */
+    public boolean hasDurations() {
+        return !Double.isNaN(millisPerUnit);
+    }
+
+    /**
+     * The estimated duration of the whole run.
+     * @return The duration or NULL if the duration of one of the migrations can't be estimated
+     */
+    public Duration getEstimatedDuration() {
+        if (!hasDurations() || steps.stream().anyMatch(step -> step.getStatements().isEmpty())) {
+            return null;
+        }
+        return Duration.ofMillis((long) (steps.stream().mapToLong(Step::getUnits).sum() * millisPerUnit));
+    }
+
+    /**
+     * The estimated duration of a single migration.
+     * @param step The step
+     * @return The duration or NULL if it can't be estimated
+     */
+    public Duration getEstimatedDuration(Step step) {
+        if (!hasDurations() || step.getStatements().isEmpty()) {
+            return null;
+        }
+        return Duration.ofMillis((long) (step.getUnits() * millisPerUnit));
+    }
+
+    /**
+     * The estimated duration of a single statement.
+     * @param statement The statement
+     * @return The duration or NULL if it can't be estimated
+     */
+    public Duration getEstimatedDuration(StatementEstimate statement) {
+        return hasDurations() ? Duration.ofMillis((long) (units(statement) * millisPerUnit)) : null;
+    }
+
+    /**
+     * The statements that are expected to touch the most rows, statements without rows are left out.
+     * @param limit The maximum amount of statements
+     * @return The statements, most expensive first
+     */
+    public List<StatementEstimate> getDominantStatements(int limit) {
+        return steps.stream()
+                .flatMap(step -> step.getStatements().stream())
+                .filter(statement -> statement.getRows() > 0)
+                .sorted(Comparator.comparingLong(StatementEstimate::getRows).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A readable report of the plan, e.g. for the log before a maintenance window.
+     * @return The report
+     */
+    public String describe() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%d pending migrations, estimated duration %s", steps.size(), format(getEstimatedDuration())));
+        builder.append(hasDurations() ? String.format(" (based on %d applied migrations).", samples) : " (no history to base it on).");
+
+        for (Step step : steps) {
+            builder.append(String.format("%n  %s: %d statements, ~%d rows, %s",
+                    step.getMigration().getName(), step.getStatements().size(), step.getRows(), format(getEstimatedDuration(step))));
+        }
+
+        List<StatementEstimate> dominant = getDominantStatements(5);
+        if (!dominant.isEmpty()) {
+            builder.append(String.format("%nDominant statements:"));
+            for (StatementEstimate statement : dominant) {
+                builder.append(String.format("%n  %s:%d ~%d rows, %s: %s", statement.getMigration().getName(), statement.getLine(),
+                        statement.getRows(), format(getEstimatedDuration(statement)), abbreviate(statement.getSql())));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static long units(StatementEstimate statement) {
+        return 1 + Math.max(0, statement.getRows());
+    }
+
+    private static String format(Duration duration) {
+        if (duration == null) {
+            return "unknown";
+        }
+        return String.format(Locale.ROOT, "%.3f seconds", duration.toMillis() / 1000.0);
+    }
+
+    private static String abbreviate(String sql) {
+        String line = sql.replaceAll("\\s+", " ").trim();
+        return line.length() > 80 ? line.substring(0, 77) + "..." : line;
+    }
+
+    /**
+     * A migration that would be executed.
+     */
+    public static class Step {
+
+        private final Migration migration;
+        private final List<StatementEstimate> statements;
+
+        public Step(Migration migration, List<StatementEstimate> statements) {
+            this.migration = migration;
+            this.statements = statements;
+        }
+
+        public Migration getMigration() {
+            return migration;
+        }
+
+        /**
+         * The statements of the migration.
+         * @return The statements, empty if the database manager can't look into migrations
+         */
+        public List<StatementEstimate> getStatements() {
+            return Collections.unmodifiableList(statements);
+        }
+
+        /**
+         * The amount of rows the migration is expected to touch, statements that could not be estimated count as 0.
+         * @return The estimated rows
+         */
+        public long getRows() {
+            return statements.stream().mapToLong(statement -> Math.max(0, statement.getRows())).sum();
+        }
+
+        long getUnits() {
+            return statements.stream().mapToLong(MigrationPlan::units).sum();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package nl.martenm.migrationm.api;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a migration run.
+ */
+public class MigrationResult {
+
+    private final boolean successful;
+    private final List<Entry> executed;
+    private final Migration failedMigration;
+    private final Exception failure;
+    private final Duration duration;
+
+    public MigrationResult(boolean successful, List<Entry> executed, Migration failedMigration, Exception failure, Duration duration) {
+        this.successful = successful;
+        this.executed = executed;
+        this.failedMigration = failedMigration;
+        this.failure = failure;
+        this.duration = duration;
+    }
+
+    /**
+     * True if all required migrations have been executed.
+     * @return True if the run was successful
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    /**
+     * The migrations that have been executed successfully, in the order they finished.
+     * @return The executed migrations
+     */
+    public List<Entry> getExecuted() {
+        return Collections.unmodifiableList(executed);
+    }
+
+    /**
+     * The migration that failed and was rolled back.
+     * @return The failed migration or NULL if no migration failed (e.g. the run could not be prepared)
+     */
+    public Migration getFailedMigration() {
+        return failedMigration;
+    }
+
+    /**
+     * The reason the run failed.
+     * @return The exception or NULL if the run was successful
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * How long the whole run took.
+     * @return The duration
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * The total amount of statements of the executed migrations.
+     * @return The amount of statements
+     */
+    public long getStatementCount() {
+        return executed.stream().mapToLong(Entry::getStatements).sum();
+    }
+
+    /**
+     * A migration that has been executed.
+     */
+    public static class Entry {
+
+        private final Migration migration;
+        private final Duration duration;
+        private final long statements;
+
+        public Entry(Migration migration, Duration duration, long statements) {
+            this.migration = migration;
+            this.duration = duration;
+            this.statements = statements;
+        }
+
+        public Migration getMigration() {
+            return migration;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        /**
+         * The amount of statements of the migration.
+         * @return The amount of statements, 0 if the database manager does not report statements
+         */
+        public long getStatements() {
+            return statements;
+        }
+    }
+}
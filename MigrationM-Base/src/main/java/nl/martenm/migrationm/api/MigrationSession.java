@@ -0,0 +1,144 @@
+package nl.martenm.migrationm.api;
+
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A session holds on to the resources (e.g. a single database connection) that are required for a whole
+ * migration run. MigrationM opens one session per run instead of requesting a new connection for every step.
+ *
+ * Sessions are not thread-safe and should be closed when the run has finished.
+ */
+public interface MigrationSession extends AutoCloseable {
+
+    /**
+     * Reads whether the database has been setup and when the last migration was executed.
+     * @param info The program info
+     * @return The current status
+     * @throws MigrationException When the status could not be read
+     */
+    MigrationStatus getStatus(ProgramInfo info) throws MigrationException;
+
+    /**
+     * Reads the status of multiple programs that share the same tracking table.
+     * The default implementation reads the status of every program separately.
+     * @param programs The programs
+     * @return The status by program name
+     * @throws MigrationException When the statuses could not be read
+     */
+    default Map<String, MigrationStatus> getStatuses(Collection<ProgramInfo> programs) throws MigrationException {
+        Map<String, MigrationStatus> statuses = new HashMap<>();
+        for (ProgramInfo info : programs) {
+            statuses.put(info.getName(), getStatus(info));
+        }
+        return statuses;
+    }
+
+    /**
+     * Sets up the database in order to keep track of migrations.
+     * @throws MigrationException When the setup failed
+     */
+    void setup() throws MigrationException;
+
+    /**
+     * Executes a migration and records it as the last migration.
+     * In case the migration throws an error it's expected that that migration has been fully rolled back.
+     * @param info The program info
+     * @param migration The migration to be executed.
+     * @throws MigrationException A wrapper for exceptions thrown during the executing of the migration.
+     */
+    void executeMigration(ProgramInfo info, Migration migration) throws MigrationException;
+
+    /**
+     * Executes a migration and records the given watermark as the last migration.
+     * This is used when migrations are executed in parallel: the watermark is the date up to which every migration
+     * has been executed, which can be older than the migration itself. The stored last migration should never move back.
+     *
+     * The default implementation only supports a watermark that equals the date of the migration.
+     * @param info The program info
+     * @param migration The migration to be executed.
+     * @param lastMigration The watermark or NULL if no last migration should be recorded yet
+     * @throws MigrationException A wrapper for exceptions thrown during the executing of the migration.
+     */
+    default void executeMigration(ProgramInfo info, Migration migration, LocalDateTime lastMigration) throws MigrationException {
+        if (!migration.getDate().equals(lastMigration)) {
+            throw new MigrationException("The database manager does not support executing migrations in parallel.", null);
+        }
+
+        executeMigration(info, migration);
+    }
+
+    /**
+     * Gets the checksums that were stored when the migrations of the program were executed.
+     * Sessions that don't store checksums return an empty map.
+     * @param info The program info
+     * @return The checksums by migration name
+     * @throws MigrationException When the checksums could not be read
+     */
+    default Map<String, String> getChecksums(ProgramInfo info) throws MigrationException {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Records migrations that were executed before the history was kept, so the history becomes complete.
+     * Called once when {@link MigrationStatus#isHistoryComplete()} is false.
+     * @param info The program info
+     * @param migrations The migrations that are not in the history but have been executed according to the last migration
+     * @return True if the history is complete now, false if the session does not keep a history
+     * @throws MigrationException When the migrations could not be recorded
+     */
+    default boolean baseline(ProgramInfo info, Collection<Migration> migrations) throws MigrationException {
+        return false;
+    }
+
+    /**
+     * Reads the migrations of the program that have been executed, with the timings recorded at the time.
+     * Sessions that don't keep a history return an empty list.
+     * @param info The program info
+     * @return The applied migrations
+     * @throws MigrationException When the history could not be read
+     */
+    default List<AppliedMigration> getHistory(ProgramInfo info) throws MigrationException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Estimates the cost of every statement of a migration without executing it, e.g. using EXPLAIN.
+     * Sessions that can't look into migrations return an empty list.
+     * @param migration The migration
+     * @return The estimates in the order of the statements
+     * @throws MigrationException When the migration could not be read
+     */
+    default List<StatementEstimate> explain(Migration migration) throws MigrationException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Sets the listener that should be informed about the progress of the migrations executed by this session.
+     * Sessions that don't report their progress ignore the listener.
+     * @param listener The listener or NULL
+     */
+    default void setListener(MigrationListener listener) {
+    }
+
+    /**
+     * Sets the instrumentation that should receive the timings of the statements executed by this session.
+     * Sessions that don't measure their statements ignore the instrumentation.
+     * @param instrumentation The instrumentation, {@link MigrationInstrumentation#NONE} to disable it
+     */
+    default void setInstrumentation(MigrationInstrumentation instrumentation) {
+    }
+
+    /**
+     * Releases the resources held by this session.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,33 @@
+package nl.martenm.migrationm.api;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A place migrations can be loaded from, for example a folder inside a JAR file or a directory.
+ *
+ * Listing only returns the names of the migrations. The contents are opened lazily through the
+ * {@link InputStreamProvider}, so only migrations that are actually executed are ever read.
+ */
+public interface MigrationSource {
+
+    /**
+     * Lists the file names of the migrations in this source.
+     * @return The file names, without any folder in front of them
+     * @throws IOException When the source could not be read
+     */
+    List<String> list() throws IOException;
+
+    /**
+     * Provides access to a migration that was returned by {@link #list()}.
+     * @param fileName The file name of the migration
+     * @return The provider that opens the migration
+     */
+    InputStreamProvider provider(String fileName);
+
+    /**
+     * A description of the source that can be used in log messages.
+     * @return The description
+     */
+    String describe();
+}
@@ -0,0 +1,58 @@
+package nl.martenm.migrationm.api;
+
+import java.time.LocalDateTime;
+
+/**
+ * The state of the migration tracking for a single program.
+ */
+public class MigrationStatus {
+
+    private final boolean setup;
+    private final LocalDateTime lastMigration;
+    private final boolean historyComplete;
+
+    /**
+     * @param setup True if the database has been setup for keeping track of migrations.
+     * @param lastMigration The LocalDateTime of the last executed migration or NULL.
+     */
+    public MigrationStatus(boolean setup, LocalDateTime lastMigration) {
+        this(setup, lastMigration, false);
+    }
+
+    /**
+     * @param setup True if the database has been setup for keeping track of migrations.
+     * @param lastMigration The LocalDateTime of the last executed migration or NULL.
+     * @param historyComplete True if the history contains every migration that has been executed.
+     */
+    public MigrationStatus(boolean setup, LocalDateTime lastMigration, boolean historyComplete) {
+        this.setup = setup;
+        this.lastMigration = lastMigration;
+        this.historyComplete = historyComplete;
+    }
+
+    /**
+     * Checks if the database has been setup for keeping track of the migrations
+     * @return True if the setup has been performed.
+     */
+    public boolean isSetup() {
+        return setup;
+    }
+
+    /**
+     * Gets the LocalDateTime of the last migration that was executed.
+     * @return The LocalDateTime of the last migration or NULL
+     */
+    public LocalDateTime getLastMigration() {
+        return lastMigration;
+    }
+
+    /**
+     * True if the history contains a row for every migration that has been executed.
+     * Then every migration that is not in the history is pending, also when it is older than the last migration
+     * (e.g. a branch that was merged late). Otherwise only migrations newer than the last migration are pending.
+     * @return True if the history is complete
+     */
+    public boolean isHistoryComplete() {
+        return historyComplete;
+    }
+}
@@ -0,0 +1,56 @@
+package nl.martenm.migrationm.api;
+
+/**
+ * The estimated cost of a single statement of a migration that has not been executed yet.
+ *
+ * The estimate comes from the query planner of the database (e.g. EXPLAIN) or from the size of the table a
+ * statement rebuilds. Nothing is executed to produce it.
+ */
+public class StatementEstimate {
+
+    private final Migration migration;
+    private final int line;
+    private final String sql;
+    private final long rows;
+
+    /**
+     * @param migration The migration the statement belongs to
+     * @param line The line the statement starts on
+     * @param sql The statement
+     * @param rows The amount of rows the statement is expected to touch, -1 if the database could not tell
+     */
+    public StatementEstimate(Migration migration, int line, String sql, long rows) {
+        this.migration = migration;
+        this.line = line;
+        this.sql = sql;
+        this.rows = rows;
+    }
+
+    public Migration getMigration() {
+        return migration;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * The amount of rows the statement is expected to read or write.
+     * @return The estimated rows or -1 if unknown
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * True if the database could estimate the statement.
+     * @return True if the rows are known
+     */
+    public boolean isEstimated() {
+        return rows >= 0;
+    }
+}
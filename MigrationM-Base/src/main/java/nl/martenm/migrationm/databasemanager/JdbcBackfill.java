@@ -0,0 +1,154 @@
+package nl.martenm.migrationm.databasemanager;
+
+import nl.martenm.migrationm.api.Backfill;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static nl.martenm.migrationm.MigrationM.PREFIX;
+
+/**
+ * A {@link Backfill} that stores its progress in the checkpoint table of the session.
+ *
+ * The bounds of the next chunk are read with a single query on the key, which is a range scan of its index.
+ * The checkpoint is named after the migration, the table and the key, so a migration can run multiple backfills.
+ */
+class JdbcBackfill implements Backfill {
+
+    /**
+     * How often the progress is logged.
+     */
+    private static final long PROGRESS_INTERVAL = 10_000_000_000L;
+
+    private final JdbcMigrationSession session;
+    private final ProgramInfo info;
+    private final Migration migration;
+    private final String table;
+    private final String key;
+    private final String name;
+
+    private int chunkSize = 1000;
+    private double rowsPerSecond = 0;
+    private long rows = 0;
+
+    JdbcBackfill(JdbcMigrationSession session, ProgramInfo info, Migration migration, String table, String key) {
+        this.session = session;
+        this.info = info;
+        this.migration = migration;
+        this.table = table;
+        this.key = key;
+
+        String name = migration.getName() + "#" + table + "." + key;
+        this.name = name.length() > 255 ? name.substring(0, 255) : name;
+    }
+
+    @Override
+    public Backfill chunkSize(int rows) {
+        this.chunkSize = Math.max(1, rows);
+        return this;
+    }
+
+    @Override
+    public Backfill rowsPerSecond(double rows) {
+        this.rowsPerSecond = Math.max(0, rows);
+        return this;
+    }
+
+    @Override
+    public long run(Chunk chunk) throws SQLException {
+        Connection connection = session.connection;
+        String column = session.quoteIdentifier(key);
+        String bounds = String.format("SELECT MIN(%1$s), MAX(%1$s), COUNT(*) FROM (SELECT %1$s FROM %2$s%3$s ORDER BY %1$s LIMIT %4$d) chunk",
+                column, session.quoteIdentifier(table), "%s", chunkSize);
+
+        Long last = session.checkpoint(info, name);
+        if (last != null) {
+            info.getLogger().info(String.format(PREFIX + "Continuing the backfill of %s after %s = %d.", table, key, last));
+        }
+
+        long walked = 0;
+        long started = System.nanoTime();
+        long logged = started;
+
+        while (true) {
+            long from;
+            long to;
+            long count;
+            try (PreparedStatement statement = connection.prepareStatement(String.format(bounds, last == null ? "" : " WHERE " + column + " > ?"))) {
+                if (last != null) {
+                    statement.setLong(1, last);
+                }
+
+                try (ResultSet set = statement.executeQuery()) {
+                    set.next();
+                    count = set.getLong(3);
+                    from = set.getLong(1);
+                    to = set.getLong(2);
+                }
+            }
+
+            if (count == 0) {
+                break;
+            }
+
+            chunk.process(connection, from, to);
+            session.checkpoint(info, name, to);
+            connection.commit();
+
+            walked += count;
+            rows += count;
+            last = to;
+
+            long now = System.nanoTime();
+            if (now - logged >= PROGRESS_INTERVAL) {
+                logged = now;
+                info.getLogger().info(String.format(PREFIX + "Backfill of %s: %d rows up to %s = %d in %d seconds.",
+                        table, walked, key, to, (now - started) / 1_000_000_000));
+            }
+            if (session.listener != null) {
+                session.listener.onProgress(migration, rows);
+            }
+
+            if (count < chunkSize) {
+                break;
+            }
+
+            // Wait until the rows walked so far are within the limit.
+            if (rowsPerSecond > 0) {
+                long ahead = (long) (walked * 1000 / rowsPerSecond) - (System.nanoTime() - started) / 1_000_000;
+                if (ahead > 0) {
+                    try {
+                        Thread.sleep(ahead);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while backfilling " + table + ".", ex);
+                    }
+                }
+            }
+        }
+
+        info.getLogger().info(String.format(PREFIX + "Backfill of %s: %d rows in %.3f seconds.",
+                table, walked, (System.nanoTime() - started) / 1_000_000_000f));
+        return walked;
+    }
+
+    /**
+     * The name of the checkpoint of this backfill.
+     * @return The name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * The rows that have been walked by this run.
+     * @return The amount of rows
+     */
+    long getRows() {
+        return rows;
+    }
+}
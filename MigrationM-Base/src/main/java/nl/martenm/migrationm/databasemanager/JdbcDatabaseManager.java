@@ -0,0 +1,269 @@
+package nl.martenm.migrationm.databasemanager;
+
+import nl.martenm.migrationm.api.DatabaseManager;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.MigrationSession;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Base class for database managers that work with a JDBC DataSource.
+ *
+ * Tables:
+ *   migrations
+ *      program (VARCHAR) (KEY) - version (VARCHAR(12)) - last_migration TIMESTAMP - baseline_at TIMESTAMP
+ *   migrations_history
+ *      program (VARCHAR) (KEY) - name (VARCHAR) (KEY) - checksum (CHAR(64)) - applied_at TIMESTAMP
+ *      - duration_ms (BIGINT) - statements (BIGINT) - row_count (BIGINT) - node (VARCHAR)
+ *   migrations_checkpoints
+ *      program (VARCHAR) (KEY) - name (VARCHAR) (KEY) - position (BIGINT)
+ *   migrations_lock (only used by engines without advisory locks)
+ *      name (VARCHAR) (KEY) - owner (VARCHAR) - expires_at (BIGINT)
+ *
+ * All work is done by a {@link JdbcMigrationSession} that holds a single connection.
+ * The single step methods of the {@link DatabaseManager} open a short lived session.
+ */
+public abstract class JdbcDatabaseManager implements DatabaseManager {
+
+    private final DataSource source;
+    private final String tableName;
+
+    private int batchSize = 1000;
+    private int dataCommitSize = 0;
+    private String node = null;
+    private Duration leaseDuration = Duration.ofSeconds(60);
+    private RetryPolicy retryPolicy = null;
+
+    protected JdbcDatabaseManager(DataSource source, String tableName) {
+        this.source = source;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Creates the session for the connection.
+     * @param connection The connection that should be used for the whole session
+     * @return The session
+     */
+    protected abstract JdbcMigrationSession createSession(Connection connection);
+
+    /**
+     * The retry policy of this engine, used unless another one is set with {@link #setRetryPolicy(RetryPolicy)}.
+     * @return The standard policy by default, which retries the transaction on SQLState class 40
+     */
+    protected RetryPolicy createRetryPolicy() {
+        return RetryPolicy.standard();
+    }
+
+    /**
+     * Acquires the migration lock on its own connection, the lock owns the connection from then on.
+     * By default a lease row in the lock table is used, engines with advisory locks should use those instead.
+     * @param connection The connection for the lock
+     * @param info The program info
+     * @param timeout How long to wait for the lock
+     * @return The lock
+     * @throws SQLException When the lock could not be requested
+     * @throws MigrationException When the lock could not be acquired in time
+     */
+    protected MigrationLock createLock(Connection connection, ProgramInfo info, Duration timeout) throws SQLException, MigrationException {
+        String owner = UUID.randomUUID() + " " + getNode();
+        return LeaseLock.acquire(connection, getLockTableName(), info.getName(), owner.substring(0, Math.min(255, owner.length())),
+                leaseDuration, timeout, info.getLogger());
+    }
+
+    @Override
+    public JdbcMigrationSession openSession() throws MigrationException {
+        return createSession(connect());
+    }
+
+    @Override
+    public MigrationLock acquireLock(ProgramInfo info, Duration timeout) throws MigrationException {
+        Connection connection = connect();
+        try {
+            return createLock(connection, info, timeout);
+        } catch (SQLException ex) {
+            close(connection, ex);
+            throw new MigrationException("Failed to acquire the migration lock. Original message: " + ex.getMessage(), ex);
+        } catch (MigrationException | RuntimeException ex) {
+            close(connection, ex);
+            throw ex;
+        }
+    }
+
+    private void close(Connection connection, Exception cause) {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    private Connection connect() throws MigrationException {
+        try {
+            return source.getConnection();
+        } catch (SQLException ex) {
+            throw new MigrationException("Failed to get a connection from the datasource. Original message: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public LocalDateTime lastMigration(ProgramInfo info) {
+        try (MigrationSession session = openSession()) {
+            return session.getStatus(info).getLastMigration();
+        } catch (MigrationException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isSetup() {
+        try (JdbcMigrationSession session = openSession()) {
+            return session.tableExists(tableName) && session.tableExists(getHistoryTableName())
+                    && session.tableExists(getCheckpointTableName());
+        } catch (MigrationException | SQLException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public void setup() {
+        try (MigrationSession session = openSession()) {
+            session.setup();
+        } catch (MigrationException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public void executeMigration(ProgramInfo info, Migration migration) throws MigrationException {
+        try (MigrationSession session = openSession()) {
+            session.executeMigration(info, migration);
+        }
+    }
+
+    /**
+     * Sets the maximum amount of similar statements that are sent to the database as one batch.
+     * Runs of statements that only differ in their literals (e.g. single-row INSERTs) are batched automatically.
+     * @param batchSize The batch size, a value below 2 disables batching
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets after how many rows a CSV or TSV data migration commits. By default a data migration is loaded in a
+     * single transaction like every other migration, so a failure leaves nothing behind.
+     * Committing in chunks keeps the undo log small for very large files. The committed position is stored as a
+     * checkpoint, a failed load resumes after the last committed chunk.
+     * @param dataCommitSize The amount of rows per commit, 0 to load the whole file in one transaction
+     */
+    public void setDataCommitSize(int dataCommitSize) {
+        this.dataCommitSize = dataCommitSize;
+    }
+
+    public int getDataCommitSize() {
+        return dataCommitSize;
+    }
+
+    /**
+     * Sets how long the lease of the migration lock is valid without being renewed. The holder renews it three
+     * times per duration, when the holder crashes the next node takes over after at most this duration.
+     * Only used by engines without advisory locks.
+     * @param leaseDuration The lease duration, at least one second
+     */
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    /**
+     * Sets which transient failures, like deadlocks and lock wait timeouts, are retried instead of failing the migration.
+     * @param retryPolicy The policy, {@link RetryPolicy#none()} to never retry
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * The retry policy, its counters tell how often migrations have been retried.
+     * @return The policy set with {@link #setRetryPolicy(RetryPolicy)} or the default policy of the engine
+     */
+    public RetryPolicy getRetryPolicy() {
+        if (retryPolicy == null) {
+            retryPolicy = createRetryPolicy();
+        }
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the name of this node in the migration history, e.g. the name of a server in a cluster.
+     * @param node The name, at most 255 characters
+     */
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    /**
+     * The name of this node in the migration history.
+     * @return The name set with {@link #setNode(String)} or pid@host of this JVM
+     */
+    public String getNode() {
+        if (node == null) {
+            node = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return node;
+    }
+
+    /**
+     * The name of the table that keeps track of the migrations.
+     * @return The table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * The name of the table that stores a row for every executed migration.
+     * @return The table name
+     */
+    public String getHistoryTableName() {
+        return tableName + "_history";
+    }
+
+    /**
+     * The name of the table that holds the lease of the migration lock.
+     * @return The table name
+     */
+    public String getLockTableName() {
+        return tableName + "_lock";
+    }
+
+    /**
+     * The name of the table that stores how far a failed migration got on engines where DDL commits implicitly.
+     * @return The table name
+     */
+    public String getCheckpointTableName() {
+        return tableName + "_checkpoints";
+    }
+
+    public DataSource getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,65 @@
+package nl.martenm.migrationm.databasemanager;
+
+import nl.martenm.migrationm.api.Backfill;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationContext;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The context of a Java migration executed by a {@link JdbcMigrationSession}.
+ */
+class JdbcMigrationContext implements MigrationContext {
+
+    private final JdbcMigrationSession session;
+    private final ProgramInfo info;
+    private final Migration migration;
+
+    private final List<JdbcBackfill> backfills = new ArrayList<>();
+
+    JdbcMigrationContext(JdbcMigrationSession session, ProgramInfo info, Migration migration) {
+        this.session = session;
+        this.info = info;
+        this.migration = migration;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return session.connection;
+    }
+
+    @Override
+    public ProgramInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public Backfill backfill(String table, String key) {
+        JdbcBackfill backfill = new JdbcBackfill(session, info, migration, table, key);
+        backfills.add(backfill);
+        return backfill;
+    }
+
+    /**
+     * The backfills that have been created, their checkpoints are removed once the migration has succeeded.
+     * @return The backfills
+     */
+    List<JdbcBackfill> getBackfills() {
+        return backfills;
+    }
+
+    /**
+     * The amount of rows that the backfills have walked.
+     * @return The amount of rows
+     */
+    long getRows() {
+        long rows = 0;
+        for (JdbcBackfill backfill : backfills) {
+            rows += backfill.getRows();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,1183 @@
+package nl.martenm.migrationm.databasemanager;
+
+import nl.martenm.migrationm.api.AppliedMigration;
+import nl.martenm.migrationm.api.JavaMigration;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationInstrumentation;
+import nl.martenm.migrationm.api.MigrationListener;
+import nl.martenm.migrationm.api.MigrationSession;
+import nl.martenm.migrationm.api.MigrationStatus;
+import nl.martenm.migrationm.api.StatementEstimate;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.Backoff;
+import nl.martenm.migrationm.util.DataFileReader;
+import nl.martenm.migrationm.util.MigrationNames;
+import nl.martenm.migrationm.util.ProgramInfo;
+import nl.martenm.migrationm.util.SqlStatementReader;
+import nl.martenm.migrationm.util.StatementBatcher;
+import nl.martenm.migrationm.util.StatementIterator;
+
+import java.io.IOException;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static nl.martenm.migrationm.MigrationM.PREFIX;
+
+/**
+ * A migration session that uses one JDBC connection for the whole run.
+ *
+ * Subclasses provide the parts that differ between database engines, like checking if the tracking table
+ * exists and updating the last migration.
+ */
+public abstract class JdbcMigrationSession implements MigrationSession {
+
+    /**
+     * Statements that rebuild a whole table, their cost is the size of the table.
+     */
+    private static final Pattern REBUILT_TABLE = Pattern.compile(
+            "^\\s*(?:ALTER\\s+(?:ONLINE\\s+|IGNORE\\s+)?TABLE|OPTIMIZE\\s+TABLE|CREATE\\s+(?:UNIQUE\\s+|FULLTEXT\\s+|SPATIAL\\s+)?INDEX\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?\\S+\\s+ON)\\s+([`\"\\w.$]+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern DATA_MANIPULATION = Pattern.compile(
+            "^\\s*(?:INSERT|REPLACE|UPDATE|DELETE|SELECT|WITH)\\b", Pattern.CASE_INSENSITIVE);
+
+    protected final JdbcDatabaseManager manager;
+    protected final Connection connection;
+    protected final String tableName;
+    protected final String historyTableName;
+    protected final String checkpointTableName;
+
+    protected MigrationListener listener;
+    protected MigrationInstrumentation instrumentation = MigrationInstrumentation.NONE;
+
+    /**
+     * The retries of the migration that is being executed.
+     */
+    private Backoff retries;
+
+    protected JdbcMigrationSession(JdbcDatabaseManager manager, Connection connection) {
+        this.manager = manager;
+        this.connection = connection;
+        this.tableName = manager.getTableName();
+        this.historyTableName = manager.getHistoryTableName();
+        this.checkpointTableName = manager.getCheckpointTableName();
+    }
+
+    /**
+     * Checks if a table exists.
+     * @param table The name of the table
+     * @return True if the table exists
+     * @throws SQLException When the check failed
+     */
+    protected abstract boolean tableExists(String table) throws SQLException;
+
+    /**
+     * Stores the date of the last migration. Called in the same transaction as the migration itself.
+     * When migrations run in parallel the updates can arrive out of order, the stored date should never move back.
+     * A new row should set baseline_at, the history of a program that starts with it is complete.
+     * @param info The program info
+     * @param localDateTime The date of the migration
+     * @throws SQLException When the update failed
+     */
+    protected abstract void updateLastMigration(ProgramInfo info, LocalDateTime localDateTime) throws SQLException;
+
+    /**
+     * True if a backslash escapes the next character in string literals (MySQL).
+     * @return False by default
+     */
+    protected boolean backslashEscapes() {
+        return false;
+    }
+
+    /**
+     * True if "text" is a string literal instead of a quoted identifier (MySQL).
+     * @return False by default
+     */
+    protected boolean doubleQuotedStrings() {
+        return false;
+    }
+
+    /**
+     * True if # starts a line comment (MySQL).
+     * @return False by default
+     */
+    protected boolean hashComments() {
+        return false;
+    }
+
+    /**
+     * True if $$ and $tag$ start a quoted string, like the function bodies of PostgreSQL.
+     * @return False by default
+     */
+    protected boolean dollarQuotes() {
+        return false;
+    }
+
+    /**
+     * True if some statements commit the open transaction by themselves, like DDL on MySQL.
+     * Only then checkpoints are kept: a rollback can't undo those statements, so a failed migration
+     * resumes after the last of them instead of executing the whole file again.
+     * @return False by default, every migration is a single transaction
+     */
+    protected boolean implicitCommits() {
+        return false;
+    }
+
+    /**
+     * True if the statement commits the open transaction by itself.
+     * Only called when {@link #implicitCommits()} returns true.
+     * @param sql The statement
+     * @return False by default
+     */
+    protected boolean commitsImplicitly(String sql) {
+        return false;
+    }
+
+    /**
+     * True if the statement is executed by {@link #executeStatement(ProgramInfo, Migration, String)} instead of
+     * being sent to the database as is, e.g. an online schema change.
+     * @param sql The statement
+     * @return False by default
+     */
+    protected boolean executesItself(String sql) {
+        return false;
+    }
+
+    /**
+     * Executes a statement for which {@link #executesItself(String)} returned true.
+     * The statements before it have been sent to the database already.
+     * @param info The program info
+     * @param migration The migration of the statement
+     * @param sql The statement
+     * @return The amount of changed rows
+     * @throws SQLException When the statement failed
+     */
+    protected long executeStatement(ProgramInfo info, Migration migration, String sql) throws SQLException {
+        throw new SQLException("The statement can't be executed by the session: " + sql);
+    }
+
+    /**
+     * True if the transaction is still intact after a statement failed with an error that the retry policy retries
+     * as a statement. Engines where a setting decides what is rolled back should check it here, otherwise the
+     * whole migration is retried.
+     * @param ex The failure
+     * @return True by default
+     */
+    protected boolean keepsTransaction(SQLException ex) {
+        return true;
+    }
+
+    /**
+     * Quotes a table or column name of a data migration.
+     * @param identifier The name
+     * @return The name in double quotes by default
+     */
+    protected String quoteIdentifier(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Creates the batcher that executes the statements of a migration.
+     * @return A {@link StatementBatcher} on the connection of this session by default
+     */
+    protected StatementBatcher createBatcher() {
+        return new StatementBatcher(connection, manager.getBatchSize(), doubleQuotedStrings(), backslashEscapes());
+    }
+
+    /**
+     * The amount of rows a single INSERT of a data migration should contain.
+     * Engines that don't execute batches natively are faster with multi-row INSERTs.
+     * @param columns The amount of columns of the data file
+     * @return 1 by default, every row is a batched execution of the same prepared statement
+     */
+    protected int rowsPerInsert(int columns) {
+        return 1;
+    }
+
+    @Override
+    public MigrationStatus getStatus(ProgramInfo info) throws MigrationException {
+        // Optimistically read the tracking tables, that's a single round trip once the setup has been done.
+        try (PreparedStatement statement = connection.prepareStatement(String.format(
+                "SELECT (SELECT last_migration FROM %1$s WHERE program = ?) AS last_migration," +
+                " (SELECT baseline_at FROM %1$s WHERE program = ?) AS baseline_at," +
+                " (SELECT COUNT(node) FROM %2$s WHERE 1 = 0) AS history," +
+                " (SELECT COUNT(*) FROM %3$s WHERE 1 = 0) AS checkpoints", tableName, historyTableName, checkpointTableName))) {
+
+            statement.setString(1, info.getName());
+            statement.setString(2, info.getName());
+
+            try (ResultSet set = statement.executeQuery()) {
+                set.next();
+                return readStatus(set);
+            }
+        } catch (SQLException ex) {
+            try {
+                // Older setups don't have all tables or columns yet, the last migration should not be lost.
+                if (!tableExists(tableName)) {
+                    return new MigrationStatus(false, null);
+                }
+
+                try (PreparedStatement statement = connection.prepareStatement(
+                        String.format("SELECT last_migration FROM %s WHERE program = ?", tableName))) {
+                    statement.setString(1, info.getName());
+                    return new MigrationStatus(false, readLastMigration(statement));
+                }
+            } catch (SQLException throwable) {
+                ex.addSuppressed(throwable);
+            }
+
+            throw new MigrationException("Failed to read the migration status. Original message: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Map<String, MigrationStatus> getStatuses(Collection<ProgramInfo> programs) throws MigrationException {
+        if (programs.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        StringJoiner placeholders = new StringJoiner(", ");
+        for (int i = 0; i < programs.size(); i++) {
+            placeholders.add("?");
+        }
+
+        // The sub queries fail when a table is missing, then every program is checked on its own.
+        Map<String, MigrationStatus> statuses = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(String.format(
+                "SELECT program, last_migration, baseline_at FROM %s WHERE program IN (%s)" +
+                " AND (SELECT COUNT(node) FROM %s WHERE 1 = 0) = 0 AND (SELECT COUNT(*) FROM %s WHERE 1 = 0) = 0",
+                tableName, placeholders, historyTableName, checkpointTableName))) {
+
+            int index = 1;
+            for (ProgramInfo info : programs) {
+                statement.setString(index++, info.getName());
+            }
+
+            try (ResultSet set = statement.executeQuery()) {
+                while (set.next()) {
+                    statuses.put(set.getString("program"), readStatus(set));
+                }
+            }
+        } catch (SQLException ex) {
+            return MigrationSession.super.getStatuses(programs);
+        }
+
+        for (ProgramInfo info : programs) {
+            statuses.putIfAbsent(info.getName(), new MigrationStatus(true, null, true));
+        }
+        return statuses;
+    }
+
+    /**
+     * A program without a row has never executed a migration, so its history is complete as well.
+     */
+    private MigrationStatus readStatus(ResultSet set) throws SQLException {
+        Timestamp last = set.getTimestamp("last_migration");
+        Timestamp baseline = set.getTimestamp("baseline_at");
+        return new MigrationStatus(true, last == null ? null : last.toLocalDateTime(), last == null || baseline != null);
+    }
+
+    private LocalDateTime readLastMigration(PreparedStatement statement) throws SQLException {
+        try (ResultSet set = statement.executeQuery()) {
+            if (set.next()) {
+                Timestamp timestamp = set.getTimestamp("last_migration");
+                return timestamp == null ? null : timestamp.toLocalDateTime();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setup() throws MigrationException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format("CREATE TABLE IF NOT EXISTS %s (" +
+                    "program VARCHAR(64) PRIMARY KEY," +
+                    "version VARCHAR(12) NOT NULL," +
+                    "last_migration TIMESTAMP NOT NULL," +
+                    "baseline_at TIMESTAMP NULL" +
+                    ")", tableName));
+
+            statement.execute(String.format("CREATE TABLE IF NOT EXISTS %s (" +
+                    "program VARCHAR(64) NOT NULL," +
+                    "name VARCHAR(255) NOT NULL," +
+                    "checksum CHAR(64)," +
+                    "applied_at TIMESTAMP NOT NULL," +
+                    "duration_ms BIGINT," +
+                    "statements BIGINT," +
+                    "row_count BIGINT," +
+                    "node VARCHAR(255)," +
+                    "PRIMARY KEY (program, name)" +
+                    ")", historyTableName));
+
+            // Tables of older versions don't have every column yet.
+            addColumn(statement, tableName, "baseline_at", "TIMESTAMP NULL");
+            addColumn(statement, historyTableName, "duration_ms", "BIGINT");
+            addColumn(statement, historyTableName, "statements", "BIGINT");
+            addColumn(statement, historyTableName, "row_count", "BIGINT");
+            addColumn(statement, historyTableName, "node", "VARCHAR(255)");
+
+            statement.execute(String.format("CREATE TABLE IF NOT EXISTS %s (" +
+                    "program VARCHAR(64) NOT NULL," +
+                    "name VARCHAR(255) NOT NULL," +
+                    "position BIGINT NOT NULL," +
+                    "PRIMARY KEY (program, name)" +
+                    ")", checkpointTableName));
+        } catch (SQLException ex) {
+            throw new MigrationException("Failed to setup the migration tables. Original message: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Adds a column to a table that was created by an older version.
+     * @param statement The statement used by the setup
+     * @param table The table
+     * @param column The column
+     * @param type The type of the column
+     * @throws SQLException When the column could not be added
+     */
+    protected void addColumn(Statement statement, String table, String column, String type) throws SQLException {
+        try (ResultSet ignored = statement.executeQuery(String.format("SELECT %s FROM %s WHERE 1 = 0", column, table))) {
+            return;
+        } catch (SQLException ex) {
+            // The column does not exist yet.
+        }
+
+        try {
+            statement.execute(String.format("ALTER TABLE %s ADD COLUMN %s %s", table, column, type));
+        } catch (SQLException ex) {
+            // Another node might have added the column at the same time.
+            try (ResultSet ignored = statement.executeQuery(String.format("SELECT %s FROM %s WHERE 1 = 0", column, table))) {
+                return;
+            } catch (SQLException missing) {
+                ex.addSuppressed(missing);
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public Map<String, String> getChecksums(ProgramInfo info) throws MigrationException {
+        Map<String, String> checksums = new HashMap<>();
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                String.format("SELECT name, checksum FROM %s WHERE program = ?", historyTableName))) {
+
+            statement.setString(1, info.getName());
+
+            try (ResultSet set = statement.executeQuery()) {
+                while (set.next()) {
+                    checksums.put(set.getString("name"), set.getString("checksum"));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new MigrationException("Failed to read the migration checksums. Original message: " + ex.getMessage(), ex);
+        }
+
+        return checksums;
+    }
+
+    @Override
+    public List<AppliedMigration> getHistory(ProgramInfo info) throws MigrationException {
+        List<AppliedMigration> history = new ArrayList<>();
+
+        try (PreparedStatement statement = connection.prepareStatement(String.format(
+                "SELECT name, applied_at, checksum, duration_ms, statements, row_count, node FROM %s WHERE program = ?", historyTableName))) {
+
+            statement.setString(1, info.getName());
+
+            try (ResultSet set = statement.executeQuery()) {
+                while (set.next()) {
+                    long duration = set.getLong("duration_ms");
+                    Duration recorded = set.wasNull() ? null : Duration.ofMillis(duration);
+                    long statements = set.getLong("statements");
+                    if (set.wasNull()) statements = -1;
+                    long rows = set.getLong("row_count");
+                    if (set.wasNull()) rows = -1;
+
+                    history.add(new AppliedMigration(set.getString("name"), set.getTimestamp("applied_at").toLocalDateTime(),
+                            set.getString("checksum"), recorded, statements, rows, set.getString("node")));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new MigrationException("Failed to read the migration history. Original message: " + ex.getMessage(), ex);
+        }
+
+        return history;
+    }
+
+    /**
+     * Stores the migration in the history table. Called in the same transaction as the migration itself.
+     * @param info The program info
+     * @param migration The migration that has been executed
+     * @param millis How long the migration took
+     * @param statements The amount of executed statements
+     * @param rows The amount of affected rows
+     * @throws SQLException When storing the migration failed
+     */
+    protected void recordMigration(ProgramInfo info, Migration migration, long millis, long statements, long rows) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(
+                String.format("DELETE FROM %s WHERE program = ? AND name = ?", historyTableName))) {
+            delete.setString(1, info.getName());
+            delete.setString(2, migration.getName());
+            delete.execute();
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                String.format("INSERT INTO %s (program, name, checksum, applied_at, duration_ms, statements, row_count, node)" +
+                        " VALUES (?, ?, ?, ?, ?, ?, ?, ?)", historyTableName))) {
+            insert.setString(1, info.getName());
+            insert.setString(2, migration.getName());
+            insert.setString(3, migration.getChecksum());
+            insert.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            insert.setLong(5, millis);
+            insert.setLong(6, statements);
+            insert.setLong(7, rows);
+            insert.setString(8, manager.getNode());
+            insert.execute();
+        }
+    }
+
+    @Override
+    public boolean baseline(ProgramInfo info, Collection<Migration> migrations) throws MigrationException {
+        try {
+            connection.setAutoCommit(false);
+
+            // The baseline rows have no timings, they were executed before the history was kept.
+            try (PreparedStatement insert = connection.prepareStatement(
+                    String.format("INSERT INTO %s (program, name, checksum, applied_at, node) VALUES (?, ?, ?, ?, ?)", historyTableName))) {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                for (Migration migration : migrations) {
+                    insert.setString(1, info.getName());
+                    insert.setString(2, migration.getName());
+                    insert.setString(3, migration.getChecksum());
+                    insert.setTimestamp(4, now);
+                    insert.setString(5, manager.getNode());
+                    insert.addBatch();
+                }
+
+                if (!migrations.isEmpty()) {
+                    insert.executeBatch();
+                }
+            }
+
+            try (PreparedStatement update = connection.prepareStatement(
+                    String.format("UPDATE %s SET baseline_at = ? WHERE program = ?", tableName))) {
+                update.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                update.setString(2, info.getName());
+                update.execute();
+            }
+
+            connection.commit();
+            return true;
+        } catch (SQLException ex) {
+            try {
+                connection.rollback();
+            } catch (SQLException throwable) {
+                ex.addSuppressed(throwable);
+            }
+
+            throw new MigrationException("Failed to record the baseline of the migration history. Original message: " + ex.getMessage(), ex);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Reads how many statements of a migration have been committed by a previous run that failed.
+     * @param info The program info
+     * @param migration The migration
+     * @return The amount of statements that should be skipped, 0 if there is no checkpoint
+     * @throws SQLException When reading the checkpoint failed
+     */
+    protected long readCheckpoint(ProgramInfo info, Migration migration) throws SQLException {
+        Long position = checkpoint(info, migration.getName());
+        return position == null ? 0 : position;
+    }
+
+    /**
+     * Stores how many statements of a migration have been committed. Called before the commit.
+     * @param info The program info
+     * @param migration The migration
+     * @param position The amount of statements that have been committed, 0 to remove the checkpoint
+     * @throws SQLException When storing the checkpoint failed
+     */
+    protected void writeCheckpoint(ProgramInfo info, Migration migration, long position) throws SQLException {
+        checkpoint(info, migration.getName(), position <= 0 ? null : position);
+    }
+
+    /**
+     * Reads a checkpoint.
+     * @param info The program info
+     * @param name The name of the checkpoint
+     * @return The position or NULL if there is no checkpoint
+     * @throws SQLException When reading the checkpoint failed
+     */
+    Long checkpoint(ProgramInfo info, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                String.format("SELECT position FROM %s WHERE program = ? AND name = ?", checkpointTableName))) {
+            statement.setString(1, info.getName());
+            statement.setString(2, name);
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next() ? set.getLong("position") : null;
+            }
+        }
+    }
+
+    /**
+     * Stores a checkpoint. Called before the commit.
+     * @param info The program info
+     * @param name The name of the checkpoint
+     * @param position The position or NULL to remove the checkpoint
+     * @throws SQLException When storing the checkpoint failed
+     */
+    void checkpoint(ProgramInfo info, String name, Long position) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(
+                String.format("DELETE FROM %s WHERE program = ? AND name = ?", checkpointTableName))) {
+            delete.setString(1, info.getName());
+            delete.setString(2, name);
+            delete.execute();
+        }
+
+        if (position == null) {
+            return;
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                String.format("INSERT INTO %s (program, name, position) VALUES (?, ?, ?)", checkpointTableName))) {
+            insert.setString(1, info.getName());
+            insert.setString(2, name);
+            insert.setLong(3, position);
+            insert.execute();
+        }
+    }
+
+    /**
+     * The statements of a migration, split at build time when possible.
+     * @param migration The migration
+     * @return The statements
+     */
+    private StatementIterator statements(Migration migration) {
+        StatementIterator statements = migration.getStatements(backslashEscapes(), hashComments(), dollarQuotes());
+        if (statements != null) {
+            return statements;
+        }
+
+        return new SqlStatementReader(migration.getInputStream())
+                .backslashEscapes(backslashEscapes())
+                .hashComments(hashComments())
+                .dollarQuotes(dollarQuotes());
+    }
+
+    @Override
+    public void executeMigration(ProgramInfo info, Migration migration) throws MigrationException {
+        executeMigration(info, migration, migration.getDate());
+    }
+
+    /**
+     * Executes the migration and retries it when it fails with a transient error, see {@link RetryPolicy}.
+     */
+    @Override
+    public void executeMigration(ProgramInfo info, Migration migration, LocalDateTime lastMigration) throws MigrationException {
+        RetryPolicy policy = manager.getRetryPolicy();
+        retries = policy.newBackoff();
+
+        try {
+            while (true) {
+                try {
+                    execute(info, migration, lastMigration);
+                    return;
+                } catch (MigrationException ex) {
+                    if (policy.classify(ex) == null) {
+                        throw ex;
+                    }
+
+                    // The transaction has been rolled back, executing the migration again starts after the last checkpoint.
+                    if (retries.getAttempts() >= policy.getMaxRetries()) {
+                        policy.onExhausted();
+                        throw ex;
+                    }
+                    if (!retry(info, migration, RetryPolicy.Scope.TRANSACTION, ex)) {
+                        throw ex;
+                    }
+                }
+            }
+        } finally {
+            retries = null;
+        }
+    }
+
+    /**
+     * Waits before a retry.
+     * @return False if the thread was interrupted while waiting, the failure should be reported
+     */
+    private boolean retry(ProgramInfo info, Migration migration, RetryPolicy.Scope scope, Exception cause) {
+        RetryPolicy policy = manager.getRetryPolicy();
+        long delay = retries.nextDelayMillis();
+        policy.onRetry(scope);
+
+        info.getLogger().warning(String.format(PREFIX + "%s of %s failed with a transient error, retrying in %d ms (%d/%d): %s",
+                scope == RetryPolicy.Scope.STATEMENT ? "A statement" : "The transaction", migration.getName(),
+                delay, retries.getAttempts(), policy.getMaxRetries(), cause.getMessage()));
+        if (instrumentation.isEnabled()) {
+            instrumentation.onRetry(migration, scope == RetryPolicy.Scope.TRANSACTION, retries.getAttempts(), delay);
+        }
+
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Executes a statement with the batcher. A statement that failed on its own with an error the retry policy
+     * retries as a statement is executed again, any other failure is thrown.
+     */
+    private void execute(StatementBatcher batcher, ProgramInfo info, Migration migration, String sql) throws SQLException {
+        RetryPolicy policy = manager.getRetryPolicy();
+        boolean retried = false;
+
+        while (true) {
+            try {
+                batcher.execute(sql);
+                if (retried) {
+                    // Progress has been made, the next lock wait starts with a short delay again.
+                    retries.reset();
+                }
+                return;
+            } catch (SQLException ex) {
+                if (batcher.isBatchFailed() || policy.classify(ex) != RetryPolicy.Scope.STATEMENT
+                        || retries.getAttempts() >= policy.getMaxRetries() || !keepsTransaction(ex)
+                        || !retry(info, migration, RetryPolicy.Scope.STATEMENT, ex)) {
+                    throw ex;
+                }
+                retried = true;
+            }
+        }
+    }
+
+    private void execute(ProgramInfo info, Migration migration, LocalDateTime lastMigration) throws MigrationException {
+        if (migration instanceof JavaMigration) {
+            executeJavaMigration(info, (JavaMigration) migration, lastMigration);
+            return;
+        }
+
+        DataFileReader.Format format = DataFileReader.Format.of(migration.getName());
+        if (format != null) {
+            executeDataMigration(info, migration, lastMigration, format);
+            return;
+        }
+
+        String sql = "No query loaded";
+        long checkpoint = 0;
+        long started = System.nanoTime();
+
+        StatementBatcher batcher = null;
+        try (StatementIterator reader = statements(migration)) {
+
+            /*
+             * Execute the whole file, query per query.
+             * Only if all rows succeed commit the changes.
+             */
+
+            connection.setAutoCommit(false);
+            batcher = createBatcher();
+
+            // Statements before the checkpoint have been committed by a previous run and can't be executed again.
+            boolean checkpoints = implicitCommits();
+            long resume = checkpoints ? readCheckpoint(info, migration) : 0;
+            checkpoint = resume;
+
+            // The timings are only measured when someone is interested in them.
+            boolean instrumented = instrumentation.isEnabled();
+            long statements = 0;
+            long position = 0;
+            long ownRows = 0;
+            long time = instrumented ? System.nanoTime() : 0;
+
+            String next;
+            while((next = reader.next()) != null) {
+                if (++position <= resume) {
+                    continue;
+                }
+                sql = next;
+
+                boolean commits = checkpoints && commitsImplicitly(sql);
+                if (commits && position - 1 > checkpoint) {
+                    // The database commits the pending statements before it executes this one, even when it fails.
+                    // Commit them together with their checkpoint, so a failure doesn't execute them again.
+                    batcher.flush();
+                    writeCheckpoint(info, migration, position - 1);
+                    connection.commit();
+                    checkpoint = position - 1;
+                }
+
+                long parsed = instrumented ? System.nanoTime() : 0;
+                long rows = batcher.getRowCount() + ownRows;
+                if (executesItself(sql)) {
+                    batcher.flush();
+                    ownRows += executeStatement(info, migration, sql);
+                } else {
+                    execute(batcher, info, migration, sql);
+                }
+
+                if (instrumented) {
+                    long executed = System.nanoTime();
+                    instrumentation.onStatement(migration, reader.getStatementLine(), sql,
+                            parsed - time, executed - parsed, batcher.getRowCount() + ownRows - rows);
+                }
+
+                if (commits) {
+                    // Everything up to here has been committed by the database, remember that.
+                    writeCheckpoint(info, migration, position);
+                    connection.commit();
+                    checkpoint = position;
+                }
+
+                statements++;
+                if (listener != null) {
+                    listener.onProgress(migration, statements);
+                }
+
+                if (instrumented) {
+                    time = System.nanoTime();
+                }
+            }
+
+            batcher.flush();
+
+            sql = "Updating the migration history";
+            if (checkpoint > 0) {
+                writeCheckpoint(info, migration, 0);
+            }
+            recordMigration(info, migration, (System.nanoTime() - started) / 1000000, statements, batcher.getRowCount() + ownRows);
+            if (lastMigration != null) {
+                updateLastMigration(info, lastMigration);
+            }
+
+            if (instrumented) {
+                long commit = System.nanoTime();
+                connection.commit();
+                instrumentation.onCommit(migration, System.nanoTime() - commit, batcher.getRowCount() + ownRows);
+            } else {
+                connection.commit();
+            }
+
+        } catch (SQLException | IOException ex) {
+            if (batcher != null && batcher.getFailedStatement() != null) {
+                sql = batcher.getFailedStatement();
+            }
+
+            // Abort the the transaction, the connection is closed together with the session.
+            try {
+                connection.rollback();
+            } catch (SQLException throwable) {
+                ex.addSuppressed(throwable);
+            }
+
+            String resume = checkpoint == 0 ? "" : " The first " + checkpoint + " statements have been committed, the next run skips them.";
+            throw new MigrationException("Failed to execute query: " + sql + " Original message: " + ex.getMessage() + resume, ex);
+        } finally {
+            if (batcher != null) {
+                try {
+                    batcher.close();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Executes a Java migration in a single transaction, apart from the chunks its backfills commit.
+     * @param info The program info
+     * @param migration The Java migration
+     * @param lastMigration The date that should be stored as the last migration or NULL
+     * @throws MigrationException When the migration failed, the uncommitted work has been rolled back
+     */
+    protected void executeJavaMigration(ProgramInfo info, JavaMigration migration, LocalDateTime lastMigration) throws MigrationException {
+        long started = System.nanoTime();
+        JdbcMigrationContext context = new JdbcMigrationContext(this, info, migration);
+
+        try {
+            connection.setAutoCommit(false);
+            migration.migrate(context);
+
+            for (JdbcBackfill backfill : context.getBackfills()) {
+                checkpoint(info, backfill.getName(), null);
+            }
+            recordMigration(info, migration, (System.nanoTime() - started) / 1000000, 1, context.getRows());
+            if (lastMigration != null) {
+                updateLastMigration(info, lastMigration);
+            }
+            connection.commit();
+        } catch (Exception ex) {
+            try {
+                connection.rollback();
+            } catch (SQLException throwable) {
+                ex.addSuppressed(throwable);
+            }
+
+            throw new MigrationException("Failed to execute the Java migration " + migration.getName() + ". Original message: " + ex.getMessage(), ex);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Loads a CSV or TSV file into the table named by the description of the migration,
+     * e.g. 2024-1-1-10.00-items.csv is loaded into items. The first record holds the column names.
+     *
+     * The file is streamed through a reused prepared statement, only a single batch is held in memory.
+     * When the manager commits in chunks, the position of the last chunk is stored as a checkpoint.
+     * @param info The program info
+     * @param migration The data migration
+     * @param lastMigration The date that should be stored as the last migration or NULL
+     * @param format The format of the file
+     * @throws MigrationException When the file could not be loaded, the transaction has been rolled back
+     */
+    protected void executeDataMigration(ProgramInfo info, Migration migration, LocalDateTime lastMigration, DataFileReader.Format format) throws MigrationException {
+        String table = MigrationNames.description(migration.getName());
+        if (table.isEmpty()) {
+            throw new MigrationException("The data migration " + migration.getName() + " does not name a table.", null);
+        }
+
+        long started = System.nanoTime();
+        DataFileReader reader = null;
+        try {
+            reader = new DataFileReader(migration.getInputStream(), format);
+
+            String[] columns = reader.next();
+            if (columns == null) {
+                throw new IOException("The file is empty, the first line should contain the column names.");
+            }
+            for (String column : columns) {
+                if (column == null || column.isEmpty()) {
+                    throw new IOException("The first line contains an empty column name.");
+                }
+            }
+
+            connection.setAutoCommit(false);
+
+            // Chunks that have been committed by a previous run are skipped.
+            int commitSize = manager.getDataCommitSize();
+            long resume = commitSize > 0 ? readCheckpoint(info, migration) : 0;
+            long skipped = 0;
+            while (skipped < resume && reader.next() != null) {
+                skipped++;
+            }
+
+            long rows = loadData(info, migration, table, columns, reader, resume);
+
+            if (commitSize > 0 && (resume > 0 || rows >= commitSize)) {
+                writeCheckpoint(info, migration, 0);
+            }
+            // The load counts as a single statement, like its estimate.
+            recordMigration(info, migration, (System.nanoTime() - started) / 1000000, 1, rows);
+            if (lastMigration != null) {
+                updateLastMigration(info, lastMigration);
+            }
+
+            if (instrumentation.isEnabled()) {
+                long commit = System.nanoTime();
+                connection.commit();
+                instrumentation.onCommit(migration, System.nanoTime() - commit, rows);
+            } else {
+                connection.commit();
+            }
+        } catch (SQLException | IOException ex) {
+            try {
+                connection.rollback();
+            } catch (SQLException throwable) {
+                ex.addSuppressed(throwable);
+            }
+
+            String line = reader == null ? "" : " near line " + reader.getLine();
+            throw new MigrationException("Failed to load " + migration.getName() + line + ". Original message: " + ex.getMessage(), ex);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the remaining records of a data file. When the manager commits in chunks, the position of every
+     * committed chunk is written with {@link #writeCheckpoint(ProgramInfo, Migration, long)} first.
+     * @param info The program info
+     * @param migration The data migration
+     * @param table The table the records are loaded into
+     * @param columns The column names of the file
+     * @param reader The reader, positioned after the records of a previous run
+     * @param resume The amount of records that were loaded by a previous run
+     * @return The amount of loaded rows
+     * @throws SQLException When inserting failed
+     * @throws IOException When the file could not be read or a record has the wrong amount of fields
+     */
+    protected long loadData(ProgramInfo info, Migration migration, String table, String[] columns, DataFileReader reader, long resume) throws SQLException, IOException {
+        int rowsPerInsert = Math.max(1, rowsPerInsert(columns.length));
+        int insertsPerBatch = Math.max(1, manager.getBatchSize() / rowsPerInsert);
+        int commitSize = manager.getDataCommitSize();
+
+        String sql = insertStatement(table, columns, rowsPerInsert);
+        String[][] pending = new String[rowsPerInsert][];
+        int buffered = 0;
+        int batched = 0;
+        long rows = 0;
+        long committed = 0;
+
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            long time = System.nanoTime();
+
+            String[] record;
+            while ((record = reader.next()) != null) {
+                if (record.length != columns.length) {
+                    throw new IOException(String.format("Expected %d fields but found %d.", columns.length, record.length));
+                }
+
+                pending[buffered++] = record;
+                if (buffered < rowsPerInsert) {
+                    continue;
+                }
+
+                bind(insert, pending, buffered);
+                insert.addBatch();
+                buffered = 0;
+
+                if (++batched < insertsPerBatch) {
+                    continue;
+                }
+
+                rows += executeData(migration, insert, sql, reader, batched * rowsPerInsert, rows, time);
+                batched = 0;
+
+                if (commitSize > 0 && rows - committed >= commitSize) {
+                    writeCheckpoint(info, migration, resume + rows);
+                    connection.commit();
+                    committed = rows;
+                }
+                time = System.nanoTime();
+            }
+
+            if (batched > 0) {
+                rows += executeData(migration, insert, sql, reader, batched * rowsPerInsert, rows, time);
+                time = System.nanoTime();
+            }
+        }
+
+        // The rows that did not fill a multi-row INSERT.
+        if (buffered > 0) {
+            String tail = insertStatement(table, columns, buffered);
+            try (PreparedStatement insert = connection.prepareStatement(tail)) {
+                bind(insert, pending, buffered);
+                insert.addBatch();
+                rows += executeData(migration, insert, tail, reader, buffered, rows, System.nanoTime());
+            }
+        }
+
+        return rows;
+    }
+
+    private long executeData(Migration migration, PreparedStatement insert, String sql, DataFileReader reader, int count, long rows, long time) throws SQLException {
+        if (instrumentation.isEnabled()) {
+            long executing = System.nanoTime();
+            insert.executeBatch();
+            instrumentation.onStatement(migration, (int) reader.getLine(), sql, executing - time, System.nanoTime() - executing, count);
+        } else {
+            insert.executeBatch();
+        }
+
+        if (listener != null) {
+            listener.onProgress(migration, rows + count);
+        }
+        return count;
+    }
+
+    private static void bind(PreparedStatement insert, String[][] records, int count) throws SQLException {
+        int parameter = 1;
+        for (int i = 0; i < count; i++) {
+            for (String value : records[i]) {
+                if (value == null) {
+                    insert.setNull(parameter++, Types.VARCHAR);
+                } else {
+                    insert.setString(parameter++, value);
+                }
+            }
+        }
+    }
+
+    private String insertStatement(String table, String[] columns, int rows) {
+        StringJoiner name = new StringJoiner(".");
+        for (String part : table.split("\\.")) {
+            name.add(quoteIdentifier(part));
+        }
+
+        StringJoiner names = new StringJoiner(", ", " (", ")");
+        StringJoiner values = new StringJoiner(", ", "(", ")");
+        for (String column : columns) {
+            names.add(quoteIdentifier(column));
+            values.add("?");
+        }
+
+        StringJoiner sql = new StringJoiner(", ", "INSERT INTO " + name + names + " VALUES ", "");
+        for (int i = 0; i < rows; i++) {
+            sql.add(values.toString());
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Estimates how many rows a statement touches without executing it.
+     * Statements that rebuild a table cost the size of the table, data manipulation is explained by the database.
+     * @param sql The statement
+     * @return The estimated rows or -1 if unknown
+     * @throws SQLException When the database could not explain the statement (e.g. the table does not exist yet)
+     */
+    protected long estimateRows(String sql) throws SQLException {
+        Matcher rebuilt = REBUILT_TABLE.matcher(sql);
+        if (rebuilt.find()) {
+            return tableRows(rebuilt.group(1).replace("`", "").replace("\"", ""));
+        }
+
+        if (DATA_MANIPULATION.matcher(sql).find()) {
+            return explainRows(sql);
+        }
+        return -1;
+    }
+
+    /**
+     * Asks the query planner how many rows a data manipulation statement touches, e.g. using EXPLAIN.
+     * @param sql The statement
+     * @return The estimated rows or -1 if the engine can't tell
+     * @throws SQLException When the statement could not be explained
+     */
+    protected long explainRows(String sql) throws SQLException {
+        return -1;
+    }
+
+    /**
+     * The (estimated) amount of rows in a table. It should be cheap, so statistics are preferred over counting.
+     * @param table The table, possibly prefixed with its schema
+     * @return The amount of rows or -1 if unknown
+     * @throws SQLException When the table could not be inspected
+     */
+    protected long tableRows(String table) throws SQLException {
+        return -1;
+    }
+
+    @Override
+    public List<StatementEstimate> explain(Migration migration) throws MigrationException {
+        List<StatementEstimate> estimates = new ArrayList<>();
+
+        // Java code can't be explained.
+        if (migration instanceof JavaMigration) {
+            estimates.add(new StatementEstimate(migration, 1, "Java migration " + migration.getClass().getName(), -1));
+            return estimates;
+        }
+
+        DataFileReader.Format format = DataFileReader.Format.of(migration.getName());
+        if (format != null) {
+            // A data file is one INSERT per record, counting the records is the estimate.
+            try (DataFileReader reader = new DataFileReader(migration.getInputStream(), format)) {
+                long records = -1;
+                while (reader.next() != null) {
+                    records++;
+                }
+                estimates.add(new StatementEstimate(migration, 1, "INSERT INTO " + MigrationNames.description(migration.getName()), Math.max(0, records)));
+            } catch (IOException ex) {
+                throw new MigrationException("Failed to read " + migration.getName() + ". Original message: " + ex.getMessage(), ex);
+            }
+            return estimates;
+        }
+
+        try (StatementIterator reader = statements(migration)) {
+
+            // EXPLAIN does not execute anything, the transaction is only a safety net.
+            connection.setAutoCommit(false);
+
+            String sql;
+            while ((sql = reader.next()) != null) {
+                long rows;
+                // A failed EXPLAIN aborts the whole transaction on PostgreSQL, the next ones need the savepoint.
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    rows = estimateRows(sql);
+                    connection.releaseSavepoint(savepoint);
+                } catch (SQLException ex) {
+                    // Statements often depend on tables created earlier in the same migration.
+                    connection.rollback(savepoint);
+                    rows = -1;
+                }
+                estimates.add(new StatementEstimate(migration, reader.getStatementLine(), sql, rows));
+            }
+        } catch (IOException | SQLException ex) {
+            throw new MigrationException("Failed to explain " + migration.getName() + ". Original message: " + ex.getMessage(), ex);
+        } finally {
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        return estimates;
+    }
+
+    @Override
+    public void setListener(MigrationListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setInstrumentation(MigrationInstrumentation instrumentation) {
+        this.instrumentation = instrumentation == null ? MigrationInstrumentation.NONE : instrumentation;
+    }
+
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package nl.martenm.migrationm.databasemanager;
+
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.Backoff;
+
+import java.sql.*;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static nl.martenm.migrationm.MigrationM.PREFIX;
+
+/**
+ * A lock backed by a lease row, for engines without advisory locks.
+ *
+ * Table:
+ *   migrations_lock
+ *      name (VARCHAR) (KEY) - owner (VARCHAR) - expires_at (BIGINT, epoch milliseconds)
+ *
+ * The holder renews the lease in the background. When the holder crashes the lease expires and the next node
+ * takes it over. The expiry is based on the clocks of the nodes, they should agree well within the lease duration.
+ * Waiting nodes poll the row with a jittered exponential backoff.
+ */
+class LeaseLock implements MigrationLock {
+
+    private static final ScheduledExecutorService RENEWER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MigrationM-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Connection connection;
+    private final String table;
+    private final String name;
+    private final String owner;
+    private final long leaseMillis;
+    private final boolean contended;
+    private final Logger logger;
+
+    private ScheduledFuture<?> renewal;
+    private boolean closed = false;
+
+    private LeaseLock(Connection connection, String table, String name, String owner, long leaseMillis, boolean contended, Logger logger) {
+        this.connection = connection;
+        this.table = table;
+        this.name = name;
+        this.owner = owner;
+        this.leaseMillis = leaseMillis;
+        this.contended = contended;
+        this.logger = logger;
+    }
+
+    /**
+     * Acquires the lease, waiting for the current holder if there is one.
+     * @param connection The connection that is used for the lease, it's closed together with the lock
+     * @param table The lock table
+     * @param name The name of the lock
+     * @param owner A name that is unique for this acquisition
+     * @param lease How long the lease is valid without being renewed
+     * @param timeout How long to wait for the lease
+     * @param logger The logger for lost leases
+     * @return The lock
+     * @throws SQLException When the lock table could not be used
+     * @throws MigrationException When the lease could not be acquired in time
+     */
+    static LeaseLock acquire(Connection connection, String table, String name, String owner, Duration lease, Duration timeout, Logger logger)
+            throws SQLException, MigrationException {
+
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format("CREATE TABLE IF NOT EXISTS %s (" +
+                    "name VARCHAR(64) PRIMARY KEY," +
+                    "owner VARCHAR(255) NOT NULL," +
+                    "expires_at BIGINT NOT NULL" +
+                    ")", table));
+        }
+
+        long leaseMillis = Math.max(1000, lease.toMillis());
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Backoff backoff = new Backoff(Duration.ofMillis(100), Duration.ofMillis(Math.min(5000, leaseMillis / 2)));
+
+        while (true) {
+            if (tryAcquire(connection, table, name, owner, leaseMillis)) {
+                LeaseLock lock = new LeaseLock(connection, table, name, owner, leaseMillis, backoff.getAttempts() > 0, logger);
+                lock.renewal = RENEWER.scheduleAtFixedRate(lock::renew, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+                return lock;
+            }
+
+            if (System.nanoTime() >= deadline) {
+                throw new MigrationException(String.format("Timed out after %d seconds waiting for the migration lock %s, it is held by %s.",
+                        timeout.getSeconds(), name, holder(connection, table, name)), null);
+            }
+
+            try {
+                backoff.sleep(deadline);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MigrationException("Interrupted while waiting for the migration lock " + name + ".", ex);
+            }
+        }
+    }
+
+    private static boolean tryAcquire(Connection connection, String table, String name, String owner, long leaseMillis) throws SQLException {
+        long now = System.currentTimeMillis();
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                String.format("INSERT INTO %s (name, owner, expires_at) VALUES (?, ?, ?)", table))) {
+            insert.setString(1, name);
+            insert.setString(2, owner);
+            insert.setLong(3, now + leaseMillis);
+            insert.execute();
+            return true;
+        } catch (SQLException ex) {
+            // The row exists, it can only be taken over when the lease has expired.
+        }
+
+        try (PreparedStatement update = connection.prepareStatement(
+                String.format("UPDATE %s SET owner = ?, expires_at = ? WHERE name = ? AND expires_at < ?", table))) {
+            update.setString(1, owner);
+            update.setLong(2, now + leaseMillis);
+            update.setString(3, name);
+            update.setLong(4, now);
+            return update.executeUpdate() == 1;
+        }
+    }
+
+    private static String holder(Connection connection, String table, String name) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(String.format("SELECT owner FROM %s WHERE name = ?", table))) {
+            select.setString(1, name);
+
+            try (ResultSet set = select.executeQuery()) {
+                return set.next() ? set.getString("owner") : "nobody";
+            }
+        }
+    }
+
+    private synchronized void renew() {
+        if (closed) {
+            return;
+        }
+
+        try (PreparedStatement update = connection.prepareStatement(
+                String.format("UPDATE %s SET expires_at = ? WHERE name = ? AND owner = ?", table))) {
+            update.setLong(1, System.currentTimeMillis() + leaseMillis);
+            update.setString(2, name);
+            update.setString(3, owner);
+
+            if (update.executeUpdate() == 0) {
+                logger.warning(String.format(PREFIX + "The migration lock %s has been taken over by another node.", name));
+                renewal.cancel(false);
+            }
+        } catch (SQLException ex) {
+            // The lease is still valid for a while, the next renewal might succeed.
+            logger.warning(String.format(PREFIX + "Failed to renew the migration lock %s: %s", name, ex.getMessage()));
+        }
+    }
+
+    @Override
+    public boolean isContended() {
+        return contended;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        renewal.cancel(false);
+
+        try (PreparedStatement delete = connection.prepareStatement(
+                String.format("DELETE FROM %s WHERE name = ? AND owner = ?", table))) {
+            delete.setString(1, name);
+            delete.setString(2, owner);
+            delete.execute();
+        } catch (SQLException ex) {
+            // The lease expires by itself.
+            ex.printStackTrace();
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package nl.martenm.migrationm.databasemanager;
+
+import nl.martenm.migrationm.util.Backoff;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which failures of a migration are transient and how often they are retried, e.g. deadlocks and lock wait
+ * timeouts while the servers take traffic.
+ *
+ * A failure is recognized by the vendor code of the {@link SQLException} or one of its causes, or otherwise by its
+ * SQLState. A SQLState of two characters matches its whole class, "40" matches 40001 and 40P01.
+ * The scope tells what the database has rolled back:
+ *   STATEMENT: only the statement, it is executed again on its own. Only used for statements that were not part
+ *              of a batch, a failed batch is retried with the transaction.
+ *   TRANSACTION: the whole transaction, the migration is executed again. Statements that have been committed
+ *              by a checkpoint are skipped, like on the next start.
+ *
+ * Retries wait with jittered exponential backoff. A statement that succeeds after a retry starts with the initial
+ * delay again, so a long migration can get past several lock waits. The retry counts are kept for all sessions
+ * of the manager.
+ *
+ * The policy should be configured before the migrations are executed.
+ */
+public class RetryPolicy {
+
+    public enum Scope {
+        STATEMENT, TRANSACTION
+    }
+
+    private final Map<Integer, Scope> vendorCodes = new HashMap<>();
+    private final Map<String, Scope> sqlStates = new HashMap<>();
+
+    private int maxRetries = 3;
+    private Duration initialBackoff = Duration.ofMillis(200);
+    private Duration maxBackoff = Duration.ofSeconds(5);
+
+    private final AtomicLong statementRetries = new AtomicLong();
+    private final AtomicLong transactionRetries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    /**
+     * A policy that retries nothing until codes are added.
+     * @return The policy
+     */
+    public static RetryPolicy none() {
+        return new RetryPolicy();
+    }
+
+    /**
+     * A policy that retries the standard transaction rollback class (SQLState 40), which includes serialization
+     * failures and the deadlocks of most engines.
+     * @return The policy
+     */
+    public static RetryPolicy standard() {
+        return new RetryPolicy().sqlState("40", Scope.TRANSACTION);
+    }
+
+    /**
+     * Retries failures with a vendor code, e.g. 1213 for a deadlock on MySQL.
+     * A vendor code is checked before the SQLState.
+     * @param code The vendor code
+     * @param scope What the database rolls back on this failure
+     * @return This policy
+     */
+    public RetryPolicy vendorCode(int code, Scope scope) {
+        vendorCodes.put(code, scope);
+        return this;
+    }
+
+    /**
+     * Retries failures with a SQLState, or a class of SQLStates when two characters are given.
+     * @param sqlState The SQLState or its class
+     * @param scope What the database rolls back on this failure
+     * @return This policy
+     */
+    public RetryPolicy sqlState(String sqlState, Scope scope) {
+        sqlStates.put(sqlState, scope);
+        return this;
+    }
+
+    /**
+     * Sets how often a statement or migration is retried before the failure is reported, 3 by default.
+     * @param maxRetries The amount of retries, 0 to never retry
+     * @return This policy
+     */
+    public RetryPolicy maxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Sets the bounds of the delay between retries, by default from 200 milliseconds up to 5 seconds.
+     * @param initial The upper bound of the first delay
+     * @param max The largest upper bound of a delay
+     * @return This policy
+     */
+    public RetryPolicy backoff(Duration initial, Duration max) {
+        this.initialBackoff = initial;
+        this.maxBackoff = max;
+        return this;
+    }
+
+    /**
+     * Classifies a failure.
+     * @param throwable The failure, its causes and chained exceptions are checked as well
+     * @return The scope of the retry or NULL if the failure is not transient
+     */
+    public Scope classify(Throwable throwable) {
+        Scope state = null;
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (!(cause instanceof SQLException)) continue;
+
+            for (SQLException ex = (SQLException) cause; ex != null; ex = ex.getNextException()) {
+                Scope scope = vendorCodes.get(ex.getErrorCode());
+                if (scope != null) {
+                    return scope;
+                }
+
+                String sqlState = ex.getSQLState();
+                if (state == null && sqlState != null) {
+                    state = sqlStates.get(sqlState);
+                    if (state == null && sqlState.length() >= 2) {
+                        state = sqlStates.get(sqlState.substring(0, 2));
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * A backoff for the retries of one migration.
+     * @return The backoff
+     */
+    Backoff newBackoff() {
+        return new Backoff(initialBackoff, maxBackoff);
+    }
+
+    void onRetry(Scope scope) {
+        (scope == Scope.STATEMENT ? statementRetries : transactionRetries).incrementAndGet();
+    }
+
+    void onExhausted() {
+        exhausted.incrementAndGet();
+    }
+
+    /**
+     * @return How often a statement has been executed again on its own
+     */
+    public long getStatementRetries() {
+        return statementRetries.get();
+    }
+
+    /**
+     * @return How often a migration has been executed again after its transaction was rolled back
+     */
+    public long getTransactionRetries() {
+        return transactionRetries.get();
+    }
+
+    /**
+     * @return How often a transient failure was still reported because the retries ran out
+     */
+    public long getExhaustedRetries() {
+        return exhausted.get();
+    }
+}
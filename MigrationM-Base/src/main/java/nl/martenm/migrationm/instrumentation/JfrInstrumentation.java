@@ -0,0 +1,116 @@
+package nl.martenm.migrationm.instrumentation;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationInstrumentation;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the migrations as Java Flight Recorder events in the "MigrationM" category.
+ *
+ * The events only cost something while a recording with the events enabled is running, e.g.
+ *   jcmd &lt;pid&gt; JFR.start name=migrations settings=profile
+ *
+ * JFR is available from Java 8u262 and Java 11, use {@link #isAvailable()} on older runtimes.
+ */
+public class JfrInstrumentation implements MigrationInstrumentation {
+
+    private final String program;
+    private final Map<String, MigrationEvents.MigrationEvent> running = new ConcurrentHashMap<>();
+
+    /**
+     * @param program The name of the program, added to every event
+     */
+    public JfrInstrumentation(String program) {
+        this.program = program;
+    }
+
+    /**
+     * Checks if the runtime supports JFR events.
+     * @return True if JFR is available
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public void onDiscovery(String source, int migrations, long nanos) {
+        MigrationEvents.DiscoveryEvent event = new MigrationEvents.DiscoveryEvent();
+        if (event.shouldCommit()) {
+            event.program = program;
+            event.source = source;
+            event.migrations = migrations;
+            event.discoveryTime = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onStart(Migration migration, int index, int total) {
+        MigrationEvents.MigrationEvent event = new MigrationEvents.MigrationEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            running.put(migration.getName(), event);
+        }
+    }
+
+    @Override
+    public void onStatement(Migration migration, int line, String sql, long parseNanos, long executeNanos, long rows) {
+        MigrationEvents.StatementEvent event = new MigrationEvents.StatementEvent();
+        if (event.isEnabled()) {
+            event.program = program;
+            event.migration = migration.getName();
+            event.line = line;
+            event.sql = sql;
+            event.parseTime = parseNanos;
+            event.executeTime = executeNanos;
+            event.rows = rows;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onCommit(Migration migration, long nanos, long rows) {
+        MigrationEvents.CommitEvent event = new MigrationEvents.CommitEvent();
+        if (event.shouldCommit()) {
+            event.program = program;
+            event.migration = migration.getName();
+            event.commitTime = nanos;
+            event.rows = rows;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onFinish(Migration migration, Duration duration, long statements) {
+        end(migration, statements, true);
+    }
+
+    @Override
+    public void onFailure(Migration migration, Exception exception) {
+        end(migration, 0, false);
+    }
+
+    private void end(Migration migration, long statements, boolean successful) {
+        MigrationEvents.MigrationEvent event = running.remove(migration.getName());
+        if (event == null) {
+            return;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.program = program;
+            event.migration = migration.getName();
+            event.statements = statements;
+            event.successful = successful;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package nl.martenm.migrationm.instrumentation;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationInstrumentation;
+import nl.martenm.migrationm.api.MigrationResult;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exposes the live progress of the migrations as an MXBean named
+ *   nl.martenm.migrationm:type=MigrationProgress,name=&lt;program&gt;
+ *
+ * The bean is registered on creation and stays registered until {@link #unregister()} is called.
+ */
+public class JmxInstrumentation implements MigrationInstrumentation, MigrationProgressMXBean {
+
+    private static final int MAX_STATEMENT_LENGTH = 200;
+
+    private final String program;
+    private final ObjectName name;
+
+    private final Set<String> current = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private final AtomicLong statementRetries = new AtomicLong();
+    private final AtomicLong transactionRetries = new AtomicLong();
+
+    private volatile int total;
+    private volatile int lastStatementLine;
+    private volatile long slowestStatementNanos;
+    private volatile String slowestStatement;
+    private volatile long discoveryNanos;
+
+    private JmxInstrumentation(String program, ObjectName name) {
+        this.program = program;
+        this.name = name;
+    }
+
+    /**
+     * Creates the instrumentation and registers it on the platform MBean server.
+     * An existing bean of the same program is replaced.
+     * @param program The name of the program
+     * @return The instrumentation
+     * @throws JMException When the bean could not be registered
+     */
+    public static JmxInstrumentation register(String program) throws JMException {
+        ObjectName name = new ObjectName("nl.martenm.migrationm:type=MigrationProgress,name=" + ObjectName.quote(program));
+        JmxInstrumentation instrumentation = new JmxInstrumentation(program, name);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(instrumentation, name);
+        return instrumentation;
+    }
+
+    /**
+     * Removes the bean from the platform MBean server.
+     */
+    public void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return name;
+    }
+
+    @Override
+    public void onDiscovery(String source, int migrations, long nanos) {
+        discoveryNanos = nanos;
+    }
+
+    @Override
+    public void onStart(Migration migration, int index, int total) {
+        if (index == 1) {
+            // A new run, the counters of the previous run are reset.
+            completed.set(0);
+            failed.set(0);
+            statements.set(0);
+            rows.set(0);
+            commitNanos.set(0);
+            statementRetries.set(0);
+            transactionRetries.set(0);
+            slowestStatementNanos = 0;
+            slowestStatement = null;
+        }
+
+        this.total = total;
+        current.add(migration.getName());
+    }
+
+    @Override
+    public void onStatement(Migration migration, int line, String sql, long parseNanos, long executeNanos, long rows) {
+        statements.incrementAndGet();
+        lastStatementLine = line;
+
+        if (executeNanos > slowestStatementNanos) {
+            synchronized (this) {
+                if (executeNanos > slowestStatementNanos) {
+                    slowestStatementNanos = executeNanos;
+                    slowestStatement = sql.length() > MAX_STATEMENT_LENGTH ? sql.substring(0, MAX_STATEMENT_LENGTH) : sql;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onCommit(Migration migration, long nanos, long rows) {
+        commitNanos.addAndGet(nanos);
+        this.rows.addAndGet(rows);
+    }
+
+    @Override
+    public void onRetry(Migration migration, boolean transaction, int attempt, long delayMillis) {
+        (transaction ? transactionRetries : statementRetries).incrementAndGet();
+    }
+
+    @Override
+    public void onFinish(Migration migration, Duration duration, long statements) {
+        current.remove(migration.getName());
+        completed.incrementAndGet();
+    }
+
+    @Override
+    public void onFailure(Migration migration, Exception exception) {
+        current.remove(migration.getName());
+        failed.incrementAndGet();
+    }
+
+    @Override
+    public void onComplete(MigrationResult result) {
+        current.clear();
+    }
+
+    @Override
+    public String getProgram() {
+        return program;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !current.isEmpty();
+    }
+
+    @Override
+    public String[] getCurrentMigrations() {
+        return current.toArray(new String[0]);
+    }
+
+    @Override
+    public int getCompletedMigrations() {
+        return completed.get();
+    }
+
+    @Override
+    public int getFailedMigrations() {
+        return failed.get();
+    }
+
+    @Override
+    public int getTotalMigrations() {
+        return total;
+    }
+
+    @Override
+    public long getStatementsExecuted() {
+        return statements.get();
+    }
+
+    @Override
+    public long getRowsAffected() {
+        return rows.get();
+    }
+
+    @Override
+    public int getLastStatementLine() {
+        return lastStatementLine;
+    }
+
+    @Override
+    public long getSlowestStatementMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowestStatementNanos);
+    }
+
+    @Override
+    public String getSlowestStatement() {
+        return slowestStatement;
+    }
+
+    @Override
+    public long getStatementRetries() {
+        return statementRetries.get();
+    }
+
+    @Override
+    public long getTransactionRetries() {
+        return transactionRetries.get();
+    }
+
+    @Override
+    public long getDiscoveryMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(discoveryNanos);
+    }
+
+    @Override
+    public long getCommitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(commitNanos.get());
+    }
+}
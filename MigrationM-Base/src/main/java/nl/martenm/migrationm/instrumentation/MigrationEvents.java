@@ -0,0 +1,102 @@
+package nl.martenm.migrationm.instrumentation;
+
+import jdk.jfr.*;
+
+/**
+ * The JFR events recorded by the {@link JfrInstrumentation}.
+ */
+final class MigrationEvents {
+
+    private MigrationEvents() {
+    }
+
+    @Name("nl.martenm.migrationm.Discovery")
+    @Label("Migration Discovery")
+    @Category("MigrationM")
+    @Description("Locating the migrations of a program")
+    static class DiscoveryEvent extends Event {
+
+        @Label("Program")
+        String program;
+
+        @Label("Source")
+        String source;
+
+        @Label("Migrations")
+        int migrations;
+
+        @Label("Discovery Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long discoveryTime;
+    }
+
+    @Name("nl.martenm.migrationm.Migration")
+    @Label("Migration")
+    @Category("MigrationM")
+    @Description("The execution of a single migration, from start to commit or rollback")
+    static class MigrationEvent extends Event {
+
+        @Label("Program")
+        String program;
+
+        @Label("Migration")
+        String migration;
+
+        @Label("Statements")
+        long statements;
+
+        @Label("Successful")
+        boolean successful;
+    }
+
+    @Name("nl.martenm.migrationm.Statement")
+    @Label("Migration Statement")
+    @Category("MigrationM")
+    @Description("A single statement of a migration")
+    @StackTrace(false)
+    static class StatementEvent extends Event {
+
+        @Label("Program")
+        String program;
+
+        @Label("Migration")
+        String migration;
+
+        @Label("Line")
+        int line;
+
+        @Label("SQL")
+        String sql;
+
+        @Label("Parse Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long parseTime;
+
+        @Label("Execute Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long executeTime;
+
+        @Label("Rows")
+        long rows;
+    }
+
+    @Name("nl.martenm.migrationm.Commit")
+    @Label("Migration Commit")
+    @Category("MigrationM")
+    @StackTrace(false)
+    static class CommitEvent extends Event {
+
+        @Label("Program")
+        String program;
+
+        @Label("Migration")
+        String migration;
+
+        @Label("Commit Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long commitTime;
+
+        @Label("Rows")
+        long rows;
+    }
+}
@@ -0,0 +1,64 @@
+package nl.martenm.migrationm.instrumentation;
+
+/**
+ * The live progress of the migrations of a program, exposed over JMX by the {@link JmxInstrumentation}.
+ */
+public interface MigrationProgressMXBean {
+
+    String getProgram();
+
+    /**
+     * @return True while migrations are being executed
+     */
+    boolean isRunning();
+
+    /**
+     * @return The migrations that are being executed right now, empty if none
+     */
+    String[] getCurrentMigrations();
+
+    int getCompletedMigrations();
+
+    int getFailedMigrations();
+
+    /**
+     * @return The amount of migrations of the current or last run
+     */
+    int getTotalMigrations();
+
+    long getStatementsExecuted();
+
+    /**
+     * @return The amount of rows affected by the committed migrations
+     */
+    long getRowsAffected();
+
+    /**
+     * @return The line of the last executed statement in its migration
+     */
+    int getLastStatementLine();
+
+    /**
+     * @return How long the slowest statement of the run took to execute
+     */
+    long getSlowestStatementMillis();
+
+    /**
+     * @return The slowest statement of the run, shortened to 200 characters
+     */
+    String getSlowestStatement();
+
+    /**
+     * @return How often a statement was executed again after a transient failure in the current or last run
+     */
+    long getStatementRetries();
+
+    /**
+     * @return How often a migration was executed again after its transaction was rolled back in the current or last run
+     */
+    long getTransactionRetries();
+
+    long getDiscoveryMillis();
+
+    long getCommitMillis();
+}
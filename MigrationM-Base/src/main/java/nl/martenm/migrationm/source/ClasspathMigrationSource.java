@@ -0,0 +1,71 @@
+package nl.martenm.migrationm.source;
+
+import nl.martenm.migrationm.api.InputStreamProvider;
+import nl.martenm.migrationm.api.MigrationSource;
+
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads migrations from a folder on the classpath of a ClassLoader.
+ *
+ * Every location of the folder on the classpath is listed, both directories and JAR files.
+ * The migrations themselves are opened through the ClassLoader.
+ */
+public class ClasspathMigrationSource implements MigrationSource {
+
+    private final ClassLoader classLoader;
+    private final String folder;
+
+    /**
+     * @param classLoader The ClassLoader used to find the folder
+     * @param folder The folder on the classpath, for example "migrations"
+     */
+    public ClasspathMigrationSource(ClassLoader classLoader, String folder) {
+        this.classLoader = classLoader;
+        this.folder = folder;
+    }
+
+    @Override
+    public List<String> list() throws IOException {
+        Set<String> files = new LinkedHashSet<>();
+
+        Enumeration<URL> locations = classLoader.getResources(folder);
+        while (locations.hasMoreElements()) {
+            URL location = locations.nextElement();
+
+            try {
+                if (location.getProtocol().equals("file")) {
+                    files.addAll(new DirectoryMigrationSource(Paths.get(location.toURI())).list());
+                } else if (location.getProtocol().equals("jar")) {
+                    JarURLConnection connection = (JarURLConnection) location.openConnection();
+                    URL jar = connection.getJarFileURL();
+                    files.addAll(new ZipMigrationSource(Paths.get(jar.toURI()), folder).list());
+                }
+            } catch (URISyntaxException ex) {
+                throw new IOException("Invalid classpath location: " + location, ex);
+            }
+        }
+
+        return new ArrayList<>(files);
+    }
+
+    @Override
+    public InputStreamProvider provider(String fileName) {
+        String resource = folder + "/" + fileName;
+        return () -> classLoader.getResourceAsStream(resource);
+    }
+
+    @Override
+    public String describe() {
+        return "classpath:" + folder;
+    }
+}
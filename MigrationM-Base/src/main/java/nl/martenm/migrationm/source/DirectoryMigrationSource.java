@@ -0,0 +1,59 @@
+package nl.martenm.migrationm.source;
+
+import nl.martenm.migrationm.api.InputStreamProvider;
+import nl.martenm.migrationm.api.MigrationSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads migrations from a directory on the file system.
+ * This is for example used when the program runs from exploded class directories.
+ */
+public class DirectoryMigrationSource implements MigrationSource {
+
+    private final Path directory;
+
+    /**
+     * @param directory The directory that contains the migrations
+     */
+    public DirectoryMigrationSource(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public List<String> list() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .map(path -> path.getFileName().toString())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public InputStreamProvider provider(String fileName) {
+        Path file = directory.resolve(fileName);
+        return () -> {
+            try {
+                return Files.newInputStream(file);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        };
+    }
+
+    @Override
+    public String describe() {
+        return directory.toString();
+    }
+}
@@ -0,0 +1,432 @@
+package nl.martenm.migrationm.source;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationSource;
+import nl.martenm.migrationm.util.Checksums;
+import nl.martenm.migrationm.util.Compression;
+import nl.martenm.migrationm.util.DataFileReader;
+import nl.martenm.migrationm.util.MigrationNames;
+import nl.martenm.migrationm.util.SqlStatementReader;
+import nl.martenm.migrationm.util.StatementIterator;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * All migrations of a folder compiled into a single file, usually written at build time by the MigrationM maven plugin.
+ *
+ * The statements of the SQL migrations are split when the bundle is written, so they don't have to be split on every start.
+ * A bundle in a directory is memory mapped, a bundle inside a JAR file is read with a single read. Migrations and
+ * statements are slices of that buffer, a statement is only decoded when it is executed.
+ *
+ * Layout (big endian, offsets are from the start of the bundle):
+ *   header:     magic "MGMB" (int) - version (short) - flags (byte) - reserved (byte) - migration count (int)
+ *   migrations: epoch second UTC (long) - name offset (int) - name length (int) - checksum offset (int)
+ *               content offset (int) - content length (int) - statements offset (int) - statement count (int)
+ *   data:       names (UTF-8), checksums (32 bytes SHA-256), contents (the original files)
+ *               and statements (line (int) - length (int) - UTF-8 bytes)
+ *
+ * Data migrations (CSV and TSV) have a statement count of -1, they are read from their content. Compressed migrations
+ * (.gz) are stored compressed and also have a statement count of -1, their checksum is that of the decompressed content.
+ */
+public class MigrationBundle {
+
+    public static final int MAGIC = 0x4D474D42;
+    public static final short VERSION = 1;
+
+    private static final int FLAG_BACKSLASH_ESCAPES = 1;
+    private static final int FLAG_HASH_COMMENTS = 2;
+    private static final int FLAG_DOLLAR_QUOTES = 4;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 36;
+
+    private final ByteBuffer buffer;
+    private final boolean backslashEscapes;
+    private final boolean hashComments;
+    private final boolean dollarQuotes;
+    private final int count;
+
+    private MigrationBundle(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a migration bundle.");
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported migration bundle version: " + buffer.getShort(4));
+        }
+
+        this.buffer = buffer;
+        int flags = buffer.get(6);
+        this.backslashEscapes = (flags & FLAG_BACKSLASH_ESCAPES) != 0;
+        this.hashComments = (flags & FLAG_HASH_COMMENTS) != 0;
+        this.dollarQuotes = (flags & FLAG_DOLLAR_QUOTES) != 0;
+        this.count = buffer.getInt(8);
+
+        if (count < 0 || HEADER_SIZE + (long) count * ENTRY_SIZE > buffer.limit()) {
+            throw new IOException("Truncated migration bundle.");
+        }
+    }
+
+    /**
+     * The location of the bundle of a migration folder on the classpath.
+     * @param folder The folder that contains the migrations, for example "migrations"
+     * @return The resource name of the bundle
+     */
+    public static String resourceName(String folder) {
+        return "META-INF/migrationm/" + folder + ".bundle";
+    }
+
+    /**
+     * Memory maps a bundle. The file can't be changed while the bundle is in use.
+     * @param file The bundle file
+     * @return The bundle
+     * @throws IOException When the file could not be mapped or is not a bundle
+     */
+    public static MigrationBundle map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The migration bundle " + file + " is larger than 2 GB.");
+            }
+            // The mapping stays valid after the channel has been closed.
+            return new MigrationBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a bundle into memory. The stream is closed afterwards.
+     * @param stream The stream containing the bundle
+     * @param size The size of the bundle or -1 if unknown
+     * @return The bundle
+     * @throws IOException When the bundle could not be read or is malformed
+     */
+    public static MigrationBundle read(InputStream stream, long size) throws IOException {
+        try (InputStream input = stream) {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The migration bundle is larger than 2 GB.");
+            }
+
+            if (size >= 0) {
+                byte[] bytes = new byte[(int) size];
+                new DataInputStream(input).readFully(bytes);
+                return new MigrationBundle(ByteBuffer.wrap(bytes));
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] bytes = new byte[8192];
+            int read;
+            while ((read = input.read(bytes)) != -1) {
+                output.write(bytes, 0, read);
+            }
+            return new MigrationBundle(ByteBuffer.wrap(output.toByteArray()));
+        }
+    }
+
+    /**
+     * Loads a bundle from a URL, for example of a resource. Files are memory mapped, everything else is read.
+     * @param url The location of the bundle
+     * @return The bundle
+     * @throws IOException When the bundle could not be loaded or is malformed
+     */
+    public static MigrationBundle load(URL url) throws IOException {
+        if (url.getProtocol().equals("file")) {
+            try {
+                return map(Paths.get(url.toURI()));
+            } catch (URISyntaxException | IllegalArgumentException ex) {
+                // Read it as a stream instead.
+            }
+        }
+
+        URLConnection connection = url.openConnection();
+        return read(connection.getInputStream(), connection.getContentLengthLong());
+    }
+
+    /**
+     * Compiles the migrations of a source into a bundle.
+     * @param source The source of the migrations
+     * @param stream The stream to write to, it is NOT closed
+     * @param backslashEscapes True if the statements should be split with MySQL style backslash escapes
+     * @param hashComments True if the statements should be split with MySQL style # comments
+     * @return The amount of migrations in the bundle
+     * @throws IOException When a migration could not be read or writing fails
+     */
+    public static int write(MigrationSource source, OutputStream stream, boolean backslashEscapes, boolean hashComments) throws IOException {
+        return write(source, stream, backslashEscapes, hashComments, false);
+    }
+
+    /**
+     * Compiles the migrations of a source into a bundle.
+     * @param source The source of the migrations
+     * @param stream The stream to write to, it is NOT closed
+     * @param backslashEscapes True if the statements should be split with MySQL style backslash escapes
+     * @param hashComments True if the statements should be split with MySQL style # comments
+     * @param dollarQuotes True if the statements should be split with PostgreSQL style dollar quotes
+     * @return The amount of migrations in the bundle
+     * @throws IOException When a migration could not be read or writing fails
+     */
+    public static int write(MigrationSource source, OutputStream stream, boolean backslashEscapes, boolean hashComments,
+                            boolean dollarQuotes) throws IOException {
+        List<String> names = new ArrayList<>(source.list());
+        List<Long> dates = new ArrayList<>();
+        for (String name : names) {
+            dates.add(MigrationNames.parseEpochSecond(name));
+        }
+
+        // Sort by date, like the index.
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(dates.get(a), dates.get(b)));
+
+        int dataStart = HEADER_SIZE + names.size() * ENTRY_SIZE;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream dataOutput = new DataOutputStream(data);
+        ByteBuffer entries = ByteBuffer.allocate(names.size() * ENTRY_SIZE);
+
+        for (int index : order) {
+            String name = names.get(index);
+            byte[] content;
+            try (InputStream input = source.provider(name).getInputStream()) {
+                if (input == null) {
+                    throw new IOException("The migration " + name + " could not be opened.");
+                }
+                content = readAll(input);
+            }
+
+            entries.putLong(dates.get(index));
+
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            entries.putInt(offset(dataStart, data)).putInt(nameBytes.length);
+            data.write(nameBytes);
+
+            entries.putInt(offset(dataStart, data));
+            data.write(digest(name, content));
+
+            entries.putInt(offset(dataStart, data)).putInt(content.length);
+            data.write(content);
+
+            entries.putInt(offset(dataStart, data));
+            if (DataFileReader.Format.of(name) != null || Compression.isCompressed(name)) {
+                entries.putInt(-1);
+                continue;
+            }
+
+            int statements = 0;
+            try (SqlStatementReader reader = new SqlStatementReader(new ByteArrayInputStream(content))
+                    .backslashEscapes(backslashEscapes)
+                    .hashComments(hashComments)
+                    .dollarQuotes(dollarQuotes)) {
+                String sql;
+                while ((sql = reader.next()) != null) {
+                    byte[] bytes = sql.getBytes(StandardCharsets.UTF_8);
+                    dataOutput.writeInt(reader.getStatementLine());
+                    dataOutput.writeInt(bytes.length);
+                    dataOutput.write(bytes);
+                    statements++;
+                }
+            }
+            entries.putInt(statements);
+        }
+        offset(dataStart, data);
+
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeByte((backslashEscapes ? FLAG_BACKSLASH_ESCAPES : 0) | (hashComments ? FLAG_HASH_COMMENTS : 0)
+                | (dollarQuotes ? FLAG_DOLLAR_QUOTES : 0));
+        output.writeByte(0);
+        output.writeInt(names.size());
+        output.write(entries.array());
+        data.writeTo(output);
+        output.flush();
+
+        return names.size();
+    }
+
+    /**
+     * The SHA-256 digest of the content, a compressed migration is digested while it is decompressed.
+     */
+    private static byte[] digest(String name, byte[] content) throws IOException {
+        MessageDigest digest = Checksums.newDigest();
+        if (!Compression.isCompressed(name)) {
+            return digest.digest(content);
+        }
+
+        try (InputStream input = Compression.decompress(name, new ByteArrayInputStream(content))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static int offset(int dataStart, ByteArrayOutputStream data) throws IOException {
+        long offset = (long) dataStart + data.size();
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("The migrations don't fit in a bundle of 2 GB.");
+        }
+        return (int) offset;
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] bytes = new byte[8192];
+        int read;
+        while ((read = input.read(bytes)) != -1) {
+            output.write(bytes, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * The migrations in this bundle, sorted by date.
+     * @return The migrations
+     */
+    public List<Migration> getMigrations() {
+        List<Migration> migrations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            migrations.add(migration(HEADER_SIZE + i * ENTRY_SIZE));
+        }
+        return migrations;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private Migration migration(int entry) {
+        LocalDateTime date = LocalDateTime.ofEpochSecond(buffer.getLong(entry), 0, ZoneOffset.UTC);
+        String name = decode(buffer.getInt(entry + 8), buffer.getInt(entry + 12));
+
+        byte[] checksum = new byte[32];
+        ByteBuffer view = buffer.duplicate();
+        view.position(buffer.getInt(entry + 16));
+        view.get(checksum);
+
+        ByteBuffer content = slice(buffer.getInt(entry + 20), buffer.getInt(entry + 24));
+        int statements = buffer.getInt(entry + 28);
+        int statementCount = buffer.getInt(entry + 32);
+
+        return new Migration(date, name, () -> new ByteBufferInputStream(content.duplicate()), Checksums.toHex(checksum)) {
+            @Override
+            public StatementIterator getStatements(boolean backslashEscapes, boolean hashComments, boolean dollarQuotes) {
+                // Statements split for another dialect are split again while reading.
+                if (statementCount < 0 || backslashEscapes != MigrationBundle.this.backslashEscapes
+                        || hashComments != MigrationBundle.this.hashComments || dollarQuotes != MigrationBundle.this.dollarQuotes) {
+                    return null;
+                }
+                return new BundledStatements(statements, statementCount);
+            }
+        };
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+    private String decode(int offset, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        return StandardCharsets.UTF_8.decode(slice(offset, length)).toString();
+    }
+
+    /**
+     * Walks the statements of a migration, every statement is decoded when it's requested.
+     */
+    private class BundledStatements implements StatementIterator {
+
+        private int position;
+        private int remaining;
+        private int line = 1;
+
+        BundledStatements(int position, int count) {
+            this.position = position;
+            this.remaining = count;
+        }
+
+        @Override
+        public String next() {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+
+            line = buffer.getInt(position);
+            int length = buffer.getInt(position + 4);
+            String statement = decode(position + 8, length);
+            position += 8 + length;
+            return statement;
+        }
+
+        @Override
+        public int getStatementLine() {
+            return line;
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+        }
+    }
+
+    /**
+     * An InputStream over a slice of the bundle.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package nl.martenm.migrationm.source;
+
+import nl.martenm.migrationm.api.MigrationSource;
+import nl.martenm.migrationm.util.Checksums;
+import nl.martenm.migrationm.util.Compression;
+import nl.martenm.migrationm.util.MigrationNames;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A precomputed list of the migrations in a folder, usually written at build time by the MigrationM maven plugin.
+ *
+ * When an index is present the migrations don't have to be located and their names don't have to be parsed on startup.
+ * The index is a small text file with one line per migration:
+ *   epoch seconds (UTC) TAB size in bytes TAB SHA-256 checksum TAB file name
+ * The size and checksum of a compressed migration are those of its decompressed contents.
+ */
+public class MigrationIndex {
+
+    public static final String HEADER = "# MigrationM index v1";
+
+    private final List<Entry> entries;
+
+    public MigrationIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * The migrations in this index.
+     * @return The entries
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * The location of the index of a migration folder on the classpath.
+     * @param folder The folder that contains the migrations, for example "migrations"
+     * @return The resource name of the index
+     */
+    public static String resourceName(String folder) {
+        return "META-INF/migrationm/" + folder + ".index";
+    }
+
+    /**
+     * Builds an index by reading every migration in the source.
+     * @param source The source of the migrations
+     * @return The index
+     * @throws IOException When a migration could not be read
+     */
+    public static MigrationIndex build(MigrationSource source) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+
+        for (String fileName : source.list()) {
+            LocalDateTime date = MigrationNames.parseDate(fileName);
+
+            MessageDigest digest = Checksums.newDigest();
+            long size = 0;
+
+            try (InputStream stream = Compression.decompress(fileName, source.provider(fileName).getInputStream())) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    size += read;
+                }
+            }
+
+            entries.add(new Entry(fileName, date, size, Checksums.toHex(digest.digest())));
+        }
+
+        entries.sort((a, b) -> a.getDate().compareTo(b.getDate()));
+        return new MigrationIndex(entries);
+    }
+
+    /**
+     * Reads an index. The stream is closed afterwards.
+     * @param stream The stream containing the index
+     * @return The index
+     * @throws IOException When the index could not be read or is malformed
+     */
+    public static MigrationIndex read(InputStream stream) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (!HEADER.equals(header)) {
+                throw new IOException("Unsupported migration index: " + header);
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+
+                String[] parts = line.split("\t", 4);
+                if (parts.length != 4) {
+                    throw new IOException("Malformed migration index line: " + line);
+                }
+
+                try {
+                    LocalDateTime date = LocalDateTime.ofEpochSecond(Long.parseLong(parts[0]), 0, ZoneOffset.UTC);
+                    entries.add(new Entry(parts[3], date, Long.parseLong(parts[1]), parts[2]));
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Malformed migration index line: " + line, ex);
+                }
+            }
+        }
+
+        return new MigrationIndex(entries);
+    }
+
+    /**
+     * Writes the index. The stream is NOT closed.
+     * @param stream The stream to write to
+     * @throws IOException When writing fails
+     */
+    public void write(OutputStream stream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.write('\n');
+
+        for (Entry entry : entries) {
+            writer.write(Long.toString(entry.getDate().toEpochSecond(ZoneOffset.UTC)));
+            writer.write('\t');
+            writer.write(Long.toString(entry.getSize()));
+            writer.write('\t');
+            writer.write(entry.getChecksum());
+            writer.write('\t');
+            writer.write(entry.getName());
+            writer.write('\n');
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * A single migration in the index.
+     */
+    public static class Entry {
+
+        private final String name;
+        private final LocalDateTime date;
+        private final long size;
+        private final String checksum;
+
+        public Entry(String name, LocalDateTime date, long size, String checksum) {
+            this.name = name;
+            this.date = date;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LocalDateTime getDate() {
+            return date;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * The hex encoded SHA-256 checksum of the migration.
+         * @return The checksum
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+}
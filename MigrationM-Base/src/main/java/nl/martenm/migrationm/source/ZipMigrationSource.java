@@ -0,0 +1,89 @@
+package nl.martenm.migrationm.source;
+
+import nl.martenm.migrationm.api.InputStreamProvider;
+import nl.martenm.migrationm.api.MigrationSource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Loads migrations from a folder inside a ZIP (or JAR) file.
+ *
+ * The names are read from the central directory of the file, so no entry has to be inflated to list them.
+ */
+public class ZipMigrationSource implements MigrationSource {
+
+    private final Path zip;
+    private final String prefix;
+
+    /**
+     * @param zip The ZIP or JAR file
+     * @param folder The folder inside the file that contains the migrations
+     */
+    public ZipMigrationSource(Path zip, String folder) {
+        this.zip = zip;
+        this.prefix = folder.endsWith("/") ? folder : folder + "/";
+    }
+
+    @Override
+    public List<String> list() throws IOException {
+        List<String> files = new ArrayList<>();
+
+        try (ZipFile file = new ZipFile(zip.toFile())) {
+            Enumeration<? extends ZipEntry> entries = file.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+
+                // Only direct children of the folder are migrations.
+                if (entry.isDirectory() || !name.startsWith(prefix) || name.indexOf('/', prefix.length()) != -1) {
+                    continue;
+                }
+
+                files.add(name.substring(prefix.length()));
+            }
+        }
+
+        return files;
+    }
+
+    @Override
+    public InputStreamProvider provider(String fileName) {
+        return () -> {
+            try {
+                ZipFile file = new ZipFile(zip.toFile());
+                ZipEntry entry = file.getEntry(prefix + fileName);
+                if (entry == null) {
+                    file.close();
+                    return null;
+                }
+
+                // Closing the stream also closes the ZIP file.
+                return new FilterInputStream(file.getInputStream(entry)) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            file.close();
+                        }
+                    }
+                };
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        };
+    }
+
+    @Override
+    public String describe() {
+        return zip + "!/" + prefix;
+    }
+}
@@ -0,0 +1,62 @@
+package nl.martenm.migrationm.util;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the n-th delay is a random value between 0 and min(max, initial * 2^n).
+ *
+ * The jitter spreads out nodes that started waiting at the same moment, so they don't all poll the database
+ * at once. Not thread-safe, every waiting thread should use its own backoff.
+ */
+public class Backoff {
+
+    private final long initialMillis;
+    private final long maxMillis;
+    private int attempt = 0;
+
+    /**
+     * @param initial The upper bound of the first delay
+     * @param max The largest upper bound of a delay
+     */
+    public Backoff(Duration initial, Duration max) {
+        this.initialMillis = Math.max(1, initial.toMillis());
+        this.maxMillis = Math.max(initialMillis, max.toMillis());
+    }
+
+    /**
+     * The next delay, every call increases the upper bound until it reaches the maximum.
+     * @return The delay in milliseconds
+     */
+    public long nextDelayMillis() {
+        // Shifting is only safe while the result stays below the maximum.
+        long bound = attempt < 62 && initialMillis <= maxMillis >> attempt ? initialMillis << attempt : maxMillis;
+        attempt++;
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * Sleeps for the next delay.
+     * @param deadline The System.nanoTime() after which there should be no more sleeping
+     * @throws InterruptedException When the thread has been interrupted
+     */
+    public void sleep(long deadline) throws InterruptedException {
+        long remaining = (deadline - System.nanoTime()) / 1000000;
+        Thread.sleep(Math.max(0, Math.min(nextDelayMillis(), remaining)));
+    }
+
+    /**
+     * The amount of delays that have been handed out.
+     * @return The amount of attempts
+     */
+    public int getAttempts() {
+        return attempt;
+    }
+
+    /**
+     * Starts again with the initial delay.
+     */
+    public void reset() {
+        attempt = 0;
+    }
+}
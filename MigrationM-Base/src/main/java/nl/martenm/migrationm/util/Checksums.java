@@ -0,0 +1,62 @@
+package nl.martenm.migrationm.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the checksums used to identify the contents of migrations.
+ */
+public final class Checksums {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Checksums() {
+
+    }
+
+    /**
+     * Creates a new SHA-256 digest.
+     * @return The digest
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Streams the input through a SHA-256 digest. The stream is NOT closed.
+     * @param stream The stream to digest
+     * @return The hex encoded checksum
+     * @throws IOException When reading the stream fails
+     */
+    public static String sha256(InputStream stream) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param bytes The bytes to encode
+     * @return The lowercase hex representation
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,59 @@
+package nl.martenm.migrationm.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Migrations compressed with gzip, recognized by the .gz extension, e.g. 2024-3-1-12.00-seed.sql.gz.
+ *
+ * They are decompressed while they are read, so the contents never have to fit in memory. The checksum of a
+ * compressed migration is computed over the decompressed contents, it does not depend on how it was compressed.
+ */
+public final class Compression {
+
+    private static final String EXTENSION = ".gz";
+    private static final int BUFFER_SIZE = 65536;
+
+    private Compression() {
+
+    }
+
+    /**
+     * @param fileName The file name of the migration
+     * @return True if the migration is compressed with gzip
+     */
+    public static boolean isCompressed(String fileName) {
+        return fileName.regionMatches(true, fileName.length() - EXTENSION.length(), EXTENSION, 0, EXTENSION.length());
+    }
+
+    /**
+     * The file name without the compression extension, e.g. 2024-3-1-12.00-seed.sql for 2024-3-1-12.00-seed.sql.gz.
+     * @param fileName The file name of the migration
+     * @return The name of the decompressed migration, the name itself if it's not compressed
+     */
+    public static String decompressedName(String fileName) {
+        return isCompressed(fileName) ? fileName.substring(0, fileName.length() - EXTENSION.length()) : fileName;
+    }
+
+    /**
+     * Decompresses the stream of a compressed migration. The compressed bytes are read in blocks of 64 KiB.
+     * @param fileName The file name of the migration
+     * @param stream The stream of the migration or NULL
+     * @return A decompressing stream, or the stream itself if the migration is not compressed
+     * @throws IOException When the stream does not start with a gzip header
+     */
+    public static InputStream decompress(String fileName, InputStream stream) throws IOException {
+        if (stream == null || !isCompressed(fileName)) {
+            return stream;
+        }
+
+        try {
+            return new GZIPInputStream(stream, BUFFER_SIZE);
+        } catch (IOException ex) {
+            stream.close();
+            throw ex;
+        }
+    }
+
+}
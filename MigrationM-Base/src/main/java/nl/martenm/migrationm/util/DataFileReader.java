@@ -0,0 +1,221 @@
+package nl.martenm.migrationm.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the records of a CSV or TSV data file one by one, the file is never loaded into memory as a whole.
+ *
+ * CSV follows RFC 4180: fields can be quoted with " and a quote inside a quoted field is written as "".
+ * An empty unquoted field is NULL, an empty quoted field ("") is an empty string.
+ *
+ * TSV uses the text format of MySQL and PostgreSQL: fields are separated by tabs, \t \n \r and \\ are escapes
+ * and \N is NULL.
+ */
+public class DataFileReader implements Closeable {
+
+    /**
+     * The supported data file formats.
+     */
+    public enum Format {
+        CSV, TSV;
+
+        /**
+         * Finds the format of a data file by its extension.
+         * @param fileName The file name
+         * @return The format or NULL if the file is not a data file
+         */
+        public static Format of(String fileName) {
+            String lower = Compression.decompressedName(fileName).toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".csv")) return CSV;
+            if (lower.endsWith(".tsv")) return TSV;
+            return null;
+        }
+    }
+
+    private final Reader reader;
+    private final Format format;
+
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> record = new ArrayList<>();
+    private long line = 1;
+    private long recordLine = 1;
+    private boolean first = true;
+
+    public DataFileReader(InputStream stream, Format format) {
+        this(new InputStreamReader(stream, StandardCharsets.UTF_8), format);
+    }
+
+    public DataFileReader(Reader reader, Format format) {
+        this.reader = reader;
+        this.format = format;
+    }
+
+    /**
+     * Reads the next record. Empty lines are skipped.
+     * @return The fields of the record, NULL fields are null. NULL at the end of the file.
+     * @throws IOException When the file could not be read or is malformed
+     */
+    public String[] next() throws IOException {
+        while (true) {
+            String[] next = format == Format.CSV ? nextCsv() : nextTsv();
+            if (next == null || next.length > 1 || next[0] != null) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * The line the last record started on.
+     * @return The line number, starting at 1
+     */
+    public long getLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+
+            // Skip the byte order mark some editors put in front of UTF-8 files.
+            if (first && buffer[0] == '\uFEFF') {
+                position = 1;
+                if (limit == 1) return read();
+            }
+            first = false;
+        }
+        return buffer[position++];
+    }
+
+    private void unread() {
+        position--;
+    }
+
+    /**
+     * Consumes the rest of a line ending, \r\n is a single line ending.
+     */
+    private void endOfLine(int c) throws IOException {
+        if (c == -1) {
+            return;
+        }
+
+        if (c == '\r') {
+            int next = read();
+            if (next != '\n' && next != -1) unread();
+        }
+        line++;
+    }
+
+    private String[] nextCsv() throws IOException {
+        record.clear();
+        recordLine = line;
+
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+
+        while (true) {
+            field.setLength(0);
+            boolean quoted = false;
+
+            if (c == '"') {
+                quoted = true;
+                while (true) {
+                    c = read();
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field in the record that starts on line " + recordLine);
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') break;
+                    } else if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else {
+                while (c != -1 && c != ',' && c != '\n' && c != '\r') {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+
+            record.add(quoted || field.length() > 0 ? field.toString() : null);
+
+            if (c == ',') {
+                c = read();
+                continue;
+            }
+
+            if (c != '\n' && c != '\r' && c != -1) {
+                throw new IOException("Unexpected character after a quoted field on line " + line);
+            }
+
+            endOfLine(c);
+            return record.toArray(new String[0]);
+        }
+    }
+
+    private String[] nextTsv() throws IOException {
+        record.clear();
+        recordLine = line;
+
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+
+        field.setLength(0);
+        boolean isNull = false;
+
+        while (true) {
+            if (c == '\t' || c == '\n' || c == '\r' || c == -1) {
+                record.add(isNull ? null : field.length() == 0 && record.isEmpty() && c != '\t' ? null : field.toString());
+                field.setLength(0);
+                isNull = false;
+
+                if (c == '\t') {
+                    c = read();
+                    continue;
+                }
+
+                endOfLine(c);
+                return record.toArray(new String[0]);
+            }
+
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 't': field.append('\t'); break;
+                    case 'n': field.append('\n'); break;
+                    case 'r': field.append('\r'); break;
+                    case 'N': isNull = true; break;
+                    case -1: throw new IOException("Unterminated escape on line " + line);
+                    default: field.append((char) c);
+                }
+            } else {
+                field.append((char) c);
+            }
+
+            c = read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
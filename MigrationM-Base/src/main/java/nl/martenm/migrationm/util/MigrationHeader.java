@@ -0,0 +1,111 @@
+package nl.martenm.migrationm.util;
+
+import nl.martenm.migrationm.api.Migration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The optional header of a migration. The header is made up of comments at the top of the file:
+ *
+ *   -- @depends: 2020-1-15-10.34-create_users_table.sql, 2020-1-16-09.00-create_items_table.sql
+ *   -- @tables: users, items
+ *
+ * Dependencies are the file names of other migrations that have to be executed first.
+ * Tables are the tables the migration touches. Migrations that touch different tables can be executed in parallel.
+ * A migration without tables is assumed to touch everything.
+ */
+public class MigrationHeader {
+
+    private static final String DEPENDS = "@depends:";
+    private static final String TABLES = "@tables:";
+
+    private final Set<String> dependencies;
+    private final Set<String> tables;
+
+    public MigrationHeader(Set<String> dependencies, Set<String> tables) {
+        this.dependencies = dependencies;
+        this.tables = tables;
+    }
+
+    /**
+     * The file names of the migrations that should be executed before this one.
+     * @return The dependencies
+     */
+    public Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * The tables this migration touches, in lower case.
+     * @return The tables or an empty set if not declared
+     */
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * Checks if two migrations might touch the same tables and can therefore not run at the same time.
+     * @param other The header of the other migration
+     * @return True if the migrations might conflict
+     */
+    public boolean conflictsWith(MigrationHeader other) {
+        if (tables.isEmpty() || other.tables.isEmpty()) {
+            return true;
+        }
+
+        for (String table : tables) {
+            if (other.tables.contains(table)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads the header of a migration. Only the comments at the top of the file are read.
+     * @param migration The migration
+     * @return The header, empty if the migration has none
+     * @throws IOException When the migration could not be read
+     */
+    public static MigrationHeader read(Migration migration) throws IOException {
+        Set<String> dependencies = new LinkedHashSet<>();
+        Set<String> tables = new LinkedHashSet<>();
+
+        InputStream stream = migration.getInputStream();
+        if (stream == null) {
+            return new MigrationHeader(dependencies, tables);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (!line.startsWith("--")) break;
+
+                String comment = line.substring(2).trim();
+                if (comment.startsWith(DEPENDS)) {
+                    split(comment.substring(DEPENDS.length()), dependencies, false);
+                } else if (comment.startsWith(TABLES)) {
+                    split(comment.substring(TABLES.length()), tables, true);
+                }
+            }
+        }
+
+        return new MigrationHeader(dependencies, tables);
+    }
+
+    private static void split(String values, Set<String> target, boolean lowerCase) {
+        for (String value : values.split(",")) {
+            value = value.trim();
+            if (value.isEmpty()) continue;
+            target.add(lowerCase ? value.toLowerCase(Locale.ROOT) : value);
+        }
+    }
+}
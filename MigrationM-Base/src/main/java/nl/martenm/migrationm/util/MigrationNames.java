@@ -0,0 +1,138 @@
+package nl.martenm.migrationm.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses the date in front of migration file names.
+ * Expected format: yyyy-M-d-HH.mm-description.extension
+ *
+ * The parser is written by hand because it runs for every migration on startup, it does not allocate
+ * anything for valid names.
+ */
+public final class MigrationNames {
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private MigrationNames() {
+
+    }
+
+    /**
+     * Parses the date of a migration file name.
+     * @param fileName The full file name
+     * @return The date of the migration
+     * @throws DateTimeParseException When the name does not start with a valid date
+     */
+    public static LocalDateTime parseDate(String fileName) {
+        return LocalDateTime.ofEpochSecond(parseEpochSecond(fileName), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Parses the date of a migration file name as seconds since 1970-01-01T00:00 (the date is read as UTC).
+     * @param fileName The full file name
+     * @return The epoch second of the migration
+     * @throws DateTimeParseException When the name does not start with a valid date
+     */
+    public static long parseEpochSecond(String fileName) {
+        // Everything after the minutes is ignored.
+        int position = 0;
+
+        int year = 0;
+        for (int end = position + 4; position < end; position++) {
+            year = year * 10 + digit(fileName, position);
+        }
+        position = expect(fileName, position, '-');
+
+        int monthStart = position;
+        int month = digit(fileName, position++);
+        if (isDigit(fileName, position)) month = month * 10 + digit(fileName, position++);
+        position = expect(fileName, position, '-');
+
+        int dayStart = position;
+        int day = digit(fileName, position++);
+        if (isDigit(fileName, position)) day = day * 10 + digit(fileName, position++);
+        position = expect(fileName, position, '-');
+
+        int hourStart = position;
+        int hour = digit(fileName, position) * 10 + digit(fileName, position + 1);
+        position = expect(fileName, position + 2, '.');
+
+        int minute = digit(fileName, position) * 10 + digit(fileName, position + 1);
+
+        if (month < 1 || month > 12) {
+            throw new DateTimeParseException("Invalid month " + month + " in migration name: " + fileName, fileName, monthStart);
+        }
+        if (day < 1 || day > daysInMonth(year, month)) {
+            throw new DateTimeParseException("Invalid day " + day + " in migration name: " + fileName, fileName, dayStart);
+        }
+        if (hour > 23 || minute > 59) {
+            throw new DateTimeParseException("Invalid time " + hour + "." + minute + " in migration name: " + fileName, fileName, hourStart);
+        }
+
+        return (epochDay(year, month, day) * 24 + hour) * 3600 + minute * 60;
+    }
+
+    /**
+     * The description of a migration file name, the part between the date and the extension.
+     * For example 2024-1-1-10.00-items.csv and 2024-1-1-10.00-items.csv.gz have the description items.
+     * @param fileName The full file name
+     * @return The description, empty if the name has none
+     */
+    public static String description(String fileName) {
+        fileName = Compression.decompressedName(fileName);
+
+        // The minutes are the two digits after the first dot.
+        int start = fileName.indexOf('.') + 3;
+        if (start < fileName.length() && (fileName.charAt(start) == '-' || fileName.charAt(start) == '_')) {
+            start++;
+        }
+
+        int end = fileName.lastIndexOf('.');
+        return end > start ? fileName.substring(start, end) : "";
+    }
+
+    private static boolean isDigit(String text, int position) {
+        return position < text.length() && text.charAt(position) >= '0' && text.charAt(position) <= '9';
+    }
+
+    private static int digit(String text, int position) {
+        if (!isDigit(text, position)) {
+            throw new DateTimeParseException("Expected a digit at position " + position + " of migration name: " + text, text, position);
+        }
+        return text.charAt(position) - '0';
+    }
+
+    private static int expect(String text, int position, char expected) {
+        if (position >= text.length() || text.charAt(position) != expected) {
+            throw new DateTimeParseException("Expected '" + expected + "' at position " + position + " of migration name: " + text, text, position);
+        }
+        return position + 1;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return month == 2 && isLeapYear(year) ? 29 : DAYS_IN_MONTH[month - 1];
+    }
+
+    /**
+     * The days since 1970-01-01, the same algorithm as {@link java.time.LocalDate#toEpochDay()}.
+     */
+    private static long epochDay(long year, int month, int day) {
+        long total = 365 * year;
+        total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear((int) year)) {
+                total--;
+            }
+        }
+        return total - 719528;
+    }
+}
@@ -0,0 +1,442 @@
+package nl.martenm.migrationm.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a stream of SQL into separate statements.
+ *
+ * The reader works on fixed size char buffers and only keeps the statement that is currently being read in memory.
+ * Semicolons inside quotes, comments and BEGIN ... END blocks (triggers, procedures) do not end a statement.
+ * PostgreSQL style dollar quotes ($$ ... $$ or $tag$ ... $tag$) can be enabled for function bodies.
+ *
+ * Comments in front of a statement are dropped. Statements that only consist of whitespace and comments are skipped.
+ */
+public class SqlStatementReader implements StatementIterator {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int NORMAL = 0;
+    private static final int SINGLE_QUOTE = 1;
+    private static final int DOUBLE_QUOTE = 2;
+    private static final int BACKTICK = 3;
+    private static final int LINE_COMMENT = 4;
+    private static final int BLOCK_COMMENT = 5;
+    private static final int DOLLAR_TAG = 6;
+    private static final int DOLLAR_QUOTE = 7;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+
+    private boolean backslashEscapes = false;
+    private boolean hashComments = false;
+    private boolean dollarQuotes = false;
+
+    private final StringBuilder statement = new StringBuilder(256);
+    private final char[] word = new char[16];
+    private int wordLength = 0;
+    private boolean wordTooLong = false;
+
+    private int state;
+    private boolean significant;
+    private boolean firstWord;
+    private boolean createStatement;
+    private int blockDepth;
+    private boolean pendingEnd;
+
+    /**
+     * Where the tag of the current dollar quote starts and where its body starts in the statement.
+     */
+    private int dollarTagStart;
+    private int dollarBodyStart;
+    private String dollarTag;
+
+    private int line = 1;
+    private int statementLine = 1;
+
+    /**
+     * Creates a reader that decodes the stream as UTF-8.
+     * @param stream The stream containing the SQL
+     */
+    public SqlStatementReader(InputStream stream) {
+        this(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param reader The reader containing the SQL
+     */
+    public SqlStatementReader(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param reader The reader containing the SQL
+     * @param bufferSize The amount of chars that are read at once
+     */
+    public SqlStatementReader(Reader reader, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The buffer size should be at least 1.");
+        }
+
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Enables MySQL style backslash escapes inside quoted strings.
+     * @param backslashEscapes True if a backslash escapes the next character
+     * @return This reader
+     */
+    public SqlStatementReader backslashEscapes(boolean backslashEscapes) {
+        this.backslashEscapes = backslashEscapes;
+        return this;
+    }
+
+    /**
+     * Enables MySQL style comments starting with a #.
+     * @param hashComments True if # starts a line comment
+     * @return This reader
+     */
+    public SqlStatementReader hashComments(boolean hashComments) {
+        this.hashComments = hashComments;
+        return this;
+    }
+
+    /**
+     * Enables PostgreSQL style dollar quotes, a $tag$ is only closed by the same $tag$.
+     * @param dollarQuotes True if $$ and $tag$ start a quoted string
+     * @return This reader
+     */
+    public SqlStatementReader dollarQuotes(boolean dollarQuotes) {
+        this.dollarQuotes = dollarQuotes;
+        return this;
+    }
+
+    @Override
+    public int getStatementLine() {
+        return statementLine;
+    }
+
+    /**
+     * Reads the next statement. The trailing semicolon is not included.
+     * @return The next statement or NULL if the end of the stream has been reached
+     * @throws IOException When the underlying reader fails
+     */
+    @Override
+    public String next() throws IOException {
+        resetStatement();
+
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            if (ch == '\n') line++;
+
+            switch (state) {
+                case DOLLAR_TAG:
+                    if (handleDollarTag(ch)) break;
+                    // Not a dollar quote (a positional parameter for example), the character is handled as usual.
+                    state = NORMAL;
+                case NORMAL:
+                    if (handleNormal(ch)) {
+                        if (significant) {
+                            return finishStatement();
+                        }
+                        resetStatement();
+                    }
+                    break;
+                case SINGLE_QUOTE:
+                    handleQuoted(ch, '\'');
+                    break;
+                case DOUBLE_QUOTE:
+                    handleQuoted(ch, '"');
+                    break;
+                case DOLLAR_QUOTE:
+                    statement.append(ch);
+                    if (ch == '$' && endsWithDollarTag()) {
+                        state = NORMAL;
+                    }
+                    break;
+                case BACKTICK:
+                    statement.append(ch);
+                    if (ch == '`') state = NORMAL;
+                    break;
+                case LINE_COMMENT:
+                    if (significant) statement.append(ch);
+                    if (ch == '\n') state = NORMAL;
+                    break;
+                case BLOCK_COMMENT:
+                    if (significant) statement.append(ch);
+                    if (ch == '*' && peek() == '/') {
+                        read();
+                        if (significant) statement.append('/');
+                        state = NORMAL;
+                    }
+                    break;
+            }
+        }
+
+        endWord();
+        return significant ? finishStatement() : null;
+    }
+
+    /**
+     * Handles a character outside of quotes and comments.
+     * @return True if the character ends the current statement
+     */
+    private boolean handleNormal(char ch) throws IOException {
+        if (ch == '$' && dollarQuotes && wordLength == 0) {
+            markSignificant();
+            dollarTagStart = statement.length();
+            statement.append(ch);
+            state = DOLLAR_TAG;
+            return false;
+        }
+
+        if (isWordChar(ch)) {
+            markSignificant();
+            statement.append(ch);
+            if (wordLength < word.length) {
+                word[wordLength++] = ch;
+            } else {
+                wordTooLong = true;
+            }
+            return false;
+        }
+
+        endWord();
+
+        if (ch == ';') {
+            if (pendingEnd) {
+                pendingEnd = false;
+                blockDepth--;
+            }
+
+            if (blockDepth <= 0) {
+                return true;
+            }
+            statement.append(ch);
+            return false;
+        }
+
+        if (ch == '-' && peek() == '-') {
+            read();
+            startComment(LINE_COMMENT, "--");
+            return false;
+        }
+
+        if (ch == '#' && hashComments) {
+            startComment(LINE_COMMENT, "#");
+            return false;
+        }
+
+        if (ch == '/' && peek() == '*') {
+            read();
+            if (!significant && peek() == '!') {
+                // MySQL executable comment, these have to be sent to the server.
+                markSignificant();
+            }
+            startComment(BLOCK_COMMENT, "/*");
+            return false;
+        }
+
+        if (Character.isWhitespace(ch)) {
+            if (significant) statement.append(ch);
+            return false;
+        }
+
+        markSignificant();
+        statement.append(ch);
+
+        if (ch == '\'') state = SINGLE_QUOTE;
+        else if (ch == '"') state = DOUBLE_QUOTE;
+        else if (ch == '`') state = BACKTICK;
+
+        return false;
+    }
+
+    /**
+     * Handles a character of a possible dollar quote tag.
+     * @return False if the tag turned out not to be a dollar quote
+     */
+    private boolean handleDollarTag(char ch) {
+        if (ch == '$') {
+            statement.append(ch);
+            dollarTag = statement.substring(dollarTagStart);
+            dollarBodyStart = statement.length();
+            state = DOLLAR_QUOTE;
+            return true;
+        }
+
+        boolean first = statement.length() == dollarTagStart + 1;
+        if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_' || (!first && ch >= '0' && ch <= '9')) {
+            statement.append(ch);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean endsWithDollarTag() {
+        int start = statement.length() - dollarTag.length();
+        if (start < dollarBodyStart) return false;
+
+        for (int i = 0; i < dollarTag.length(); i++) {
+            if (statement.charAt(start + i) != dollarTag.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void handleQuoted(char ch, char quote) throws IOException {
+        statement.append(ch);
+
+        if (ch == '\\' && backslashEscapes) {
+            int next = read();
+            if (next != -1) {
+                if (next == '\n') line++;
+                statement.append((char) next);
+            }
+            return;
+        }
+
+        if (ch == quote) {
+            state = NORMAL;
+        }
+    }
+
+    private void startComment(int commentState, String opening) {
+        state = commentState;
+        if (significant) statement.append(opening);
+    }
+
+    private void markSignificant() {
+        if (!significant) {
+            significant = true;
+            statementLine = line;
+        }
+    }
+
+    /**
+     * Called when a word has been fully read. Keeps track of BEGIN ... END blocks inside CREATE statements.
+     */
+    private void endWord() {
+        if (wordLength == 0) return;
+
+        boolean isFirst = firstWord;
+        firstWord = false;
+
+        if (wordTooLong) {
+            clearWord();
+            resolvePendingEnd();
+            return;
+        }
+
+        if (isFirst) {
+            createStatement = wordEquals("CREATE");
+            clearWord();
+            return;
+        }
+
+        if (!createStatement) {
+            clearWord();
+            return;
+        }
+
+        if (pendingEnd) {
+            pendingEnd = false;
+            // END IF, END LOOP, etc. close a block that was never counted.
+            if (wordEquals("IF") || wordEquals("LOOP") || wordEquals("WHILE") || wordEquals("REPEAT")) {
+                clearWord();
+                return;
+            }
+            blockDepth--;
+        }
+
+        if (wordEquals("BEGIN") || wordEquals("CASE")) {
+            blockDepth++;
+        } else if (wordEquals("END") && blockDepth > 0) {
+            pendingEnd = true;
+        }
+
+        clearWord();
+    }
+
+    private void resolvePendingEnd() {
+        if (pendingEnd) {
+            pendingEnd = false;
+            blockDepth--;
+        }
+    }
+
+    private boolean wordEquals(String keyword) {
+        if (keyword.length() != wordLength) return false;
+        for (int i = 0; i < wordLength; i++) {
+            if (Character.toUpperCase(word[i]) != keyword.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void clearWord() {
+        wordLength = 0;
+        wordTooLong = false;
+    }
+
+    private static boolean isWordChar(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_' || ch == '$';
+    }
+
+    private String finishStatement() {
+        int end = statement.length();
+        while (end > 0 && Character.isWhitespace(statement.charAt(end - 1))) {
+            end--;
+        }
+        return statement.substring(0, end);
+    }
+
+    private void resetStatement() {
+        statement.setLength(0);
+        clearWord();
+        state = NORMAL;
+        significant = false;
+        firstWord = true;
+        createStatement = false;
+        blockDepth = 0;
+        pendingEnd = false;
+    }
+
+    private int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+
+        if (read == -1) {
+            limit = 0;
+            position = 0;
+            return false;
+        }
+
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
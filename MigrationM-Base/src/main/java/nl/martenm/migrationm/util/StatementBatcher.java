@@ -0,0 +1,248 @@
+package nl.martenm.migrationm.util;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes statements on a connection and batches runs of statements that share the same {@link StatementShape}.
+ *
+ * A run of two or more single-row INSERTs is rewritten into one PreparedStatement and sent using
+ * addBatch / executeBatch. A statement that is not followed by a statement of the same shape, and statements that
+ * cannot be parameterized, are executed exactly as they are written, after the pending batch has been flushed.
+ * The order of execution is therefore never changed.
+ *
+ * MySQL users can add rewriteBatchedStatements=true to the connection URL to send each batch as a single query.
+ */
+public class StatementBatcher implements AutoCloseable {
+
+    private final Connection connection;
+    private final int batchSize;
+    private final boolean doubleQuotedStrings;
+    private final boolean backslashEscapes;
+
+    private String shape = null;
+    private PreparedStatement prepared = null;
+    private final List<String> pending = new ArrayList<>();
+
+    // The last statement, it is only batched when the next statement has the same shape.
+    private String held = null;
+    private StatementShape heldShape = null;
+
+    private String failedStatement = null;
+    private boolean batchFailed = false;
+    private long rowCount = 0;
+
+    /**
+     * @param connection The connection the statements are executed on
+     * @param batchSize The maximum amount of statements in one batch. A value below 2 disables batching
+     * @param doubleQuotedStrings True if "text" is a string literal instead of an identifier (MySQL)
+     * @param backslashEscapes True if a backslash escapes the next character in strings (MySQL)
+     */
+    public StatementBatcher(Connection connection, int batchSize, boolean doubleQuotedStrings, boolean backslashEscapes) {
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.doubleQuotedStrings = doubleQuotedStrings;
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    /**
+     * Executes the statement or adds it to the current batch.
+     * Note that a batched statement might only be sent to the database on a later call or on {@link #flush()}.
+     * @param sql The statement
+     * @throws SQLException When the statement or a pending batch fails
+     */
+    public void execute(String sql) throws SQLException {
+        StatementShape parsed = batchSize > 1 ? StatementShape.parse(sql, doubleQuotedStrings, backslashEscapes) : null;
+
+        if (parsed == null) {
+            flush();
+            failedStatement = sql;
+            batchFailed = false;
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                if (!statement.execute()) {
+                    rowCount += Math.max(0, statement.getUpdateCount());
+                }
+            }
+            failedStatement = null;
+            return;
+        }
+
+        if (!pending.isEmpty() && parsed.getSql().equals(shape)) {
+            add(sql, parsed);
+            return;
+        }
+
+        if (held == null || !heldShape.getSql().equals(parsed.getSql())) {
+            flush();
+            held = sql;
+            heldShape = parsed;
+            return;
+        }
+
+        // The second statement of a run, both are batched.
+        String first = held;
+        StatementShape firstShape = heldShape;
+        held = null;
+        heldShape = null;
+
+        if (!parsed.getSql().equals(shape)) {
+            closePrepared();
+            // The first statement is lost when preparing fails, it can't be executed again on its own.
+            failedStatement = first;
+            batchFailed = true;
+            prepared = connection.prepareStatement(parsed.getSql());
+            shape = parsed.getSql();
+            failedStatement = null;
+        }
+
+        add(first, firstShape);
+        add(sql, parsed);
+    }
+
+    private void add(String sql, StatementShape parsed) throws SQLException {
+        List<Object> parameters = parsed.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            bind(prepared, i + 1, parameters.get(i));
+        }
+
+        prepared.addBatch();
+        pending.add(sql);
+
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Binds an extracted literal to the prepared statement.
+     * @param statement The prepared statement of the current shape
+     * @param index The index of the parameter
+     * @param value The value, a String, Long or BigDecimal
+     * @throws SQLException When the value could not be bound
+     */
+    protected void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value instanceof Long) {
+            statement.setLong(index, (Long) value);
+        } else if (value instanceof BigDecimal) {
+            statement.setBigDecimal(index, (BigDecimal) value);
+        } else {
+            statement.setString(index, (String) value);
+        }
+    }
+
+    /**
+     * Sends the pending batch or the last statement to the database.
+     * @throws SQLException When one of the batched statements fails
+     */
+    public void flush() throws SQLException {
+        if (held != null) {
+            executeHeld();
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (int count : prepared.executeBatch()) {
+                rowCount += Math.max(0, count);
+            }
+        } catch (BatchUpdateException ex) {
+            failedStatement = pending.get(failedIndex(ex.getUpdateCounts()));
+            batchFailed = true;
+            throw ex;
+        } catch (SQLException ex) {
+            failedStatement = pending.get(0);
+            batchFailed = true;
+            throw ex;
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Executes the held statement as it is written. The statement after it has already been read, so a failure
+     * is reported like a failed batch.
+     */
+    private void executeHeld() throws SQLException {
+        String sql = held;
+        held = null;
+        heldShape = null;
+
+        failedStatement = sql;
+        batchFailed = true;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (!statement.execute()) {
+                rowCount += Math.max(0, statement.getUpdateCount());
+            }
+        }
+        failedStatement = null;
+        batchFailed = false;
+    }
+
+    private int failedIndex(int[] updateCounts) {
+        if (updateCounts == null) {
+            return 0;
+        }
+
+        if (updateCounts.length < pending.size()) {
+            return updateCounts.length;
+        }
+
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * The original statement that caused the last failure.
+     * @return The failed statement or NULL if nothing failed
+     */
+    public String getFailedStatement() {
+        return failedStatement;
+    }
+
+    /**
+     * True if the last failure happened while a batch was sent. The other statements of the batch have been
+     * discarded as well, so the failed statement can't be executed again on its own.
+     * @return True if a batch failed, false if the failed statement was executed on its own
+     */
+    public boolean isBatchFailed() {
+        return batchFailed;
+    }
+
+    /**
+     * The amount of rows affected by the statements that have been sent to the database so far.
+     * Drivers that don't report the counts of batched statements (SUCCESS_NO_INFO) add nothing.
+     * @return The amount of affected rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private void closePrepared() throws SQLException {
+        if (prepared != null) {
+            prepared.close();
+            prepared = null;
+            shape = null;
+        }
+    }
+
+    /**
+     * Closes the PreparedStatement that is currently used for batching. Pending statements are NOT flushed.
+     * @throws SQLException When closing the statement fails
+     */
+    @Override
+    public void close() throws SQLException {
+        pending.clear();
+        held = null;
+        heldShape = null;
+        closePrepared();
+    }
+}
@@ -0,0 +1,24 @@
+package nl.martenm.migrationm.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The statements of a migration, one by one.
+ * Implemented by the {@link SqlStatementReader} and by migrations that have been split at build time.
+ */
+public interface StatementIterator extends Closeable {
+
+    /**
+     * The next statement. The trailing semicolon is not included.
+     * @return The next statement or NULL if there are no more statements
+     * @throws IOException When the statements could not be read
+     */
+    String next() throws IOException;
+
+    /**
+     * The line on which the statement last returned by {@link #next()} started.
+     * @return The line number, starting at 1
+     */
+    int getStatementLine();
+}
@@ -0,0 +1,442 @@
+package nl.martenm.migrationm.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The shape of a DML statement: the statement with the literals in its value positions replaced by parameters.
+ *
+ * Statements that only differ in those literals share the same shape. This allows them to be executed
+ * as a batch using a single PreparedStatement.
+ *
+ * Only literals that are a whole value are extracted: the elements of a VALUES list, the right-hand side of a
+ * SET assignment and the operand of a comparison in a WHERE clause. Literals anywhere else can change the meaning
+ * of a statement when they are bound, e.g. GROUP BY 1, DECIMAL(10, 2) or LIMIT 5, they are kept as they are.
+ */
+public class StatementShape {
+
+    private enum Clause {
+        OTHER, VALUES, SET, WHERE
+    }
+
+    private static final Set<String> COMPARISONS = new HashSet<>(Arrays.asList("=", "<>", "!=", "<", ">", "<=", ">="));
+
+    /**
+     * The tokens that may follow a value, "" is the end of the statement.
+     */
+    private static final Set<String> VALUE_END = new HashSet<>(Arrays.asList(
+            "", ",", ")", "AND", "OR", "WHERE", "FROM", "ORDER", "GROUP", "LIMIT", "OFFSET", "HAVING", "RETURNING", "UNION", "ON"));
+
+    private static final Set<String> OTHER_CLAUSES = new HashSet<>(Arrays.asList(
+            "INTO", "SELECT", "FROM", "JOIN", "USING", "ON", "GROUP", "ORDER", "LIMIT", "OFFSET", "HAVING", "RETURNING", "UNION"));
+
+    private final String sql;
+    private final List<Object> parameters;
+
+    private StatementShape(String sql, List<Object> parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    /**
+     * The statement with all extracted literals replaced by a ?.
+     * @return The parameterized SQL
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * The values of the extracted literals, in order. Values are either a String, Long or BigDecimal.
+     * @return The parameter values
+     */
+    public List<Object> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * Parses the shape of a statement.
+     * Only INSERT, REPLACE, UPDATE and DELETE statements can be parsed.
+     *
+     * @param statement The statement as returned by the {@link SqlStatementReader}
+     * @param doubleQuotedStrings True if "text" is a string literal instead of an identifier (MySQL)
+     * @param backslashEscapes True if a backslash escapes the next character in strings (MySQL)
+     * @return The shape or NULL if the statement cannot be parameterized
+     */
+    public static StatementShape parse(String statement, boolean doubleQuotedStrings, boolean backslashEscapes) {
+        if (!isDataManipulation(statement)) {
+            return null;
+        }
+
+        int length = statement.length();
+        StringBuilder sql = new StringBuilder(length);
+        List<Object> parameters = new ArrayList<>();
+
+        // Every parenthesis starts a level with its own clause, e.g. a sub query or a row of a VALUES list.
+        List<Level> levels = new ArrayList<>();
+        levels.add(new Level(Clause.OTHER, false));
+        String last = "";
+
+        int i = 0;
+        while (i < length) {
+            char ch = statement.charAt(i);
+            char previous = i > 0 ? statement.charAt(i - 1) : ' ';
+            Level level = levels.get(levels.size() - 1);
+
+            if (ch == '?') {
+                // Existing placeholders would shift the parameter indexes.
+                return null;
+            }
+
+            if (ch == '$' && !isWordChar(previous) && isDollarTag(statement, i)) {
+                // PostgreSQL dollar quoted strings may contain anything, they are not parameterized.
+                return null;
+            }
+
+            if (ch == '\'' || (ch == '"' && doubleQuotedStrings)) {
+                if (isWordChar(previous)) {
+                    // Prefixed literals like X'0F' or _utf8'text' are kept as they are.
+                    int end = skipQuoted(statement, i, ch, backslashEscapes);
+                    if (end < 0) return null;
+                    sql.append(statement, i, end);
+                    last = "'";
+                    i = end;
+                    continue;
+                }
+
+                StringBuilder value = new StringBuilder();
+                int end = readString(statement, i, ch, backslashEscapes, value);
+                if (end < 0) return null;
+
+                literal(statement, i, end, value.toString(), level, last, sql, parameters);
+                last = "'";
+                i = end;
+                continue;
+            }
+
+            if (ch == '"' || ch == '`') {
+                int end = skipQuoted(statement, i, ch, false);
+                if (end < 0) return null;
+                sql.append(statement, i, end);
+                last = "\"";
+                i = end;
+                continue;
+            }
+
+            if (ch == '-' && i + 1 < length && statement.charAt(i + 1) == '-') {
+                int end = statement.indexOf('\n', i);
+                end = end < 0 ? length : end;
+                sql.append(statement, i, end);
+                i = end;
+                continue;
+            }
+
+            if (ch == '/' && i + 1 < length && statement.charAt(i + 1) == '*') {
+                int end = statement.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                sql.append(statement, i, end);
+                i = end;
+                continue;
+            }
+
+            // A sign is part of a number when it can't be an operator, e.g. (-1, 2) or = -3.
+            boolean signed = (ch == '-' || ch == '+') && i + 1 < length && isDigit(statement.charAt(i + 1))
+                    && (last.equals("(") || last.equals(",") || COMPARISONS.contains(last));
+            if (signed || (isDigit(ch) && !isWordChar(previous) && previous != '.')) {
+                int start = signed ? i + 1 : i;
+                int end = readNumber(statement, start);
+                if (end > 0) {
+                    Object number = toNumber(statement.substring(start, end));
+                    if (number != null) {
+                        if (ch == '-') {
+                            number = number instanceof Long ? (Object) (-(Long) number) : ((BigDecimal) number).negate();
+                        }
+                        literal(statement, i, end, number, level, last, sql, parameters);
+                        last = "0";
+                        i = end;
+                        continue;
+                    }
+                }
+            }
+
+            if (isWordChar(ch)) {
+                // Copy the whole word so digits inside identifiers are never seen as numbers.
+                int end = i;
+                while (end < length && isWordChar(statement.charAt(end))) end++;
+                String word = statement.substring(i, end).toUpperCase(Locale.ROOT);
+                sql.append(statement, i, end);
+
+                if (word.equals("VALUES") || word.equals("VALUE")) {
+                    level.clause = Clause.VALUES;
+                    level.values = true;
+                } else if (word.equals("SET") || (word.equals("UPDATE") && !last.isEmpty())) {
+                    // Also ON DUPLICATE KEY UPDATE.
+                    level.clause = Clause.SET;
+                    level.values = false;
+                } else if (word.equals("WHERE")) {
+                    level.clause = Clause.WHERE;
+                    level.values = false;
+                } else if (OTHER_CLAUSES.contains(word)) {
+                    level.clause = Clause.OTHER;
+                    level.values = false;
+                }
+
+                last = word;
+                i = end;
+                continue;
+            }
+
+            if (Character.isWhitespace(ch)) {
+                sql.append(ch);
+                i++;
+                continue;
+            }
+
+            String operator = operator(statement, i);
+            if (operator.equals("(")) {
+                // The rows of a VALUES list are the only parentheses whose literals are values.
+                boolean row = level.values && (last.equals("VALUES") || last.equals("VALUE") || last.equals(","));
+                levels.add(new Level(level.clause, row));
+            } else if (operator.equals(")") && levels.size() > 1) {
+                levels.remove(levels.size() - 1);
+            }
+
+            sql.append(operator);
+            last = operator;
+            i += operator.length();
+        }
+
+        return new StatementShape(sql.toString(), parameters);
+    }
+
+    /**
+     * Appends a literal, as a parameter when it is a whole value and as it is written otherwise.
+     */
+    private static void literal(String statement, int start, int end, Object value, Level level, String last,
+                                StringBuilder sql, List<Object> parameters) {
+        String next = peek(statement, end);
+
+        boolean parameter;
+        switch (level.clause) {
+            case VALUES:
+                parameter = level.row && (last.equals("(") || last.equals(",")) && (next.equals(",") || next.equals(")"));
+                break;
+            case SET:
+                parameter = last.equals("=") && VALUE_END.contains(next);
+                break;
+            case WHERE:
+                parameter = COMPARISONS.contains(last) && VALUE_END.contains(next);
+                break;
+            default:
+                parameter = false;
+        }
+
+        if (parameter) {
+            sql.append('?');
+            parameters.add(value);
+        } else {
+            sql.append(statement, start, end);
+        }
+    }
+
+    /**
+     * The next token after the index, skipping whitespace and comments.
+     * @return The upper case word, the operator or "" at the end of the statement
+     */
+    private static String peek(String statement, int index) {
+        int length = statement.length();
+        int i = index;
+        while (i < length) {
+            char ch = statement.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                i++;
+            } else if (ch == '-' && i + 1 < length && statement.charAt(i + 1) == '-') {
+                int end = statement.indexOf('\n', i);
+                i = end < 0 ? length : end;
+            } else if (ch == '/' && i + 1 < length && statement.charAt(i + 1) == '*') {
+                int end = statement.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (isWordChar(ch)) {
+                int end = i;
+                while (end < length && isWordChar(statement.charAt(end))) end++;
+                return statement.substring(i, end).toUpperCase(Locale.ROOT);
+            } else {
+                return operator(statement, i);
+            }
+        }
+        return "";
+    }
+
+    private static String operator(String statement, int index) {
+        char ch = statement.charAt(index);
+        char next = index + 1 < statement.length() ? statement.charAt(index + 1) : ' ';
+        if ((ch == '<' || ch == '>' || ch == '!') && next == '=' || (ch == '<' && next == '>')) {
+            return statement.substring(index, index + 2);
+        }
+        return String.valueOf(ch);
+    }
+
+    private static class Level {
+
+        private Clause clause;
+        private boolean values = false;
+        private final boolean row;
+
+        Level(Clause clause, boolean row) {
+            this.clause = clause;
+            this.row = row;
+        }
+    }
+
+    private static boolean isDataManipulation(String statement) {
+        return startsWithKeyword(statement, "INSERT")
+                || startsWithKeyword(statement, "REPLACE")
+                || startsWithKeyword(statement, "UPDATE")
+                || startsWithKeyword(statement, "DELETE");
+    }
+
+    private static boolean startsWithKeyword(String statement, String keyword) {
+        int length = keyword.length();
+        if (!statement.regionMatches(true, 0, keyword, 0, length)) {
+            return false;
+        }
+        return statement.length() == length || !isWordChar(statement.charAt(length));
+    }
+
+    /**
+     * Reads a quoted string starting at the given index.
+     * @return The index after the closing quote or -1 if the string is not closed
+     */
+    private static int readString(String statement, int start, char quote, boolean backslashEscapes, StringBuilder value) {
+        int length = statement.length();
+        int i = start + 1;
+        while (i < length) {
+            char ch = statement.charAt(i);
+
+            if (ch == '\\' && backslashEscapes) {
+                if (i + 1 >= length) return -1;
+                char escaped = statement.charAt(i + 1);
+                switch (escaped) {
+                    case '0': value.append('\0'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'Z': value.append('\u001A'); break;
+                    case '%':
+                    case '_':
+                        // MySQL keeps the backslash for these, they are used in LIKE patterns.
+                        value.append('\\').append(escaped);
+                        break;
+                    default: value.append(escaped);
+                }
+                i += 2;
+                continue;
+            }
+
+            if (ch == quote) {
+                if (i + 1 < length && statement.charAt(i + 1) == quote) {
+                    value.append(quote);
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+
+            value.append(ch);
+            i++;
+        }
+
+        return -1;
+    }
+
+    private static int skipQuoted(String statement, int start, char quote, boolean backslashEscapes) {
+        int length = statement.length();
+        int i = start + 1;
+        while (i < length) {
+            char ch = statement.charAt(i);
+            if (ch == '\\' && backslashEscapes) {
+                i += 2;
+                continue;
+            }
+            if (ch == quote) {
+                if (i + 1 < length && statement.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a number in the form 123, 1.5 or 1.5e-3.
+     * @return The index after the number or -1 if the token is not a plain number (e.g. 0x1F or 1abc)
+     */
+    private static int readNumber(String statement, int start) {
+        int length = statement.length();
+        int i = start;
+        while (i < length && isDigit(statement.charAt(i))) i++;
+
+        if (i + 1 < length && statement.charAt(i) == '.' && isDigit(statement.charAt(i + 1))) {
+            i++;
+            while (i < length && isDigit(statement.charAt(i))) i++;
+        }
+
+        if (i < length && (statement.charAt(i) == 'e' || statement.charAt(i) == 'E')) {
+            int exponent = i + 1;
+            if (exponent < length && (statement.charAt(exponent) == '+' || statement.charAt(exponent) == '-')) exponent++;
+            if (exponent >= length || !isDigit(statement.charAt(exponent))) return -1;
+            i = exponent;
+            while (i < length && isDigit(statement.charAt(i))) i++;
+        }
+
+        if (i < length && (isWordChar(statement.charAt(i)) || statement.charAt(i) == '.')) {
+            return -1;
+        }
+
+        return i;
+    }
+
+    private static Object toNumber(String number) {
+        boolean integer = true;
+        for (int i = 0; i < number.length(); i++) {
+            if (!isDigit(number.charAt(i))) {
+                integer = false;
+                break;
+            }
+        }
+
+        if (integer) {
+            // Keep huge integers as literals, the database decides how to store them.
+            return number.length() <= 18 ? (Object) Long.parseLong(number) : null;
+        }
+
+        return new BigDecimal(number);
+    }
+
+    private static boolean isDollarTag(String statement, int start) {
+        for (int i = start + 1; i < statement.length(); i++) {
+            char ch = statement.charAt(i);
+            if (ch == '$') return true;
+            if (!(isWordChar(ch) && !(i == start + 1 && isDigit(ch)))) return false;
+        }
+        return false;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isWordChar(char ch) {
+        return isDigit(ch) || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_' || ch == '$';
+    }
+}
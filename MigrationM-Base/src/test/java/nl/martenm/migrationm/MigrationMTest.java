@@ -2,16 +2,37 @@ package nl.martenm.migrationm;
 
 
 import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationListener;
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.MigrationPlan;
+import nl.martenm.migrationm.api.MigrationResult;
 import nl.martenm.migrationm.util.ProgramInfo;
 import nl.martenm.migrationm.impl.TestDatabase;
+import nl.martenm.migrationm.impl.TestHistoryDatabase;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 public class MigrationMTest {
 
@@ -29,8 +50,8 @@ public class MigrationMTest {
         File file = new File("2020-2-2-22.22.sql");
         migrationM.addMigration(file, null);
 
-        assert migrationM.migrations.get(0).getName().equals(file.getName());
-        assert migrationM.migrations.get(0).getDate().equals(LocalDateTime.of(2020, 2, 2, 22, 22));
+        assert migrationM.getMigrations().get(0).getName().equals(file.getName());
+        assert migrationM.getMigrations().get(0).getDate().equals(LocalDateTime.of(2020, 2, 2, 22, 22));
     }
 
     @Test()
@@ -139,4 +160,243 @@ public class MigrationMTest {
         assert testDatabase.isSetup();
         assert testDatabase.lastMigration(info).equals(LocalDateTime.of(2021, 2, 1, 10, 50));
     }
+
+    @Test
+    public void testChecksum() throws IOException {
+        byte[] contents = "CREATE TABLE users (id INT);".getBytes(StandardCharsets.UTF_8);
+
+        // The checksum should be computed while reading, the provider can only be used once.
+        Iterator<InputStream> streams = Collections.<InputStream>singletonList(new ByteArrayInputStream(contents)).iterator();
+        Migration read = new Migration(LocalDateTime.of(2020, 1, 1, 1, 1), "2020-1-1-01.01.sql", streams::next);
+        try (InputStream stream = read.getInputStream()) {
+            while (stream.read() != -1);
+        }
+
+        Migration computed = new Migration(LocalDateTime.of(2020, 1, 1, 1, 1), "2020-1-1-01.01.sql", () -> new ByteArrayInputStream(contents));
+
+        Assertions.assertEquals(64, computed.getChecksum().length());
+        Assertions.assertEquals(computed.getChecksum(), read.getChecksum());
+        Assertions.assertNull(new Migration(LocalDateTime.of(2020, 1, 1, 1, 1), "2020-1-1-01.01.sql", null).getChecksum());
+    }
+
+    @Test
+    public void testCoordinator() {
+        TestDatabase testDatabase = new TestDatabase();
+        MigrationCoordinator coordinator = new MigrationCoordinator(logger, 2);
+
+        ProgramInfo first = new ProgramInfo("first-program", "1.0.0", logger);
+        MigrationM firstMigrationM = new MigrationM(first, testDatabase);
+        firstMigrationM.addMigration(new File("2020-3-1-20.00.sql"), null);
+
+        ProgramInfo second = new ProgramInfo("second-program", "1.0.0", logger);
+        MigrationM secondMigrationM = new MigrationM(second, testDatabase);
+        secondMigrationM.addMigration(new File("2021-2-1-10.50.sql"), null);
+
+        coordinator.register(firstMigrationM).register(secondMigrationM);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> coordinator.register(firstMigrationM));
+
+        Map<String, Boolean> results = coordinator.migrate();
+        Assertions.assertEquals(Arrays.asList("first-program", "second-program"), new ArrayList<>(results.keySet()));
+        Assertions.assertTrue(results.values().stream().allMatch(success -> success));
+
+        assert testDatabase.isSetup();
+        assert testDatabase.lastMigration(first).equals(LocalDateTime.of(2020, 3, 1, 20, 0));
+        assert testDatabase.lastMigration(second).equals(LocalDateTime.of(2021, 2, 1, 10, 50));
+    }
+
+    @Test
+    public void testCoordinatorReadsAfterLock() {
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+        Migration migration = new Migration(LocalDateTime.of(2020, 3, 1, 20, 0), "2020-3-1-20.00.sql", null);
+
+        // Another node migrates between the status read of the coordinator and the lock, which is free again.
+        List<String> executed = new CopyOnWriteArrayList<>();
+        TestDatabase testDatabase = new TestDatabase() {
+            @Override
+            public void executeMigration(ProgramInfo info, Migration migration) {
+                super.executeMigration(info, migration);
+                executed.add(migration.getName());
+            }
+
+            @Override
+            public MigrationLock acquireLock(ProgramInfo info, Duration timeout) {
+                if (executed.isEmpty()) {
+                    executeMigration(info, migration);
+                }
+                return MigrationLock.NONE;
+            }
+        };
+
+        MigrationM migrationM = new MigrationM(info, testDatabase);
+        migrationM.addMigration(migration);
+
+        Assertions.assertTrue(new MigrationCoordinator(logger, 1).register(migrationM).migrate().get("test-program"));
+        Assertions.assertEquals(Collections.singletonList("2020-3-1-20.00.sql"), executed);
+    }
+
+    @Test
+    public void testCoordinatorReusesStatus() {
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+        Migration migration = new Migration(LocalDateTime.of(2020, 3, 1, 20, 0), "2020-3-1-20.00.sql", null);
+
+        // Every status read asks for the last migration.
+        AtomicInteger reads = new AtomicInteger();
+        AtomicBoolean contended = new AtomicBoolean(false);
+        TestHistoryDatabase testDatabase = new TestHistoryDatabase() {
+            @Override
+            public LocalDateTime lastMigration(ProgramInfo info) {
+                reads.incrementAndGet();
+                return super.lastMigration(info);
+            }
+
+            @Override
+            public MigrationLock acquireLock(ProgramInfo info, Duration timeout) {
+                return new MigrationLock() {
+                    @Override
+                    public boolean isContended() {
+                        return contended.get();
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        };
+
+        MigrationM migrationM = new MigrationM(info, testDatabase);
+        migrationM.addMigration(migration);
+
+        // The history is complete and nobody held the lock, the status of the coordinator is used.
+        Assertions.assertTrue(new MigrationCoordinator(logger, 1).register(migrationM).migrate().get("test-program"));
+        Assertions.assertEquals(1, reads.get());
+        Assertions.assertEquals(Collections.singletonList("2020-3-1-20.00.sql"), testDatabase.getExecuted());
+
+        // Another node held the lock, the status is read again.
+        contended.set(true);
+        reads.set(0);
+        Assertions.assertTrue(new MigrationCoordinator(logger, 1).register(migrationM).migrate().get("test-program"));
+        Assertions.assertEquals(2, reads.get());
+        Assertions.assertEquals(1, testDatabase.getExecuted().size());
+    }
+
+    @Test
+    public void testHistory() {
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+        // Executed by a version that did not keep a history yet.
+        TestHistoryDatabase testDatabase = new TestHistoryDatabase();
+        testDatabase.setLatestMigration(info, LocalDateTime.of(2020, 2, 5, 10, 1));
+
+        MigrationM migrationM = new MigrationM(info, testDatabase);
+        migrationM.addMigration(new File("2020-1-1-10.00.sql"), null);
+        migrationM.addMigration(new File("2020-2-5-10.01.sql"), null);
+        migrationM.addMigration(new File("2020-3-1-20.00.sql"), null);
+
+        Assertions.assertTrue(migrationM.migrate());
+        Assertions.assertTrue(testDatabase.isBaselined());
+        Assertions.assertEquals(Collections.singletonList("2020-3-1-20.00.sql"), testDatabase.getExecuted());
+
+        // A migration that was merged late is older than the last migration, it is still executed.
+        migrationM.addMigration(new File("2020-2-20-12.00.sql"), null);
+        Assertions.assertTrue(migrationM.migrate());
+        Assertions.assertEquals(Arrays.asList("2020-3-1-20.00.sql", "2020-2-20-12.00.sql"), testDatabase.getExecuted());
+    }
+
+    @Test
+    public void testVerifyChecksums() {
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+        AtomicInteger opened = new AtomicInteger();
+
+        // The history stores an empty checksum, so a verified migration always looks changed.
+        MigrationM migrationM = new MigrationM(info, new TestHistoryDatabase());
+        migrationM.setFailOnDrift(true);
+        migrationM.addMigration("2020-1-1-10.00.sql", () -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream("SELECT 1;".getBytes(StandardCharsets.UTF_8));
+        });
+        Assertions.assertTrue(migrationM.migrate());
+        int reads = opened.get();
+
+        // Applied migrations without a known checksum are not read again on every start.
+        Assertions.assertTrue(migrationM.migrate());
+        Assertions.assertEquals(reads, opened.get());
+
+        migrationM.setVerifyAllChecksums(true);
+        Assertions.assertFalse(migrationM.migrate());
+        Assertions.assertEquals(reads + 1, opened.get());
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+        TestDatabase testDatabase = new TestDatabase();
+        testDatabase.setLatestMigration(info, LocalDateTime.of(2020, 1, 1, 1, 1));
+
+        MigrationM migrationM = new MigrationM(info, testDatabase);
+        migrationM.addMigration(new File("2019-2-5-10.01.sql"), null);
+        migrationM.addMigration(new File("2020-3-1-20.00.sql"), null);
+
+        MigrationPlan plan = migrationM.plan();
+        Assertions.assertEquals(1, plan.getSteps().size());
+        Assertions.assertEquals("2020-3-1-20.00.sql", plan.getSteps().get(0).getMigration().getName());
+        Assertions.assertNull(plan.getEstimatedDuration());
+
+        // Nothing has been executed.
+        Assertions.assertEquals(LocalDateTime.of(2020, 1, 1, 1, 1), testDatabase.lastMigration(info));
+    }
+
+    @Test
+    public void testMigrateAsync() {
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+        TestDatabase testDatabase = new TestDatabase();
+        testDatabase.setLatestMigration(info, LocalDateTime.of(2020, 1, 1, 1, 1));
+
+        MigrationM migrationM = new MigrationM(info, testDatabase);
+        migrationM.addMigration(new File("2020-2-5-10.01.sql"), null);
+        migrationM.addMigration(new File("2020-3-1-20.00.sql"), null);
+
+        List<String> events = new CopyOnWriteArrayList<>();
+        migrationM.addListener(new MigrationListener() {
+            @Override
+            public void onStart(Migration migration, int index, int total) {
+                events.add("start " + index + "/" + total);
+            }
+
+            @Override
+            public void onFinish(Migration migration, Duration duration, long statements) {
+                events.add("finish " + migration.getName());
+            }
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MigrationResult result = migrationM.migrateAsync(executor).join();
+
+            Assertions.assertTrue(result.isSuccessful());
+            Assertions.assertNull(result.getFailedMigration());
+            Assertions.assertEquals(2, result.getExecuted().size());
+            Assertions.assertEquals(Arrays.asList("start 1/2", "finish 2020-2-5-10.01.sql", "start 2/2", "finish 2020-3-1-20.00.sql"), events);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAddDuplicate() {
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+        MigrationM migrationM = new MigrationM(info, new TestDatabase());
+
+        migrationM.addMigration(new File("2020-2-2-22.22-first.sql"), null);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> migrationM.addMigration(new File("2020-2-2-22.22-first.sql"), null));
+
+        // Migrations with the same date are ordered by name.
+        migrationM.addMigration(new File("2020-2-2-22.23-second.sql"), null);
+        migrationM.addMigration(new File("2020-2-2-22.22-another.sql"), null);
+        Assertions.assertEquals(Arrays.asList("2020-2-2-22.22-another.sql", "2020-2-2-22.22-first.sql", "2020-2-2-22.23-second.sql"),
+                migrationM.getMigrations().stream().map(Migration::getName).collect(Collectors.toList()));
+    }
 }
@@ -0,0 +1,143 @@
+package nl.martenm.migrationm;
+
+import nl.martenm.migrationm.api.DatabaseManager;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationInstrumentation;
+import nl.martenm.migrationm.api.MigrationSession;
+import nl.martenm.migrationm.api.MigrationStatus;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.MigrationNames;
+import nl.martenm.migrationm.util.ProgramInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class MigrationSchedulerTest {
+
+    Logger logger = Logger.getAnonymousLogger();
+    ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+    @Test
+    public void testIndependentMigrationsRunInParallel() throws MigrationException {
+        // Both table migrations wait for each other, this only finishes if they run at the same time.
+        CountDownLatch latch = new CountDownLatch(2);
+        RecordingManager manager = new RecordingManager(latch);
+
+        List<Migration> migrations = Arrays.asList(
+                migration("2020-1-1-01.00-users.sql", "-- @tables: users\nCREATE TABLE users (id INT);"),
+                migration("2020-1-1-02.00-items.sql", "-- @tables: items\nCREATE TABLE items (id INT);"),
+                migration("2020-1-1-03.00-everything.sql", "DROP TABLE users;"));
+
+        MigrationScheduler scheduler = new MigrationScheduler(info, manager, 4, new MigrationRecorder(logger, Collections.emptyList()), MigrationInstrumentation.NONE);
+        Assertions.assertTrue(scheduler.run(migrations, null, manager.openSession()));
+
+        Assertions.assertEquals(3, manager.executed.size());
+        Assertions.assertEquals("2020-1-1-03.00-everything.sql", manager.executed.get(2));
+        Assertions.assertEquals(LocalDateTime.of(2020, 1, 1, 3, 0), manager.lastMigration);
+    }
+
+    @Test
+    public void testDependencies() throws MigrationException {
+        RecordingManager manager = new RecordingManager(null);
+
+        List<Migration> migrations = Arrays.asList(
+                migration("2020-1-1-01.00-users.sql", "-- @tables: users\nCREATE TABLE users (id INT);"),
+                migration("2020-1-1-02.00-items.sql", "-- @tables: items\n-- @depends: 2020-1-1-01.00-users.sql\nCREATE TABLE items (id INT);"));
+
+        MigrationScheduler scheduler = new MigrationScheduler(info, manager, 4, new MigrationRecorder(logger, Collections.emptyList()), MigrationInstrumentation.NONE);
+        Assertions.assertTrue(scheduler.run(migrations, null, manager.openSession()));
+        Assertions.assertEquals(Arrays.asList("2020-1-1-01.00-users.sql", "2020-1-1-02.00-items.sql"), manager.executed);
+
+        List<Migration> invalid = Arrays.asList(
+                migration("2020-1-1-01.00-users.sql", "-- @depends: 2020-1-1-02.00-items.sql\nCREATE TABLE users (id INT);"),
+                migration("2020-1-1-02.00-items.sql", "CREATE TABLE items (id INT);"));
+
+        Assertions.assertThrows(MigrationException.class, () -> scheduler.run(invalid, null, manager.openSession()));
+    }
+
+    private Migration migration(String name, String contents) {
+        return new Migration(MigrationNames.parseDate(name), name,
+                () -> new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class RecordingManager implements DatabaseManager {
+
+        private final CountDownLatch latch;
+        private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        private LocalDateTime lastMigration;
+
+        RecordingManager(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public LocalDateTime lastMigration(ProgramInfo info) {
+            return lastMigration;
+        }
+
+        @Override
+        public boolean isSetup() {
+            return true;
+        }
+
+        @Override
+        public void setup() {
+        }
+
+        @Override
+        public void executeMigration(ProgramInfo info, Migration migration) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MigrationSession openSession() {
+            return new MigrationSession() {
+                @Override
+                public MigrationStatus getStatus(ProgramInfo info) {
+                    return new MigrationStatus(true, lastMigration);
+                }
+
+                @Override
+                public void setup() {
+                }
+
+                @Override
+                public void executeMigration(ProgramInfo info, Migration migration) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void executeMigration(ProgramInfo info, Migration migration, LocalDateTime watermark) throws MigrationException {
+                    if (latch != null && migration.getName().endsWith("s.sql")) {
+                        latch.countDown();
+                        try {
+                            if (!latch.await(5, TimeUnit.SECONDS)) {
+                                throw new MigrationException("The migrations did not run in parallel.", null);
+                            }
+                        } catch (InterruptedException ex) {
+                            throw new MigrationException("Interrupted", ex);
+                        }
+                    }
+
+                    synchronized (RecordingManager.this) {
+                        executed.add(migration.getName());
+                        if (watermark != null && (lastMigration == null || watermark.isAfter(lastMigration))) {
+                            lastMigration = watermark;
+                        }
+                    }
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
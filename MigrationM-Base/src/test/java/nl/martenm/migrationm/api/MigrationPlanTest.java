@@ -0,0 +1,60 @@
+package nl.martenm.migrationm.api;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MigrationPlanTest {
+
+    private final Migration first = new Migration(LocalDateTime.of(2020, 1, 1, 10, 0), "2020-1-1-10.00-first.sql", null);
+    private final Migration second = new Migration(LocalDateTime.of(2020, 1, 2, 10, 0), "2020-1-2-10.00-second.sql", null);
+
+    @Test
+    public void testEstimates() {
+        MigrationPlan plan = new MigrationPlan(Arrays.asList(
+                new MigrationPlan.Step(first, Arrays.asList(
+                        new StatementEstimate(first, 1, "ALTER TABLE items ADD COLUMN note TEXT", 999),
+                        new StatementEstimate(first, 2, "CREATE TABLE other (id INT)", -1))),
+                new MigrationPlan.Step(second, Collections.singletonList(
+                        new StatementEstimate(second, 1, "UPDATE items SET note = 'x'", 9999)))
+        ), 3, 0.5);
+
+        // One unit per statement plus the estimated rows.
+        Assertions.assertEquals(Duration.ofMillis(500), plan.getEstimatedDuration(plan.getSteps().get(0)));
+        Assertions.assertEquals(Duration.ofMillis(5000), plan.getEstimatedDuration(plan.getSteps().get(1)));
+        Assertions.assertEquals(Duration.ofMillis(5500), plan.getEstimatedDuration());
+
+        List<StatementEstimate> dominant = plan.getDominantStatements(5);
+        Assertions.assertEquals(2, dominant.size());
+        Assertions.assertEquals(second, dominant.get(0).getMigration());
+        Assertions.assertEquals(999, dominant.get(1).getRows());
+
+        Assertions.assertTrue(plan.describe().startsWith("2 pending migrations, estimated duration 5.500 seconds (based on 3 applied migrations)."));
+    }
+
+    @Test
+    public void testUnknown() {
+        MigrationPlan withoutHistory = new MigrationPlan(Collections.singletonList(
+                new MigrationPlan.Step(first, Collections.singletonList(new StatementEstimate(first, 1, "DELETE FROM items", 10)))
+        ), 0, Double.NaN);
+
+        Assertions.assertFalse(withoutHistory.hasDurations());
+        Assertions.assertNull(withoutHistory.getEstimatedDuration());
+        Assertions.assertEquals(1, withoutHistory.getDominantStatements(5).size());
+
+        // A manager that can't look into migrations makes the total unknown.
+        MigrationPlan withoutStatements = new MigrationPlan(Arrays.asList(
+                new MigrationPlan.Step(first, Collections.singletonList(new StatementEstimate(first, 1, "DELETE FROM items", 10))),
+                new MigrationPlan.Step(second, Collections.emptyList())
+        ), 1, 1);
+
+        Assertions.assertEquals(Duration.ofMillis(11), withoutStatements.getEstimatedDuration(withoutStatements.getSteps().get(0)));
+        Assertions.assertNull(withoutStatements.getEstimatedDuration(withoutStatements.getSteps().get(1)));
+        Assertions.assertNull(withoutStatements.getEstimatedDuration());
+    }
+}
@@ -0,0 +1,35 @@
+package nl.martenm.migrationm.databasemanager;
+
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testClassify() {
+        RetryPolicy policy = RetryPolicy.standard()
+                .vendorCode(1205, RetryPolicy.Scope.STATEMENT)
+                .sqlState("55P03", RetryPolicy.Scope.TRANSACTION);
+
+        // The class 40 matches every rollback, the vendor code comes before the SQLState.
+        Assertions.assertEquals(RetryPolicy.Scope.TRANSACTION, policy.classify(new SQLException("deadlock", "40P01", 0)));
+        Assertions.assertEquals(RetryPolicy.Scope.TRANSACTION, policy.classify(new SQLException("lock timeout", "55P03", 0)));
+        Assertions.assertEquals(RetryPolicy.Scope.STATEMENT, policy.classify(new SQLException("lock wait", "40001", 1205)));
+        Assertions.assertNull(policy.classify(new SQLException("syntax", "42000", 1064)));
+        Assertions.assertNull(policy.classify(new SQLException("no state")));
+        Assertions.assertNull(policy.classify(new IllegalStateException()));
+
+        // The causes of a failed migration and the chained exceptions of a batch are checked as well.
+        Assertions.assertEquals(RetryPolicy.Scope.STATEMENT, policy.classify(
+                new MigrationException("Failed to execute query", new SQLException("lock wait", "HY000", 1205))));
+        BatchUpdateException batch = new BatchUpdateException("batch failed", "HY000", 0, new int[0]);
+        batch.setNextException(new SQLException("deadlock", "40001", 0));
+        Assertions.assertEquals(RetryPolicy.Scope.TRANSACTION, policy.classify(batch));
+
+        Assertions.assertNull(RetryPolicy.none().classify(new SQLException("deadlock", "40001", 0)));
+    }
+}
@@ -5,13 +5,13 @@ import nl.martenm.migrationm.api.Migration;
 import nl.martenm.migrationm.util.ProgramInfo;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TestDatabase implements DatabaseManager {
 
-    private Map<String, LocalDateTime> latestMigrations = new HashMap<>();
-    private boolean setup = false;
+    private Map<String, LocalDateTime> latestMigrations = new ConcurrentHashMap<>();
+    private volatile boolean setup = false;
 
     @Override
     public LocalDateTime lastMigration(ProgramInfo info) {
@@ -0,0 +1,74 @@
+package nl.martenm.migrationm.impl;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationSession;
+import nl.martenm.migrationm.api.MigrationStatus;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A test database that keeps a history of the executed migrations, like the JDBC database managers.
+ */
+public class TestHistoryDatabase extends TestDatabase {
+
+    private final Map<String, String> history = new ConcurrentHashMap<>();
+    private final List<String> executed = new ArrayList<>();
+    private volatile boolean baselined = false;
+
+    @Override
+    public void executeMigration(ProgramInfo info, Migration migration) {
+        super.executeMigration(info, migration);
+        history.put(migration.getName(), "");
+        executed.add(migration.getName());
+    }
+
+    @Override
+    public MigrationSession openSession() {
+        return new MigrationSession() {
+            @Override
+            public MigrationStatus getStatus(ProgramInfo info) {
+                LocalDateTime last = lastMigration(info);
+                return new MigrationStatus(true, last, last == null || baselined);
+            }
+
+            @Override
+            public void setup() {
+            }
+
+            @Override
+            public void executeMigration(ProgramInfo info, Migration migration) {
+                TestHistoryDatabase.this.executeMigration(info, migration);
+            }
+
+            @Override
+            public Map<String, String> getChecksums(ProgramInfo info) {
+                return history;
+            }
+
+            @Override
+            public boolean baseline(ProgramInfo info, Collection<Migration> migrations) {
+                migrations.forEach(migration -> history.put(migration.getName(), ""));
+                baselined = true;
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public List<String> getExecuted() {
+        return executed;
+    }
+
+    public boolean isBaselined() {
+        return baselined;
+    }
+}
@@ -0,0 +1,44 @@
+package nl.martenm.migrationm.instrumentation;
+
+import nl.martenm.migrationm.api.Migration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+public class JmxInstrumentationTest {
+
+    @Test
+    public void testLiveProgress() throws JMException {
+        JmxInstrumentation instrumentation = JmxInstrumentation.register("test-program");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            Migration migration = new Migration(LocalDateTime.of(2020, 1, 1, 1, 1), "2020-1-1-01.01.sql", null);
+
+            instrumentation.onStart(migration, 1, 2);
+            instrumentation.onStatement(migration, 1, "CREATE TABLE users (id INT)", 1000, 5_000_000, 0);
+            instrumentation.onStatement(migration, 3, "INSERT INTO users VALUES (1)", 1000, 2_000_000, 1);
+
+            Assertions.assertEquals(true, server.getAttribute(instrumentation.getObjectName(), "Running"));
+            Assertions.assertEquals(2L, server.getAttribute(instrumentation.getObjectName(), "StatementsExecuted"));
+            Assertions.assertEquals(3, server.getAttribute(instrumentation.getObjectName(), "LastStatementLine"));
+            Assertions.assertEquals("CREATE TABLE users (id INT)", server.getAttribute(instrumentation.getObjectName(), "SlowestStatement"));
+
+            instrumentation.onCommit(migration, 1000, 1);
+            instrumentation.onFinish(migration, Duration.ofMillis(7), 2);
+
+            Assertions.assertEquals(false, server.getAttribute(instrumentation.getObjectName(), "Running"));
+            Assertions.assertEquals(1, server.getAttribute(instrumentation.getObjectName(), "CompletedMigrations"));
+            Assertions.assertEquals(1L, server.getAttribute(instrumentation.getObjectName(), "RowsAffected"));
+        } finally {
+            instrumentation.unregister();
+        }
+
+        Assertions.assertFalse(server.isRegistered(instrumentation.getObjectName()));
+    }
+}
@@ -0,0 +1,111 @@
+package nl.martenm.migrationm.source;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.util.Checksums;
+import nl.martenm.migrationm.util.SqlStatementReader;
+import nl.martenm.migrationm.util.StatementIterator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class MigrationBundleTest {
+
+    private static final String SQL = "-- Users\nCREATE TABLE users (name VARCHAR(16));\n\n" +
+            "INSERT INTO users VALUES ('a;b'), ('\u00e9\\'');\n# not a comment everywhere\nSELECT 1;";
+
+    @TempDir
+    Path temp;
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path folder = Files.createDirectory(temp.resolve("migrations"));
+        Files.write(folder.resolve("2021-2-1-10.50-users.csv"), "name\nc\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.resolve("2020-1-10-14.00-first.sql"), SQL.getBytes(StandardCharsets.UTF_8));
+
+        Path file = temp.resolve("migrations.bundle");
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            Assertions.assertEquals(2, MigrationBundle.write(new DirectoryMigrationSource(folder), stream, true, true));
+        }
+
+        // Memory mapped and read from a stream.
+        check(MigrationBundle.map(file));
+        check(MigrationBundle.read(Files.newInputStream(file), -1));
+        check(MigrationBundle.read(Files.newInputStream(file), Files.size(file)));
+    }
+
+    private void check(MigrationBundle bundle) throws IOException {
+        List<Migration> migrations = bundle.getMigrations();
+        Assertions.assertEquals(2, migrations.size());
+
+        Migration first = migrations.get(0);
+        Assertions.assertEquals("2020-1-10-14.00-first.sql", first.getName());
+        Assertions.assertEquals(LocalDateTime.of(2020, 1, 10, 14, 0), first.getDate());
+        Assertions.assertEquals(Checksums.sha256(new ByteArrayInputStream(SQL.getBytes(StandardCharsets.UTF_8))), first.getChecksum());
+        Assertions.assertEquals(SQL, read(first.getInputStream()));
+
+        // The statements are the same as when the file is split while reading.
+        SqlStatementReader reader = new SqlStatementReader(first.getInputStream()).backslashEscapes(true).hashComments(true);
+        StatementIterator statements = first.getStatements(true, true, false);
+        String expected;
+        while ((expected = reader.next()) != null) {
+            Assertions.assertEquals(expected, statements.next());
+            Assertions.assertEquals(reader.getStatementLine(), statements.getStatementLine());
+        }
+        Assertions.assertNull(statements.next());
+
+        // Split for another dialect.
+        Assertions.assertNull(first.getStatements(false, false, false));
+
+        Migration data = migrations.get(1);
+        Assertions.assertEquals("name\nc\n", read(data.getInputStream()));
+        Assertions.assertNull(data.getStatements(true, true, false));
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int read;
+        byte[] buffer = new byte[3];
+        while ((read = stream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        Path folder = Files.createDirectory(temp.resolve("migrations"));
+        try (OutputStream stream = new GZIPOutputStream(Files.newOutputStream(folder.resolve("2020-1-10-14.00-seed.sql.gz")))) {
+            stream.write(SQL.getBytes(StandardCharsets.UTF_8));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Assertions.assertEquals(1, MigrationBundle.write(new DirectoryMigrationSource(folder), output, true, true));
+        Migration migration = MigrationBundle.read(new ByteArrayInputStream(output.toByteArray()), -1).getMigrations().get(0);
+
+        // Decompressed while it is read, the checksum is that of the decompressed contents.
+        Assertions.assertEquals(Checksums.sha256(new ByteArrayInputStream(SQL.getBytes(StandardCharsets.UTF_8))), migration.getChecksum());
+        Assertions.assertEquals(SQL, read(migration.getInputStream()));
+        Assertions.assertNull(migration.getStatements(true, true, false));
+    }
+
+    @Test
+    public void testMalformedBundle() {
+        Assertions.assertThrows(IOException.class, () ->
+                MigrationBundle.read(new ByteArrayInputStream("something else".getBytes(StandardCharsets.UTF_8)), -1));
+        Assertions.assertThrows(IOException.class, () ->
+                MigrationBundle.read(new ByteArrayInputStream(new byte[]{0x4D, 0x47, 0x4D, 0x42, 0, 1, 0, 0, 0, 0, 0, 9}), -1));
+    }
+}
@@ -0,0 +1,50 @@
+package nl.martenm.migrationm.source;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+public class MigrationIndexTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    public void testBuildAndRead() throws IOException {
+        Files.write(temp.resolve("2021-2-1-10.50-second.sql"), "SELECT 2;".getBytes(StandardCharsets.UTF_8));
+        Files.write(temp.resolve("2020-1-10-14.00-first.sql"), "SELECT 1;".getBytes(StandardCharsets.UTF_8));
+
+        MigrationIndex index = MigrationIndex.build(new DirectoryMigrationSource(temp));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.write(output);
+        MigrationIndex read = MigrationIndex.read(new ByteArrayInputStream(output.toByteArray()));
+
+        Assertions.assertEquals(2, read.getEntries().size());
+
+        MigrationIndex.Entry first = read.getEntries().get(0);
+        Assertions.assertEquals("2020-1-10-14.00-first.sql", first.getName());
+        Assertions.assertEquals(LocalDateTime.of(2020, 1, 10, 14, 0), first.getDate());
+        Assertions.assertEquals(9, first.getSize());
+        Assertions.assertEquals(index.getEntries().get(0).getChecksum(), first.getChecksum());
+        Assertions.assertEquals(64, first.getChecksum().length());
+
+        Assertions.assertEquals(LocalDateTime.of(2021, 2, 1, 10, 50), read.getEntries().get(1).getDate());
+    }
+
+    @Test
+    public void testMalformedIndex() {
+        Assertions.assertThrows(IOException.class, () ->
+                MigrationIndex.read(new ByteArrayInputStream("something else".getBytes(StandardCharsets.UTF_8))));
+        Assertions.assertThrows(IOException.class, () ->
+                MigrationIndex.read(new ByteArrayInputStream((MigrationIndex.HEADER + "\nbroken").getBytes(StandardCharsets.UTF_8))));
+    }
+}
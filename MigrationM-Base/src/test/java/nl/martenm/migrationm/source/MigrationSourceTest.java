@@ -0,0 +1,63 @@
+package nl.martenm.migrationm.source;
+
+import nl.martenm.migrationm.api.MigrationSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class MigrationSourceTest {
+
+    @TempDir
+    Path temp;
+
+    private String read(InputStream stream) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return reader.readLine();
+        }
+    }
+
+    @Test
+    public void testZipSource() throws IOException {
+        Path jar = temp.resolve("plugin.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (String name : Arrays.asList("migrations/", "migrations/2020-1-1-10.00-a.sql", "migrations/nested/2020-1-1-11.00.sql",
+                    "other/2020-1-1-12.00.sql", "migrations/2020-1-2-10.00-b.sql")) {
+                zip.putNextEntry(new ZipEntry(name));
+                if (!name.endsWith("/")) {
+                    zip.write(name.getBytes(StandardCharsets.UTF_8));
+                }
+                zip.closeEntry();
+            }
+        }
+
+        MigrationSource source = new ZipMigrationSource(jar, "migrations");
+        List<String> files = source.list();
+        Collections.sort(files);
+
+        Assertions.assertEquals(Arrays.asList("2020-1-1-10.00-a.sql", "2020-1-2-10.00-b.sql"), files);
+        Assertions.assertEquals("migrations/2020-1-2-10.00-b.sql", read(source.provider("2020-1-2-10.00-b.sql").getInputStream()));
+    }
+
+    @Test
+    public void testDirectorySource() throws IOException {
+        Path folder = Files.createDirectory(temp.resolve("migrations"));
+        Files.createDirectory(folder.resolve("nested"));
+        Files.write(folder.resolve("2020-1-1-10.00-a.sql"), "SELECT 1;".getBytes(StandardCharsets.UTF_8));
+
+        MigrationSource source = new DirectoryMigrationSource(folder);
+
+        Assertions.assertEquals(Collections.singletonList("2020-1-1-10.00-a.sql"), source.list());
+        Assertions.assertEquals("SELECT 1;", read(source.provider("2020-1-1-10.00-a.sql").getInputStream()));
+        Assertions.assertTrue(new DirectoryMigrationSource(temp.resolve("missing")).list().isEmpty());
+    }
+}
@@ -0,0 +1,34 @@
+package nl.martenm.migrationm.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class BackoffTest {
+
+    @Test
+    public void testBounds() {
+        Backoff backoff = new Backoff(Duration.ofMillis(100), Duration.ofSeconds(5));
+
+        // The upper bound doubles until it reaches the maximum, it never overflows.
+        for (int i = 0; i < 200; i++) {
+            long bound = Math.min(5000, 100L << Math.min(i, 20));
+            long delay = backoff.nextDelayMillis();
+            Assertions.assertTrue(delay >= 0 && delay <= bound, "Delay " + delay + " of attempt " + i);
+        }
+        Assertions.assertEquals(200, backoff.getAttempts());
+
+        backoff.reset();
+        Assertions.assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException {
+        Backoff backoff = new Backoff(Duration.ofSeconds(10), Duration.ofSeconds(10));
+
+        long start = System.nanoTime();
+        backoff.sleep(start + Duration.ofMillis(50).toNanos());
+        Assertions.assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+    }
+}
@@ -0,0 +1,80 @@
+package nl.martenm.migrationm.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DataFileReaderTest {
+
+    @Test
+    public void testCsv() throws IOException {
+        List<String[]> records = read("\uFEFFid,name,note\r\n" +
+                "1,plain,\r\n" +
+                "\r\n" +
+                "2,\"with, comma\",\"\"\n" +
+                "3,\"say \"\"hi\"\"\nover two lines\",x", DataFileReader.Format.CSV);
+
+        Assertions.assertEquals(4, records.size());
+        Assertions.assertArrayEquals(new String[] {"id", "name", "note"}, records.get(0));
+        Assertions.assertArrayEquals(new String[] {"1", "plain", null}, records.get(1));
+        Assertions.assertArrayEquals(new String[] {"2", "with, comma", ""}, records.get(2));
+        Assertions.assertArrayEquals(new String[] {"3", "say \"hi\"\nover two lines", "x"}, records.get(3));
+    }
+
+    @Test
+    public void testTsv() throws IOException {
+        List<String[]> records = read("id\tname\tnote\n" +
+                "1\ttab\\there\t\\N\n" +
+                "2\t\tback\\\\slash\\nnewline\n", DataFileReader.Format.TSV);
+
+        Assertions.assertEquals(3, records.size());
+        Assertions.assertArrayEquals(new String[] {"1", "tab\there", null}, records.get(1));
+        Assertions.assertArrayEquals(new String[] {"2", "", "back\\slash\nnewline"}, records.get(2));
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        DataFileReader reader = new DataFileReader(new StringReader("a\n\"b\nb\"\n\nc"), DataFileReader.Format.CSV);
+        reader.next();
+        Assertions.assertEquals(1, reader.getLine());
+        reader.next();
+        Assertions.assertEquals(2, reader.getLine());
+        reader.next();
+        Assertions.assertEquals(5, reader.getLine());
+        Assertions.assertNull(reader.next());
+    }
+
+    @Test
+    public void testMalformed() {
+        Assertions.assertThrows(IOException.class, () -> read("a,\"unterminated\n", DataFileReader.Format.CSV));
+        Assertions.assertThrows(IOException.class, () -> read("a,\"quoted\"text\n", DataFileReader.Format.CSV));
+    }
+
+    @Test
+    public void testFormat() {
+        Assertions.assertEquals(DataFileReader.Format.CSV, DataFileReader.Format.of("2024-1-1-10.00-items.CSV"));
+        Assertions.assertEquals(DataFileReader.Format.TSV, DataFileReader.Format.of("2024-1-1-10.00-items.tsv"));
+        Assertions.assertNull(DataFileReader.Format.of("2024-1-1-10.00-items.sql"));
+        Assertions.assertEquals(DataFileReader.Format.CSV, DataFileReader.Format.of("2024-1-1-10.00-items.csv.gz"));
+        Assertions.assertNull(DataFileReader.Format.of("2024-1-1-10.00-items.sql.GZ"));
+        Assertions.assertEquals("items", MigrationNames.description("2024-1-1-10.00-items.csv"));
+        Assertions.assertEquals("shop.items", MigrationNames.description("2024-1-1-10.00_shop.items.tsv"));
+        Assertions.assertEquals("", MigrationNames.description("2024-1-1-10.00.csv"));
+        Assertions.assertEquals("seed", MigrationNames.description("2024-3-1-12.00-seed.sql.gz"));
+    }
+
+    private static List<String[]> read(String text, DataFileReader.Format format) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (DataFileReader reader = new DataFileReader(new StringReader(text), format)) {
+            String[] record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,37 @@
+package nl.martenm.migrationm.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+public class MigrationNamesTest {
+
+    @Test
+    public void testParse() {
+        Assertions.assertEquals(LocalDateTime.of(2020, 2, 2, 22, 22), MigrationNames.parseDate("2020-2-2-22.22.sql"));
+        Assertions.assertEquals(LocalDateTime.of(2021, 12, 31, 0, 5), MigrationNames.parseDate("2021-12-31-00.05-create_users.sql"));
+        Assertions.assertEquals(LocalDateTime.of(2024, 2, 29, 23, 59), MigrationNames.parseDate("2024-02-29-23.59_leap.sql"));
+
+        // Every day of a few years, including the leap days and the turn of a century.
+        for (LocalDateTime date = LocalDateTime.of(1999, 1, 1, 7, 30); date.getYear() < 2002; date = date.plusDays(1)) {
+            String name = String.format("%d-%d-%d-%02d.%02d-test.sql", date.getYear(), date.getMonthValue(), date.getDayOfMonth(), date.getHour(), date.getMinute());
+            Assertions.assertEquals(date.toEpochSecond(ZoneOffset.UTC), MigrationNames.parseEpochSecond(name));
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        String[] names = {
+                "", "2020", "2020-232-2-22.22.sql", "2020-13-2-22.22.sql", "2020-0-2-22.22.sql",
+                "2021-2-29-10.00.sql", "2020-4-31-10.00.sql", "2020-1-1-24.00.sql", "2020-1-1-10.60.sql",
+                "2020-1-1-1.00.sql", "2020-1-1-10-00.sql", "20-1-1-10.00.sql", "migration.sql"
+        };
+
+        for (String name : names) {
+            Assertions.assertThrows(DateTimeParseException.class, () -> MigrationNames.parseDate(name), name);
+        }
+    }
+}
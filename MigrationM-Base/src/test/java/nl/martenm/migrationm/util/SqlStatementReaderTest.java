@@ -0,0 +1,123 @@
+package nl.martenm.migrationm.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SqlStatementReaderTest {
+
+    private List<String> split(String sql, int bufferSize, boolean mysql) throws IOException {
+        List<String> statements = new ArrayList<>();
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader(sql), bufferSize)
+                .backslashEscapes(mysql)
+                .hashComments(mysql)) {
+            String statement;
+            while ((statement = reader.next()) != null) {
+                statements.add(statement);
+            }
+        }
+        return statements;
+    }
+
+    private List<String> split(String sql) throws IOException {
+        return split(sql, 3, false);
+    }
+
+    @Test
+    public void testSimpleStatements() throws IOException {
+        List<String> statements = split("CREATE TABLE a (id INT);\n INSERT INTO a VALUES (1);\n\n");
+
+        Assertions.assertEquals(Arrays.asList("CREATE TABLE a (id INT)", "INSERT INTO a VALUES (1)"), statements);
+    }
+
+    @Test
+    public void testNoTrailingSemicolon() throws IOException {
+        Assertions.assertEquals(Arrays.asList("SELECT 1", "SELECT 2"), split("SELECT 1;SELECT 2"));
+    }
+
+    @Test
+    public void testQuotedSemicolons() throws IOException {
+        List<String> statements = split("INSERT INTO a VALUES ('a;b', \"c;d\", `e;f`);INSERT INTO a VALUES ('it''s;');");
+
+        Assertions.assertEquals(Arrays.asList(
+                "INSERT INTO a VALUES ('a;b', \"c;d\", `e;f`)",
+                "INSERT INTO a VALUES ('it''s;')"), statements);
+    }
+
+    @Test
+    public void testBackslashEscapes() throws IOException {
+        String sql = "INSERT INTO a VALUES ('a\\';b');SELECT 1;";
+
+        Assertions.assertEquals(Arrays.asList("INSERT INTO a VALUES ('a\\';b')", "SELECT 1"), split(sql, 2, true));
+    }
+
+    @Test
+    public void testComments() throws IOException {
+        String sql = "-- leading; comment\n" +
+                "/* block; comment */ SELECT 1 -- trailing; comment\n" +
+                ";\n" +
+                "# hash; comment\n" +
+                "SELECT 2;\n" +
+                "-- only a comment;";
+
+        Assertions.assertEquals(Arrays.asList("SELECT 1 -- trailing; comment", "SELECT 2"), split(sql, 4, true));
+    }
+
+    @Test
+    public void testExecutableComment() throws IOException {
+        Assertions.assertEquals(Arrays.asList("/*!40101 SET NAMES utf8 */"), split("/*!40101 SET NAMES utf8 */;"));
+    }
+
+    @Test
+    public void testDollarQuotes() throws IOException {
+        String sql = "CREATE FUNCTION f() RETURNS INT AS $body$ BEGIN RETURN 1; END; $b$ $body$ LANGUAGE plpgsql;\n" +
+                "SELECT $$it's; a$$, $1;";
+
+        List<String> statements = new ArrayList<>();
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader(sql), 3).dollarQuotes(true)) {
+            String statement;
+            while ((statement = reader.next()) != null) {
+                statements.add(statement);
+            }
+        }
+
+        Assertions.assertEquals(Arrays.asList(
+                "CREATE FUNCTION f() RETURNS INT AS $body$ BEGIN RETURN 1; END; $b$ $body$ LANGUAGE plpgsql",
+                "SELECT $$it's; a$$, $1"), statements);
+    }
+
+    @Test
+    public void testTriggerBlock() throws IOException {
+        String sql = "CREATE TRIGGER t AFTER INSERT ON a FOR EACH ROW BEGIN\n" +
+                "  IF NEW.id > 1 THEN\n" +
+                "    UPDATE b SET c = CASE WHEN NEW.id > 2 THEN 1 ELSE 0 END;\n" +
+                "  END IF;\n" +
+                "  INSERT INTO c VALUES (NEW.id);\n" +
+                "END;\n" +
+                "BEGIN TRANSACTION;\n" +
+                "SELECT 1;";
+
+        List<String> statements = split(sql);
+
+        Assertions.assertEquals(3, statements.size());
+        Assertions.assertTrue(statements.get(0).startsWith("CREATE TRIGGER"));
+        Assertions.assertTrue(statements.get(0).endsWith("END"));
+        Assertions.assertEquals("BEGIN TRANSACTION", statements.get(1));
+        Assertions.assertEquals("SELECT 1", statements.get(2));
+    }
+
+    @Test
+    public void testStatementLine() throws IOException {
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader("SELECT 1;\n\n-- comment\nSELECT 2;"))) {
+            reader.next();
+            Assertions.assertEquals(1, reader.getStatementLine());
+            reader.next();
+            Assertions.assertEquals(4, reader.getStatementLine());
+        }
+    }
+}
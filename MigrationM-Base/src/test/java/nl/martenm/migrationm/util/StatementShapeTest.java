@@ -0,0 +1,76 @@
+package nl.martenm.migrationm.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+public class StatementShapeTest {
+
+    @Test
+    public void testSameShape() {
+        StatementShape first = StatementShape.parse("INSERT INTO users (uuid, name, tickets) VALUES ('a', 'Tom', 0)", false, false);
+        StatementShape second = StatementShape.parse("INSERT INTO users (uuid, name, tickets) VALUES ('b', 'Jerry', 14)", false, false);
+
+        Assertions.assertNotNull(first);
+        Assertions.assertNotNull(second);
+        Assertions.assertEquals("INSERT INTO users (uuid, name, tickets) VALUES (?, ?, ?)", first.getSql());
+        Assertions.assertEquals(first.getSql(), second.getSql());
+        Assertions.assertEquals(Arrays.asList("b", "Jerry", 14L), second.getParameters());
+    }
+
+    @Test
+    public void testOnlyDataManipulation() {
+        Assertions.assertNull(StatementShape.parse("CREATE TABLE t2 (id INT)", false, false));
+        Assertions.assertNull(StatementShape.parse("INSERTED", false, false));
+        Assertions.assertNotNull(StatementShape.parse("update t2 SET a = 1", false, false));
+    }
+
+    @Test
+    public void testIdentifiersAndPrefixedLiterals() {
+        StatementShape shape = StatementShape.parse("UPDATE t2 SET \"col1\" = X'0F', b = 0x1F, c = 1.5e3 WHERE id = -3", false, false);
+
+        Assertions.assertEquals("UPDATE t2 SET \"col1\" = X'0F', b = 0x1F, c = ? WHERE id = ?", shape.getSql());
+        Assertions.assertEquals(Arrays.asList(new BigDecimal("1.5e3"), -3L), shape.getParameters());
+    }
+
+    @Test
+    public void testOnlyValuePositions() {
+        // A bound ordinal groups by a constant and a bound type argument is a syntax error.
+        StatementShape grouped = StatementShape.parse(
+                "INSERT INTO totals (a, b) SELECT a, SUM(b) FROM items WHERE c = 'x' AND d IN (1, 2) GROUP BY 1 ORDER BY 2 LIMIT 10 OFFSET 5", false, false);
+        Assertions.assertEquals(
+                "INSERT INTO totals (a, b) SELECT a, SUM(b) FROM items WHERE c = ? AND d IN (1, 2) GROUP BY 1 ORDER BY 2 LIMIT 10 OFFSET 5", grouped.getSql());
+        Assertions.assertEquals(Arrays.asList("x"), grouped.getParameters());
+
+        StatementShape cast = StatementShape.parse("UPDATE t SET a = CAST(b AS DECIMAL(10,2)), c = 5 WHERE id >= 3 + 1", false, false);
+        Assertions.assertEquals("UPDATE t SET a = CAST(b AS DECIMAL(10,2)), c = ? WHERE id >= 3 + 1", cast.getSql());
+        Assertions.assertEquals(Arrays.asList(5L), cast.getParameters());
+
+        StatementShape values = StatementShape.parse(
+                "INSERT INTO t VALUES (1, CAST('2.5' AS DECIMAL(10,2)), SUBSTR('abc', 2)), (-2, 'b', 'c') ON DUPLICATE KEY UPDATE n = 7", true, true);
+        Assertions.assertEquals(
+                "INSERT INTO t VALUES (?, CAST('2.5' AS DECIMAL(10,2)), SUBSTR('abc', 2)), (?, ?, ?) ON DUPLICATE KEY UPDATE n = ?", values.getSql());
+        Assertions.assertEquals(Arrays.asList(1L, -2L, "b", "c", 7L), values.getParameters());
+    }
+
+    @Test
+    public void testMySqlStrings() {
+        StatementShape shape = StatementShape.parse("INSERT INTO t VALUES (\"it's\", 'a\\'b', 'c''d')", true, true);
+
+        Assertions.assertEquals("INSERT INTO t VALUES (?, ?, ?)", shape.getSql());
+        Assertions.assertEquals(Arrays.asList("it's", "a'b", "c'd"), shape.getParameters());
+    }
+
+    @Test
+    public void testExistingPlaceholder() {
+        Assertions.assertNull(StatementShape.parse("INSERT INTO t VALUES (?)", false, false));
+    }
+
+    @Test
+    public void testDollarQuotes() {
+        Assertions.assertNull(StatementShape.parse("INSERT INTO t VALUES ($$it's$$, 'a')", false, false));
+        Assertions.assertEquals("UPDATE t SET a$b = ?", StatementShape.parse("UPDATE t SET a$b = 1", false, false).getSql());
+    }
+}
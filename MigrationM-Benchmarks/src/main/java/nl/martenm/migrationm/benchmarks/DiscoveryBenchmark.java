@@ -0,0 +1,44 @@
+package nl.martenm.migrationm.benchmarks;
+
+import nl.martenm.migrationm.MigrationM;
+import nl.martenm.migrationm.source.ZipMigrationSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locating the migrations in a plugin jar, see {@link MigrationM#loadMigrations(nl.martenm.migrationm.api.MigrationSource)}.
+ * Half of the jar entries are migrations, the other half are class files that have to be skipped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DiscoveryBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int migrations;
+
+    private Path jar;
+
+    @Setup(Level.Trial)
+    public void createJar() throws IOException {
+        jar = Fixtures.createJar(migrations);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJar() {
+        Fixtures.deleteQuietly(jar);
+    }
+
+    @Benchmark
+    public MigrationM loadMigrations() {
+        MigrationM migrationM = new MigrationM(Fixtures.quietProgram(), new Fixtures.NoopDatabaseManager());
+        migrationM.loadMigrations(new ZipMigrationSource(jar, "migrations"));
+        return migrationM;
+    }
+}
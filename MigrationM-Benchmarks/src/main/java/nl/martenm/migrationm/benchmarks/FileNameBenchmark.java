@@ -0,0 +1,45 @@
+package nl.martenm.migrationm.benchmarks;
+
+import nl.martenm.migrationm.MigrationM;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the date out of migration file names, see {@link MigrationM#addMigration(String, nl.martenm.migrationm.api.InputStreamProvider)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FileNameBenchmark {
+
+    private static final int NAMES = 1000;
+
+    private String[] names;
+    private MigrationM migrationM;
+
+    @Setup(Level.Trial)
+    public void createNames() {
+        names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = Fixtures.migrationName(i);
+        }
+        migrationM = new MigrationM(Fixtures.quietProgram(), new Fixtures.NoopDatabaseManager());
+    }
+
+    /**
+     * The reported time is per file name.
+     */
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public MigrationM addMigration() {
+        migrationM.flush();
+        for (String name : names) {
+            migrationM.addMigration(name, null);
+        }
+        return migrationM;
+    }
+}
@@ -0,0 +1,112 @@
+package nl.martenm.migrationm.benchmarks;
+
+import nl.martenm.migrationm.api.DatabaseManager;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Synthetic migrations shared by the benchmarks.
+ */
+final class Fixtures {
+
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private Fixtures() {
+    }
+
+    /**
+     * A program whose logger drops everything below warnings, logging should not be measured.
+     */
+    static ProgramInfo quietProgram() {
+        Logger logger = Logger.getLogger("MigrationM-Benchmarks");
+        logger.setLevel(Level.WARNING);
+        return new ProgramInfo("benchmark", "1.0.0", logger);
+    }
+
+    /**
+     * The file name of the n-th migration, every migration is one minute newer than the previous one.
+     */
+    static String migrationName(int n) {
+        LocalDateTime date = START.plusMinutes(n);
+        return String.format("%d-%d-%d-%02d.%02d-migration_%d.sql",
+                date.getYear(), date.getMonthValue(), date.getDayOfMonth(), date.getHour(), date.getMinute(), n);
+    }
+
+    /**
+     * A migration that creates a table and fills it with single-row INSERTs.
+     */
+    static String migrationSql(int n, int rows) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("-- Migration ").append(n).append('\n');
+        builder.append("CREATE TABLE table_").append(n).append(" (id INTEGER PRIMARY KEY, name VARCHAR(64), score DECIMAL(10, 2));\n");
+        for (int i = 0; i < rows; i++) {
+            builder.append("INSERT INTO table_").append(n).append(" (id, name, score) VALUES (")
+                    .append(i).append(", 'name ''").append(i).append("''; ok', ").append(i).append(".25);\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes a jar with a migrations folder and some unrelated class files, like a plugin jar.
+     */
+    static Path createJar(int migrations) throws IOException {
+        Path jar = Files.createTempFile("migrationm-benchmark", ".jar");
+        jar.toFile().deleteOnExit();
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < migrations; i++) {
+                zip.putNextEntry(new ZipEntry("migrations/" + migrationName(i)));
+                zip.write(migrationSql(i, 1).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+
+                zip.putNextEntry(new ZipEntry("nl/example/plugin/Class" + i + ".class"));
+                zip.write(new byte[64]);
+                zip.closeEntry();
+            }
+        }
+
+        return jar;
+    }
+
+    /**
+     * A database manager that does nothing, used when only MigrationM itself is measured.
+     */
+    static class NoopDatabaseManager implements DatabaseManager {
+
+        @Override
+        public LocalDateTime lastMigration(ProgramInfo info) {
+            return null;
+        }
+
+        @Override
+        public boolean isSetup() {
+            return true;
+        }
+
+        @Override
+        public void setup() {
+        }
+
+        @Override
+        public void executeMigration(ProgramInfo info, Migration migration) {
+        }
+    }
+
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
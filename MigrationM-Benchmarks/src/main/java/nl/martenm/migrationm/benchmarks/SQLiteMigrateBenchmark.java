@@ -0,0 +1,71 @@
+package nl.martenm.migrationm.benchmarks;
+
+import nl.martenm.migrationm.MigrationM;
+import nl.martenm.migrationm.databasemanager.sqlite.SQLiteDatabaseManager;
+import org.openjdk.jmh.annotations.*;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A complete {@link MigrationM#migrate()} run against a new file-backed SQLite database.
+ * Every iteration starts with an empty database, so a single shot is measured.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SQLiteMigrateBenchmark {
+
+    @Param({"10", "100"})
+    public int migrations;
+
+    @Param({"10", "1000"})
+    public int rows;
+
+    private byte[][] sql;
+    private Path database;
+    private MigrationM migrationM;
+
+    @Setup(Level.Trial)
+    public void createMigrations() {
+        sql = new byte[migrations][];
+        for (int i = 0; i < migrations; i++) {
+            sql[i] = Fixtures.migrationSql(i, rows).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createDatabase() throws IOException {
+        database = Files.createTempFile("migrationm-benchmark", ".db");
+
+        SQLiteDataSource source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + database.toAbsolutePath());
+
+        migrationM = new MigrationM(Fixtures.quietProgram(), new SQLiteDatabaseManager(source));
+        for (int i = 0; i < migrations; i++) {
+            byte[] contents = sql[i];
+            migrationM.addMigration(Fixtures.migrationName(i), () -> new ByteArrayInputStream(contents));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteDatabase() {
+        Fixtures.deleteQuietly(database);
+    }
+
+    @Benchmark
+    public boolean migrate() {
+        if (!migrationM.migrate()) {
+            throw new IllegalStateException("The migrations failed.");
+        }
+        return true;
+    }
+}
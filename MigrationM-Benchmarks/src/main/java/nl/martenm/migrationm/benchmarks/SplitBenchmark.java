@@ -0,0 +1,48 @@
+package nl.martenm.migrationm.benchmarks;
+
+import nl.martenm.migrationm.util.SqlStatementReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting a migration into statements, the first step of executing a migration.
+ * The migrations contain quoted semicolons, comments and a trigger body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SplitBenchmark {
+
+    @Param({"100", "10000"})
+    public int statements;
+
+    private byte[] migration;
+
+    @Setup(Level.Trial)
+    public void createMigration() {
+        String sql = Fixtures.migrationSql(0, statements - 2) +
+                "/* Keep the score up to date */\n" +
+                "CREATE TRIGGER score_trigger AFTER INSERT ON table_0 BEGIN\n" +
+                "    UPDATE table_0 SET score = score + 1 WHERE id = NEW.id;\n" +
+                "END;\n";
+        migration = sql.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int split() throws IOException {
+        int count = 0;
+        try (SqlStatementReader reader = new SqlStatementReader(new ByteArrayInputStream(migration))) {
+            while (reader.next() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -62,12 +62,15 @@ public class ExamplePlugin extends JavaPlugin {
             Execute the migrations that are required!
             This will not execute migrations that have already been executed.
 
-            Using the result of this function is not required but recommended.
+            The migrations are executed on an async task so the server does not freeze during big upgrades.
+            Using the result is not required but recommended, features that need the database should wait for it.
          */
-        boolean success = migrationManager.migrate();
-        if(!success) {
-            getLogger().warning("Cannot run the plugin if the migrations are not applied.");
-            getServer().getPluginManager().disablePlugin(this);
-        }
+        migrationManager.migrateAsync(task -> getServer().getScheduler().runTaskAsynchronously(this, task))
+                .thenAccept(result -> getServer().getScheduler().runTask(this, () -> {
+                    if(!result.isSuccessful()) {
+                        getLogger().warning("Cannot run the plugin if the migrations are not applied.");
+                        getServer().getPluginManager().disablePlugin(this);
+                    }
+                }));
     }
 }
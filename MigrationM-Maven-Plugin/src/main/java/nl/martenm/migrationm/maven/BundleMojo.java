@@ -0,0 +1,80 @@
+package nl.martenm.migrationm.maven;
+
+import nl.martenm.migrationm.source.DirectoryMigrationSource;
+import nl.martenm.migrationm.source.MigrationBundle;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Compiles the migrations folder into a {@link MigrationBundle} in the build output.
+ * MigrationM#loadMigrations(String, Class) picks up the bundle instead of locating and splitting the migrations on startup.
+ */
+@Mojo(name = "bundle", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true)
+public class BundleMojo extends AbstractMojo {
+
+    /**
+     * The folder inside the output directory that contains the migrations.
+     */
+    @Parameter(property = "migrationm.folder", defaultValue = "migrations")
+    private String folder;
+
+    /**
+     * Split the statements with MySQL style backslash escapes in strings.
+     * Databases that split differently split the migrations again while reading them.
+     */
+    @Parameter(property = "migrationm.backslashEscapes", defaultValue = "false")
+    private boolean backslashEscapes;
+
+    /**
+     * Split the statements with MySQL style # comments.
+     */
+    @Parameter(property = "migrationm.hashComments", defaultValue = "false")
+    private boolean hashComments;
+
+    /**
+     * Split the statements with PostgreSQL style dollar quotes.
+     */
+    @Parameter(property = "migrationm.dollarQuotes", defaultValue = "false")
+    private boolean dollarQuotes;
+
+    /**
+     * The directory the resources have been copied to.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File outputDirectory;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        Path migrations = outputDirectory.toPath().resolve(folder);
+        if (!Files.isDirectory(migrations)) {
+            getLog().warn("No migrations folder found at " + migrations + ", skipping the bundle.");
+            return;
+        }
+
+        Path target = outputDirectory.toPath().resolve(MigrationBundle.resourceName(folder));
+        int count;
+        try {
+            Files.createDirectories(target.getParent());
+            try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(target))) {
+                count = MigrationBundle.write(new DirectoryMigrationSource(migrations), stream, backslashEscapes, hashComments, dollarQuotes);
+            }
+        } catch (DateTimeParseException ex) {
+            throw new MojoExecutionException("Migration with a malformed name in " + migrations + ": " + ex.getParsedString(), ex);
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Failed to write the migration bundle to " + target, ex);
+        }
+
+        getLog().info("Bundled " + count + " migrations into " + target);
+    }
+}
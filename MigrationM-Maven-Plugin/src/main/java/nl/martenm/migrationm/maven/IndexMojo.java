@@ -0,0 +1,66 @@
+package nl.martenm.migrationm.maven;
+
+import nl.martenm.migrationm.source.DirectoryMigrationSource;
+import nl.martenm.migrationm.source.MigrationIndex;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Writes a {@link MigrationIndex} of the migrations folder into the build output.
+ * MigrationM#loadMigrations(String, Class) picks up the index instead of locating the migrations on startup.
+ */
+@Mojo(name = "index", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true)
+public class IndexMojo extends AbstractMojo {
+
+    /**
+     * The folder inside the output directory that contains the migrations.
+     */
+    @Parameter(property = "migrationm.folder", defaultValue = "migrations")
+    private String folder;
+
+    /**
+     * The directory the resources have been copied to.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File outputDirectory;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        Path migrations = outputDirectory.toPath().resolve(folder);
+        if (!Files.isDirectory(migrations)) {
+            getLog().warn("No migrations folder found at " + migrations + ", skipping the index.");
+            return;
+        }
+
+        MigrationIndex index;
+        try {
+            index = MigrationIndex.build(new DirectoryMigrationSource(migrations));
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Failed to read the migrations in " + migrations, ex);
+        } catch (DateTimeParseException ex) {
+            throw new MojoExecutionException("Migration with a malformed name in " + migrations + ": " + ex.getParsedString(), ex);
+        }
+
+        Path target = outputDirectory.toPath().resolve(MigrationIndex.resourceName(folder));
+        try {
+            Files.createDirectories(target.getParent());
+            try (OutputStream stream = Files.newOutputStream(target)) {
+                index.write(stream);
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Failed to write the migration index to " + target, ex);
+        }
+
+        getLog().info("Indexed " + index.getEntries().size() + " migrations into " + target);
+    }
+}
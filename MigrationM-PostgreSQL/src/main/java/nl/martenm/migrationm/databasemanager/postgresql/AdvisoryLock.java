@@ -0,0 +1,118 @@
+package nl.martenm.migrationm.databasemanager.postgresql;
+
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * A PostgreSQL session level advisory lock (pg_advisory_lock). The lock belongs to the connection, so it is
+ * released by the server when the holder crashes. Waiting happens on the server, which hands the lock over as soon
+ * as it is released.
+ *
+ * Advisory locks are keyed by a number, the key is the start of the SHA-256 hash of the lock name.
+ */
+class AdvisoryLock implements MigrationLock {
+
+    /**
+     * lock_not_available, raised when lock_timeout passes while waiting.
+     */
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    private final Connection connection;
+    private final long key;
+    private final boolean contended;
+
+    private AdvisoryLock(Connection connection, long key, boolean contended) {
+        this.connection = connection;
+        this.key = key;
+        this.contended = contended;
+    }
+
+    /**
+     * Acquires the lock, waiting for the current holder if there is one.
+     * @param connection The connection that holds the lock, it's closed together with the lock
+     * @param name The name of the lock
+     * @param timeout How long to wait for the lock
+     * @return The lock
+     * @throws SQLException When the lock could not be requested
+     * @throws MigrationException When the lock could not be acquired in time
+     */
+    static AdvisoryLock acquire(Connection connection, String name, Duration timeout) throws SQLException, MigrationException {
+        long key = key(name);
+        connection.setAutoCommit(true);
+
+        // A free lock is taken without waiting, so we know whether another node was migrating.
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, key);
+
+            try (ResultSet set = statement.executeQuery()) {
+                if (set.next() && set.getBoolean(1)) {
+                    return new AdvisoryLock(connection, key, false);
+                }
+            }
+        }
+
+        long millis = Math.max(1, timeout.toMillis());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET lock_timeout = " + millis);
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_lock(?)")) {
+            statement.setLong(1, key);
+            statement.executeQuery().close();
+            return new AdvisoryLock(connection, key, true);
+        } catch (SQLException ex) {
+            if (LOCK_NOT_AVAILABLE.equals(ex.getSQLState())) {
+                throw new MigrationException(String.format("Timed out after %d seconds waiting for the migration lock %s.",
+                        timeout.getSeconds(), name), ex);
+            }
+            throw ex;
+        } finally {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("RESET lock_timeout");
+            }
+        }
+    }
+
+    private static long key(String name) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public boolean isContended() {
+        return contended;
+    }
+
+    @Override
+    public void close() {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, key);
+            statement.executeQuery().close();
+        } catch (SQLException ex) {
+            // Closing the connection releases the lock as well.
+            ex.printStackTrace();
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package nl.martenm.migrationm.databasemanager.postgresql;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Streams rows into a table with COPY ... FROM STDIN, encoded in the text format.
+ *
+ * Rows are encoded into a buffer that is sent whenever it grows beyond 64 KiB, only that part of a load is
+ * held in memory. The COPY is started when the first buffer is sent and ends with {@link #finish()}.
+ * While it is active, the connection can't be used for anything else.
+ */
+class CopyWriter implements AutoCloseable {
+
+    private static final int SEND_SIZE = 65536;
+
+    private final Connection connection;
+    private final String sql;
+    private final StringBuilder text = new StringBuilder(SEND_SIZE + 1024);
+
+    private CopyIn copy = null;
+    private boolean firstField = true;
+    private long rows = 0;
+
+    /**
+     * @param connection The connection
+     * @param table The quoted name of the table
+     * @param columns The quoted column names, separated by commas
+     */
+    CopyWriter(Connection connection, String table, String columns) {
+        this.connection = connection;
+        this.sql = String.format("COPY %s (%s) FROM STDIN", table, columns);
+    }
+
+    /**
+     * Adds a field to the current row.
+     * @param value The value, NULL for a NULL
+     */
+    void field(Object value) {
+        if (!firstField) text.append('\t');
+        firstField = false;
+
+        if (value == null) {
+            text.append("\\N");
+            return;
+        }
+
+        String string = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+            switch (ch) {
+                case '\\': text.append("\\\\"); break;
+                case '\t': text.append("\\t"); break;
+                case '\n': text.append("\\n"); break;
+                case '\r': text.append("\\r"); break;
+                default: text.append(ch);
+            }
+        }
+    }
+
+    /**
+     * Ends the current row.
+     * @throws SQLException When sending the buffer failed
+     */
+    void endRow() throws SQLException {
+        text.append('\n');
+        firstField = true;
+        rows++;
+
+        if (text.length() >= SEND_SIZE) {
+            send();
+        }
+    }
+
+    /**
+     * The amount of rows added since the COPY started.
+     * @return The amount of rows
+     */
+    long getRows() {
+        return rows;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    private void send() throws SQLException {
+        if (text.length() == 0) return;
+
+        if (copy == null) {
+            copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+        }
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        text.setLength(0);
+    }
+
+    /**
+     * Sends the remaining rows and ends the COPY. Rows that are added afterwards start a new COPY.
+     * @return The amount of rows the database has copied
+     * @throws SQLException When one of the rows was rejected
+     */
+    long finish() throws SQLException {
+        send();
+        rows = 0;
+        if (copy == null) {
+            return 0;
+        }
+
+        CopyIn active = copy;
+        copy = null;
+        return active.endCopy();
+    }
+
+    /**
+     * Cancels a COPY that has not been finished, the rows that have been sent are discarded.
+     */
+    @Override
+    public void close() {
+        text.setLength(0);
+        rows = 0;
+        if (copy != null && copy.isActive()) {
+            try {
+                copy.cancelCopy();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+        copy = null;
+    }
+}
@@ -0,0 +1,52 @@
+package nl.martenm.migrationm.databasemanager.postgresql;
+
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.databasemanager.JdbcDatabaseManager;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.databasemanager.RetryPolicy;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * A database manager for PostgreSQL.
+ *
+ * DDL is transactional in PostgreSQL, so every migration is executed in a single transaction: a failed
+ * migration leaves nothing behind and no checkpoints are needed. Runs of INSERTs and data migrations are
+ * streamed into their tables with COPY ... FROM STDIN instead of batched INSERTs.
+ */
+public class PostgreSQLDatabaseManager extends JdbcDatabaseManager {
+
+    public PostgreSQLDatabaseManager(DataSource source) {
+        this(source, "migrations");
+    }
+
+    public PostgreSQLDatabaseManager(DataSource source, String tableName) {
+        super(source, tableName);
+    }
+
+    @Override
+    protected JdbcMigrationSession createSession(Connection connection) {
+        return new PostgreSQLMigrationSession(this, connection);
+    }
+
+    /**
+     * Any error aborts the transaction in PostgreSQL, so deadlocks (40P01), serialization failures (40001) and
+     * lock timeouts (55P03) retry the whole migration.
+     */
+    @Override
+    protected RetryPolicy createRetryPolicy() {
+        return RetryPolicy.standard()
+                .sqlState("55P03", RetryPolicy.Scope.TRANSACTION);
+    }
+
+    @Override
+    protected MigrationLock createLock(Connection connection, ProgramInfo info, Duration timeout) throws SQLException, MigrationException {
+        // Advisory locks are database wide, the table name keeps programs of different tracking tables apart.
+        return AdvisoryLock.acquire(connection, getTableName() + "." + info.getName(), timeout);
+    }
+}
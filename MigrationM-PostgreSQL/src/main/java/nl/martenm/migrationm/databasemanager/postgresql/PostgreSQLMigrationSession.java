@@ -0,0 +1,154 @@
+package nl.martenm.migrationm.databasemanager.postgresql;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.util.DataFileReader;
+import nl.martenm.migrationm.util.ProgramInfo;
+import nl.martenm.migrationm.util.StatementBatcher;
+
+import java.io.IOException;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The session used by the {@link PostgreSQLDatabaseManager}.
+ */
+class PostgreSQLMigrationSession extends JdbcMigrationSession {
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("\\brows=(\\d+)");
+
+    PostgreSQLMigrationSession(PostgreSQLDatabaseManager manager, Connection connection) {
+        super(manager, connection);
+    }
+
+    @Override
+    protected boolean dollarQuotes() {
+        return true;
+    }
+
+    @Override
+    protected StatementBatcher createBatcher() {
+        return new PostgreSQLStatementBatcher(connection, manager.getBatchSize());
+    }
+
+    @Override
+    protected boolean tableExists(String table) throws SQLException {
+        // Resolved through the search path, like the unqualified name in the queries.
+        try (PreparedStatement statement = connection.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            statement.setString(1, table);
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next() && set.getBoolean(1);
+            }
+        }
+    }
+
+    @Override
+    protected void updateLastMigration(ProgramInfo info, LocalDateTime localDateTime) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                String.format("INSERT INTO %1$s (program, version, last_migration, baseline_at) VALUES (?, ?, ?, ?)" +
+                        " ON CONFLICT (program) DO UPDATE SET version = EXCLUDED.version," +
+                        " last_migration = GREATEST(%1$s.last_migration, EXCLUDED.last_migration)", tableName))) {
+
+            statement.setString(1, info.getName());
+            statement.setString(2, info.getVersion());
+            statement.setTimestamp(3, Timestamp.valueOf(localDateTime));
+            statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+
+            statement.execute();
+        }
+    }
+
+    /**
+     * Streams the records into the table with a COPY per committed chunk, or a single COPY for the whole file.
+     */
+    @Override
+    protected long loadData(ProgramInfo info, Migration migration, String table, String[] columns, DataFileReader reader, long resume) throws SQLException, IOException {
+        int commitSize = manager.getDataCommitSize();
+
+        StringJoiner name = new StringJoiner(".");
+        for (String part : table.split("\\.")) {
+            name.add(quoteIdentifier(part));
+        }
+        StringJoiner names = new StringJoiner(", ");
+        for (String column : columns) {
+            names.add(quoteIdentifier(column));
+        }
+
+        long rows = 0;
+        try (CopyWriter copy = new CopyWriter(connection, name.toString(), names.toString())) {
+            long time = System.nanoTime();
+
+            String[] record;
+            while ((record = reader.next()) != null) {
+                if (record.length != columns.length) {
+                    throw new IOException(String.format("Expected %d fields but found %d.", columns.length, record.length));
+                }
+
+                for (String value : record) {
+                    copy.field(value);
+                }
+                copy.endRow();
+
+                if (commitSize > 0 && copy.getRows() >= commitSize) {
+                    rows += finishCopy(migration, copy, reader, rows, time);
+                    writeCheckpoint(info, migration, resume + rows);
+                    connection.commit();
+                    time = System.nanoTime();
+                }
+            }
+
+            rows += finishCopy(migration, copy, reader, rows, time);
+        }
+
+        return rows;
+    }
+
+    private long finishCopy(Migration migration, CopyWriter copy, DataFileReader reader, long rows, long time) throws SQLException {
+        if (copy.getRows() == 0) {
+            return 0;
+        }
+
+        long finishing = System.nanoTime();
+        long copied = copy.finish();
+        if (instrumentation.isEnabled()) {
+            instrumentation.onStatement(migration, (int) reader.getLine(), copy.getSql(), finishing - time, System.nanoTime() - finishing, copied);
+        }
+
+        if (listener != null) {
+            listener.onProgress(migration, rows + copied);
+        }
+        return copied;
+    }
+
+    @Override
+    protected long explainRows(String sql) throws SQLException {
+        // The INSERT, UPDATE or DELETE node itself returns no rows, the nodes below it estimate what it touches.
+        long rows = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery("EXPLAIN " + sql)) {
+            while (set.next()) {
+                Matcher matcher = PLAN_ROWS.matcher(set.getString(1));
+                if (matcher.find()) {
+                    rows = Math.max(rows, Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    protected long tableRows(String table) throws SQLException {
+        // The estimate of the planner, kept up to date by VACUUM and ANALYZE. It's negative before the first ANALYZE.
+        try (PreparedStatement statement = connection.prepareStatement("SELECT reltuples FROM pg_class WHERE oid = to_regclass(?)")) {
+            statement.setString(1, table);
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next() ? Math.max(-1, (long) set.getDouble(1)) : -1;
+            }
+        }
+    }
+}
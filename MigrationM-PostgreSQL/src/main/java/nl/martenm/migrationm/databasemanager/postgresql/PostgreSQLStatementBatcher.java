@@ -0,0 +1,277 @@
+package nl.martenm.migrationm.databasemanager.postgresql;
+
+import nl.martenm.migrationm.util.StatementBatcher;
+import nl.martenm.migrationm.util.StatementShape;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link StatementBatcher} that streams runs of INSERTs through COPY.
+ *
+ * Two or more consecutive INSERTs into the same columns whose values are all literals or NULL are encoded as rows
+ * of a single COPY ... FROM STDIN, which skips the parsing and planning of every single statement. All other statements
+ * are batched as usual. String literals are sent untyped, so the database converts them like it converts
+ * the literals of the original statement.
+ */
+class PostgreSQLStatementBatcher extends StatementBatcher {
+
+    private static final String IDENTIFIER = "(?:\"(?:[^\"]|\"\")+\"|[\\w$]+)";
+
+    private static final Pattern INSERT = Pattern.compile(
+            "^\\s*INSERT\\s+INTO\\s+(" + IDENTIFIER + "(?:\\s*\\.\\s*" + IDENTIFIER + ")?)\\s*\\(([^()?]+)\\)\\s*VALUES\\s*(.+)$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * The line of a rejected row, e.g. "Where: COPY items, line 3, column price".
+     */
+    private static final Pattern COPY_LINE = Pattern.compile("COPY [^,]+, line (\\d+)");
+
+    private final Connection connection;
+    private final int batchSize;
+
+    private CopyWriter copy = null;
+    private String target = null;
+    private final List<String> pending = new ArrayList<>();
+    private final List<Long> pendingRows = new ArrayList<>();
+
+    // The last INSERT, it is only copied when the next INSERT has the same target.
+    private String held = null;
+    private String heldTarget = null;
+    private List<Object> heldValues = null;
+
+    private String failedStatement = null;
+    private long copiedRows = 0;
+
+    PostgreSQLStatementBatcher(Connection connection, int batchSize) {
+        super(connection, batchSize, false, false);
+        this.connection = connection;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void execute(String sql) throws SQLException {
+        StatementShape parsed = batchSize > 1 ? StatementShape.parse(sql, false, false) : null;
+        Matcher insert = parsed == null ? null : INSERT.matcher(parsed.getSql());
+        int columns = insert != null && insert.matches() ? insert.group(2).split(",").length : 0;
+        List<Object> values = columns > 0 ? values(insert.group(3), parsed.getParameters(), columns) : null;
+
+        if (values == null) {
+            finishCopy();
+            releaseHeld();
+            super.execute(sql);
+            return;
+        }
+
+        String table = insert.group(1);
+        String names = insert.group(2).trim();
+        String key = table + " (" + names + ")";
+        if (copy != null && !key.equals(target)) {
+            finishCopy();
+        }
+
+        if (copy == null && !key.equals(heldTarget)) {
+            releaseHeld();
+            held = sql;
+            heldTarget = key;
+            heldValues = values;
+            return;
+        }
+
+        try {
+            if (copy == null) {
+                // The pending batch comes first, the connection can't be used while copying.
+                super.flush();
+                copy = new CopyWriter(connection, table, names);
+                target = key;
+
+                String first = held;
+                List<Object> firstValues = heldValues;
+                held = null;
+                heldTarget = null;
+                heldValues = null;
+                write(first, firstValues, columns);
+            }
+
+            write(sql, values, columns);
+        } catch (SQLException ex) {
+            failed(ex);
+            throw ex;
+        }
+
+        if (pending.size() >= batchSize) {
+            finishCopy();
+        }
+    }
+
+    private void write(String sql, List<Object> values, int columns) throws SQLException {
+        pending.add(sql);
+        for (int i = 0; i < values.size(); i++) {
+            copy.field(values.get(i));
+            if ((i + 1) % columns == 0) {
+                copy.endRow();
+            }
+        }
+        pendingRows.add(copy.getRows());
+    }
+
+    /**
+     * Hands the held INSERT to the normal batching, it is not followed by an INSERT with the same target.
+     */
+    private void releaseHeld() throws SQLException {
+        if (held == null) {
+            return;
+        }
+
+        String sql = held;
+        held = null;
+        heldTarget = null;
+        heldValues = null;
+        super.execute(sql);
+    }
+
+    /**
+     * Collects the values of the VALUES lists of an INSERT shape.
+     * @param lists The part of the shape after VALUES, e.g. (?, NULL), (?, ?)
+     * @param parameters The extracted literals
+     * @param columns The amount of columns
+     * @return The values or NULL if a value is not a plain literal or NULL, or something follows the lists
+     */
+    private static List<Object> values(String lists, List<Object> parameters, int columns) {
+        List<Object> values = new ArrayList<>(parameters.size());
+        int parameter = 0;
+
+        int i = 0;
+        int length = lists.length();
+        boolean expectList = true;
+        while (i < length) {
+            char ch = lists.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                i++;
+                continue;
+            }
+
+            if (expectList != (ch == '(')) {
+                return null;
+            }
+            if (!expectList) {
+                if (ch != ',') return null;
+                expectList = true;
+                i++;
+                continue;
+            }
+
+            int end = lists.indexOf(')', i);
+            if (end < 0) return null;
+
+            String[] list = lists.substring(i + 1, end).split(",", -1);
+            if (list.length != columns) return null;
+
+            for (String value : list) {
+                value = value.trim();
+                if (value.equals("?")) {
+                    values.add(parameters.get(parameter++));
+                } else if (value.equalsIgnoreCase("NULL")) {
+                    values.add(null);
+                } else {
+                    return null;
+                }
+            }
+
+            expectList = false;
+            i = end + 1;
+        }
+
+        return expectList ? null : values;
+    }
+
+    private void finishCopy() throws SQLException {
+        if (copy == null) {
+            return;
+        }
+
+        try {
+            copiedRows += copy.finish();
+        } catch (SQLException ex) {
+            failed(ex);
+            throw ex;
+        } finally {
+            copy.close();
+            copy = null;
+            target = null;
+            pending.clear();
+            pendingRows.clear();
+        }
+    }
+
+    /**
+     * Finds the statement of the row the database rejected.
+     */
+    private void failed(SQLException ex) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int index = 0;
+        Matcher line = COPY_LINE.matcher(String.valueOf(ex.getMessage()));
+        if (line.find()) {
+            long row = Long.parseLong(line.group(1));
+            while (index < pendingRows.size() && pendingRows.get(index) < row) {
+                index++;
+            }
+        }
+        failedStatement = pending.get(Math.min(index, pending.size() - 1));
+    }
+
+    @Override
+    protected void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value instanceof String) {
+            // A string literal has no type in PostgreSQL, a VARCHAR parameter can't be compared to a date for example.
+            statement.setObject(index, value, Types.OTHER);
+        } else {
+            super.bind(statement, index, value);
+        }
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        finishCopy();
+        releaseHeld();
+        super.flush();
+    }
+
+    @Override
+    public String getFailedStatement() {
+        return failedStatement != null ? failedStatement : super.getFailedStatement();
+    }
+
+    @Override
+    public boolean isBatchFailed() {
+        return failedStatement != null || super.isBatchFailed();
+    }
+
+    @Override
+    public long getRowCount() {
+        return super.getRowCount() + copiedRows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (copy != null) {
+            copy.close();
+            copy = null;
+            pending.clear();
+            pendingRows.clear();
+        }
+        held = null;
+        heldTarget = null;
+        heldValues = null;
+        super.close();
+    }
+}
@@ -0,0 +1,189 @@
+package nl.martenm.migrationm.databasemanager.postgresql;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import nl.martenm.migrationm.MigrationM;
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.MigrationResult;
+import nl.martenm.migrationm.api.MigrationSession;
+import nl.martenm.migrationm.api.StatementEstimate;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.MigrationNames;
+import nl.martenm.migrationm.util.ProgramInfo;
+import org.junit.jupiter.api.*;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Runs against the server in the MIGRATIONM_POSTGRES_URL environment variable, or an embedded server otherwise.
+ * The tests are skipped when neither is available.
+ */
+public class PostgreSQLTest {
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource source;
+
+    Logger logger = Logger.getAnonymousLogger();
+
+    @BeforeAll
+    public static void start() {
+        String url = System.getenv("MIGRATIONM_POSTGRES_URL");
+        if (url != null) {
+            PGSimpleDataSource simple = new PGSimpleDataSource();
+            simple.setUrl(url);
+            source = simple;
+            return;
+        }
+
+        try {
+            postgres = EmbeddedPostgres.start();
+            source = postgres.getPostgresDatabase();
+        } catch (Exception ex) {
+            Assumptions.assumeTrue(false, "No PostgreSQL server available: " + ex.getMessage());
+        }
+    }
+
+    @AfterAll
+    public static void stop() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @BeforeEach
+    public void clean() throws SQLException {
+        execute("DROP SCHEMA public CASCADE; CREATE SCHEMA public");
+    }
+
+    @Test
+    public void testMigrations() throws Exception {
+        StringBuilder sql = new StringBuilder("CREATE TABLE items (id INT PRIMARY KEY, name TEXT, added DATE, price NUMERIC(8, 2));\n" +
+                "CREATE FUNCTION price_of(item INT) RETURNS NUMERIC AS $body$\n" +
+                "DECLARE result NUMERIC;\n" +
+                "BEGIN\n" +
+                "  SELECT price INTO result FROM items WHERE id = item; -- a $ inside: 'quote\n" +
+                "  RETURN result;\n" +
+                "END;\n" +
+                "$body$ LANGUAGE plpgsql;\n");
+        for (int i = 1; i <= 500; i++) {
+            sql.append("INSERT INTO items (id, name, added, price) VALUES (").append(i).append(", 'item\t").append(i)
+                    .append(" \\ o''clock', '2020-01-0").append(i % 9 + 1).append("', ").append(i % 2 == 0 ? "NULL" : "9.95").append(");\n");
+        }
+        sql.append("UPDATE items SET price = 1.50 WHERE added = '2020-01-01' AND price IS NOT NULL;\n");
+
+        MigrationM migrationM = new MigrationM(new ProgramInfo("test-program", "1.0.0", logger), new PostgreSQLDatabaseManager(source));
+        migrationM.addMigration("2020-1-1-10.00-items.sql", () -> new ByteArrayInputStream(sql.toString().getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertTrue(migrationM.migrate());
+        Assertions.assertEquals(500, count("SELECT COUNT(*) FROM items"));
+        Assertions.assertEquals(250, count("SELECT COUNT(*) FROM items WHERE price IS NULL"));
+        Assertions.assertEquals(1, count("SELECT COUNT(*) FROM items WHERE name = E'item\\t7 \\\\ o''clock'"));
+        Assertions.assertEquals(150, count("SELECT price_of(9) * 100"));
+        Assertions.assertEquals(528, count("SELECT row_count FROM migrations_history"));
+    }
+
+    @Test
+    public void testTransactionalDdl() throws SQLException {
+        String sql = "CREATE TABLE items (id INT PRIMARY KEY, price INT);\n" +
+                "INSERT INTO items (id, price) VALUES (1, 10);\n" +
+                "INSERT INTO items (id, price) VALUES (2, 'ten');\n" +
+                "INSERT INTO items (id, price) VALUES (3, 30);\n";
+
+        MigrationM migrationM = new MigrationM(new ProgramInfo("test-program", "1.0.0", logger), new PostgreSQLDatabaseManager(source));
+        migrationM.addMigration("2020-1-1-10.00-items.sql", () -> new ByteArrayInputStream(sql.getBytes(StandardCharsets.UTF_8)));
+
+        MigrationResult result = migrationM.migrateAsync(Runnable::run).join();
+        Assertions.assertFalse(result.isSuccessful());
+        Assertions.assertTrue(result.getFailure().getMessage().contains("VALUES (2, 'ten')"), result.getFailure().getMessage());
+
+        // The CREATE TABLE has been rolled back together with the rows.
+        Assertions.assertEquals(0, count("SELECT COUNT(*) FROM pg_class WHERE relname = 'items'"));
+    }
+
+    @Test
+    public void testDataMigration() throws Exception {
+        StringBuilder csv = new StringBuilder("id,name,price\n");
+        for (int i = 1; i <= 2500; i++) {
+            csv.append(i).append(",\"item, ").append(i).append("\",").append(i % 2 == 0 ? "" : "1.25").append('\n');
+        }
+
+        PostgreSQLDatabaseManager manager = new PostgreSQLDatabaseManager(source);
+        manager.setDataCommitSize(1000);
+
+        MigrationM migrationM = new MigrationM(new ProgramInfo("test-program", "1.0.0", logger), manager);
+        migrationM.addMigration("2020-1-1-10.00-create.sql",
+                () -> new ByteArrayInputStream("CREATE TABLE items (id INT PRIMARY KEY, name TEXT NOT NULL, price NUMERIC);".getBytes(StandardCharsets.UTF_8)));
+        migrationM.addMigration("2020-1-1-11.00-items.csv", () -> new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertTrue(migrationM.migrate());
+        Assertions.assertEquals(2500, count("SELECT COUNT(*) FROM items"));
+        Assertions.assertEquals(1250, count("SELECT COUNT(*) FROM items WHERE price IS NULL"));
+        Assertions.assertEquals(1, count("SELECT COUNT(*) FROM items WHERE name = 'item, 2500'"));
+        Assertions.assertEquals(0, count("SELECT COUNT(*) FROM migrations_checkpoints"));
+    }
+
+    @Test
+    public void testExplainAfterFailure() throws Exception {
+        execute("CREATE TABLE items (id INT PRIMARY KEY, price INT)");
+        execute("INSERT INTO items (id, price) SELECT i, i FROM generate_series(1, 1000) i");
+        execute("ANALYZE items");
+
+        // The first statement can't be explained, it must not abort the transaction of the ones after it.
+        String sql = "UPDATE missing SET price = 1;\n" +
+                "UPDATE items SET price = 2;\n";
+        Migration migration = new Migration(MigrationNames.parseDate("2020-1-1-10.00-prices.sql"), "2020-1-1-10.00-prices.sql",
+                () -> new ByteArrayInputStream(sql.getBytes(StandardCharsets.UTF_8)));
+
+        List<StatementEstimate> estimates;
+        try (MigrationSession session = new PostgreSQLDatabaseManager(source).openSession()) {
+            estimates = session.explain(migration);
+        }
+        Assertions.assertEquals(2, estimates.size());
+        Assertions.assertEquals(-1, estimates.get(0).getRows());
+        Assertions.assertEquals(1000, estimates.get(1).getRows());
+    }
+
+    @Test
+    public void testAdvisoryLock() throws Exception {
+        PostgreSQLDatabaseManager manager = new PostgreSQLDatabaseManager(source);
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+        try (MigrationLock lock = manager.acquireLock(info, Duration.ZERO)) {
+            Assertions.assertFalse(lock.isContended());
+            Assertions.assertThrows(MigrationException.class, () -> manager.acquireLock(info, Duration.ofMillis(300)));
+            // The lock lives on the server, no lease row is written.
+            Assertions.assertEquals(0, count("SELECT COUNT(*) FROM pg_tables WHERE tablename = 'migrations_lock'"));
+        }
+
+        try (MigrationLock lock = manager.acquireLock(info, Duration.ZERO)) {
+            Assertions.assertFalse(lock.isContended());
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery(sql)) {
+            set.next();
+            return set.getLong(1);
+        }
+    }
+}
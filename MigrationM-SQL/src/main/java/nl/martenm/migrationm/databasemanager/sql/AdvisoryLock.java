@@ -0,0 +1,93 @@
+package nl.martenm.migrationm.databasemanager.sql;
+
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * A MySQL named lock (GET_LOCK). The lock belongs to the connection, so it is released by the server when
+ * the holder crashes. Waiting happens on the server, which hands the lock over as soon as it is released.
+ */
+class AdvisoryLock implements MigrationLock {
+
+    /**
+     * The maximum length of a lock name.
+     */
+    private static final int MAX_NAME_LENGTH = 64;
+
+    private final Connection connection;
+    private final String name;
+    private final boolean contended;
+
+    private AdvisoryLock(Connection connection, String name, boolean contended) {
+        this.connection = connection;
+        this.name = name;
+        this.contended = contended;
+    }
+
+    /**
+     * Acquires the lock, waiting for the current holder if there is one.
+     * @param connection The connection that holds the lock, it's closed together with the lock
+     * @param name The name of the lock
+     * @param timeout How long to wait for the lock
+     * @return The lock
+     * @throws SQLException When the lock could not be requested
+     * @throws MigrationException When the lock could not be acquired in time
+     */
+    static AdvisoryLock acquire(Connection connection, String name, Duration timeout) throws SQLException, MigrationException {
+        if (name.length() > MAX_NAME_LENGTH) {
+            String hash = Integer.toHexString(name.hashCode());
+            name = name.substring(0, MAX_NAME_LENGTH - hash.length() - 1) + "#" + hash;
+        }
+
+        // A free lock is taken without waiting, so we know whether another node was migrating.
+        if (getLock(connection, name, 0)) {
+            return new AdvisoryLock(connection, name, false);
+        }
+
+        long seconds = Math.max(1, timeout.getSeconds());
+        if (getLock(connection, name, seconds)) {
+            return new AdvisoryLock(connection, name, true);
+        }
+
+        throw new MigrationException(String.format("Timed out after %d seconds waiting for the migration lock %s.", seconds, name), null);
+    }
+
+    private static boolean getLock(Connection connection, String name, long seconds) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, name);
+            statement.setLong(2, seconds);
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next() && set.getInt(1) == 1;
+            }
+        }
+    }
+
+    @Override
+    public boolean isContended() {
+        return contended;
+    }
+
+    @Override
+    public void close() {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, name);
+            statement.executeQuery().close();
+        } catch (SQLException ex) {
+            // Closing the connection releases the lock as well.
+            ex.printStackTrace();
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
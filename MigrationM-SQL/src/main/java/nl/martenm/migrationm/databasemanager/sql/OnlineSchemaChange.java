@@ -0,0 +1,392 @@
+package nl.martenm.migrationm.databasemanager.sql;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static nl.martenm.migrationm.MigrationM.PREFIX;
+
+/**
+ * Executes an ALTER TABLE without locking the table while the rows are copied, marked with a comment after the table name:
+ *
+ *   ALTER TABLE items /* @online *&#47; ADD COLUMN price INT NOT NULL DEFAULT 0
+ *
+ * The change is made in steps:
+ *   1. a shadow table (_items_new) is created with the definition of the table and altered
+ *   2. triggers copy every write to the table into the shadow table
+ *   3. the rows are copied in chunks of the primary key, every chunk is committed by itself
+ *   4. the tables are swapped with a single RENAME TABLE and the old table is dropped
+ *
+ * The copy never overwrites rows that the triggers wrote (NOT EXISTS), the triggers always overwrite (REPLACE).
+ * The copy is a plain INSERT, so a row that does not fit the altered table fails the change instead of being
+ * truncated or skipped silently like INSERT IGNORE would.
+ * After every chunk the copy pauses for a part of the time the chunk took, so it slows down when the database is busy.
+ *
+ * The table needs a primary key and can't be referenced by foreign keys. Columns can't be renamed, the copy matches
+ * the columns by name and would leave a renamed column empty. The SQL is written for MySQL,
+ * the steps that differ on other engines can be overridden.
+ */
+class OnlineSchemaChange {
+
+    private static final Pattern MARKER = Pattern.compile("/\\*\\s*@online\\s*\\*/");
+    private static final Pattern ALTER = Pattern.compile("^\\s*ALTER\\s+TABLE\\s+(`(?:[^`]|``)+`|[\\w$]+)\\s+(.+)$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern RENAME_COLUMN = Pattern.compile("\\b(?:CHANGE|RENAME\\s+COLUMN)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern QUOTED = Pattern.compile("'(?:[^'\\\\]|\\\\.)*'|\"(?:[^\"\\\\]|\\\\.)*\"|`(?:[^`]|``)*`");
+
+    /**
+     * How often the progress is logged.
+     */
+    private static final long PROGRESS_INTERVAL = 10_000_000_000L;
+
+    protected final Connection connection;
+    protected final String table;
+    protected final String alterations;
+    private final int chunkSize;
+    private final double throttle;
+    private final Logger logger;
+
+    protected final String shadowTable;
+    protected final String oldTable;
+    protected final String[] triggers;
+
+    /**
+     * @param connection The connection of the session, it is not in auto commit mode
+     * @param table The table, without quotes
+     * @param alterations Everything after the table name of the ALTER TABLE
+     * @param chunkSize The amount of rows copied per chunk
+     * @param throttle The pause after every chunk as a fraction of the time the chunk took
+     * @param logger The logger for the progress
+     */
+    OnlineSchemaChange(Connection connection, String table, String alterations, int chunkSize, double throttle, Logger logger) {
+        this.connection = connection;
+        this.table = table;
+        this.alterations = alterations;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.throttle = Math.max(0, throttle);
+        this.logger = logger;
+
+        this.shadowTable = "_" + table + "_new";
+        this.oldTable = "_" + table + "_old";
+        this.triggers = new String[]{"_" + table + "_ins", "_" + table + "_upd", "_" + table + "_del"};
+    }
+
+    /**
+     * Checks if a statement is an ALTER TABLE that should be executed online.
+     * @param sql The statement
+     * @return True if it's marked
+     */
+    static boolean isMarked(String sql) {
+        return MARKER.matcher(sql).find() && ALTER.matcher(sql).matches();
+    }
+
+    /**
+     * The table and the alterations of a marked statement.
+     * @param sql The marked statement
+     * @return The table without quotes and the alterations
+     * @throws SQLException When the statement is not a marked ALTER TABLE or it renames a column
+     */
+    static String[] parse(String sql) throws SQLException {
+        Matcher matcher = ALTER.matcher(MARKER.matcher(sql).replaceAll(" "));
+        if (!matcher.matches()) {
+            throw new SQLException("Only ALTER TABLE statements can be executed online: " + sql);
+        }
+
+        String table = matcher.group(1);
+        if (table.startsWith("`")) {
+            table = table.substring(1, table.length() - 1).replace("``", "`");
+        }
+        String alterations = matcher.group(2).trim();
+        if (RENAME_COLUMN.matcher(QUOTED.matcher(alterations).replaceAll(" ")).find()) {
+            throw new SQLException("Columns can't be renamed online, the data of the column would not be copied: " + sql);
+        }
+        return new String[]{table, alterations};
+    }
+
+    /**
+     * Executes the change.
+     * @return The amount of copied rows
+     * @throws SQLException When the change failed, the table is left as it was
+     */
+    long execute() throws SQLException {
+        List<String> key = primaryKey();
+        if (key.isEmpty()) {
+            throw new SQLException("The table " + table + " has no primary key, it can't be altered online.");
+        }
+        checkForeignKeys();
+
+        cleanUp();
+        long rows;
+        try {
+            try (Statement statement = connection.createStatement()) {
+                createShadowTable(statement);
+                statement.execute(String.format("ALTER TABLE %s %s", quote(shadowTable), alterations));
+            }
+
+            // Columns that have been dropped or added are not copied.
+            List<String> columns = columns(table);
+            columns.retainAll(columns(shadowTable));
+            if (!columns.containsAll(key)) {
+                throw new SQLException("The primary key of " + table + " can't be changed online.");
+            }
+
+            createTriggers(columns, key);
+            connection.commit();
+
+            rows = copy(columns, key);
+
+            try (Statement statement = connection.createStatement()) {
+                swapTables(statement);
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            try {
+                connection.rollback();
+                cleanUp();
+            } catch (SQLException throwable) {
+                ex.addSuppressed(throwable);
+            }
+            throw ex;
+        }
+
+        // The table has been altered, what's left behind does not make the statement fail.
+        try (Statement statement = connection.createStatement()) {
+            dropTriggers(statement);
+            statement.execute(String.format("DROP TABLE %s", quote(oldTable)));
+            connection.commit();
+        } catch (SQLException ex) {
+            logger.warning(String.format(PREFIX + "Failed to drop %s after the online ALTER TABLE %s: %s", oldTable, table, ex.getMessage()));
+        }
+        return rows;
+    }
+
+    /**
+     * Removes the triggers and the shadow table, also when they are left behind by a crashed run.
+     */
+    private void cleanUp() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            dropTriggers(statement);
+            statement.execute(String.format("DROP TABLE IF EXISTS %s", quote(shadowTable)));
+        }
+        connection.commit();
+    }
+
+    private void dropTriggers(Statement statement) throws SQLException {
+        for (String trigger : triggers) {
+            statement.execute(String.format("DROP TRIGGER IF EXISTS %s", quote(trigger)));
+        }
+    }
+
+    private void createTriggers(List<String> columns, List<String> key) throws SQLException {
+        String replace = String.format("%s %s (%s) VALUES (%s)", replaceInto(), quote(shadowTable),
+                list(columns, "", ", "), list(columns, "NEW.", ", "));
+        String delete = String.format("DELETE FROM %s WHERE %s", quote(shadowTable), matchKey(key, "OLD."));
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(trigger(triggers[0], "INSERT", replace + ";"));
+            statement.execute(trigger(triggers[1], "UPDATE", delete + "; " + replace + ";"));
+            statement.execute(trigger(triggers[2], "DELETE", delete + ";"));
+        }
+    }
+
+    private String trigger(String name, String event, String body) {
+        return String.format("CREATE TRIGGER %s AFTER %s ON %s FOR EACH ROW BEGIN %s END", quote(name), event, quote(table), body);
+    }
+
+    /**
+     * Copies the rows chunk by chunk.
+     */
+    private long copy(List<String> columns, List<String> key) throws SQLException {
+        String keys = list(key, "", ", ");
+        String after = compare(key, ">");
+
+        String boundary = String.format("SELECT %s FROM %s%s ORDER BY %s LIMIT 1 OFFSET %d", keys, quote(table), "%s", keys, chunkSize - 1);
+        String copy = String.format("INSERT INTO %s (%s) SELECT %s FROM %s src WHERE NOT EXISTS (SELECT 1 FROM %s WHERE %s)",
+                quote(shadowTable), list(columns, "", ", "), list(columns, "src.", ", "), quote(table), quote(shadowTable), matchKey(key, "src."));
+
+        long estimate = estimateRows();
+        long rows = 0;
+        long started = System.nanoTime();
+        long logged = started;
+        Object[] last = null;
+
+        while (true) {
+            long chunkStarted = System.nanoTime();
+
+            // The last key of the chunk, NULL when the rest of the table fits in the chunk.
+            Object[] end = null;
+            try (PreparedStatement statement = connection.prepareStatement(String.format(boundary, last == null ? "" : " WHERE " + after))) {
+                bind(statement, 1, last);
+                try (ResultSet set = statement.executeQuery()) {
+                    if (set.next()) {
+                        end = new Object[key.size()];
+                        for (int i = 0; i < end.length; i++) {
+                            end[i] = set.getObject(i + 1);
+                        }
+                    }
+                }
+            }
+
+            List<String> conditions = new ArrayList<>();
+            if (last != null) conditions.add(after);
+            if (end != null) conditions.add(compare(key, "<="));
+
+            try (PreparedStatement statement = connection.prepareStatement(copy + (conditions.isEmpty() ? "" : " AND " + String.join(" AND ", conditions)))) {
+                int index = bind(statement, 1, last);
+                bind(statement, index, end);
+                rows += Math.max(0, statement.executeUpdate());
+            }
+            connection.commit();
+
+            long now = System.nanoTime();
+            if (now - logged >= PROGRESS_INTERVAL || end == null) {
+                logged = now;
+                logProgress(rows, estimate, now - started);
+            }
+
+            if (end == null) {
+                return rows;
+            }
+            last = end;
+
+            long pause = (long) ((now - chunkStarted) * throttle / 1_000_000);
+            if (pause > 0) {
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while copying " + table + " online.", ex);
+                }
+            }
+        }
+    }
+
+    private void logProgress(long rows, long estimate, long nanos) {
+        if (estimate > 0) {
+            logger.info(String.format(PREFIX + "Online ALTER TABLE %s: copied %d of about %d rows (%d%%) in %d seconds.",
+                    table, rows, estimate, Math.min(100, rows * 100 / estimate), nanos / 1_000_000_000));
+        } else {
+            logger.info(String.format(PREFIX + "Online ALTER TABLE %s: copied %d rows in %d seconds.", table, rows, nanos / 1_000_000_000));
+        }
+    }
+
+    private static int bind(PreparedStatement statement, int index, Object[] values) throws SQLException {
+        if (values == null) {
+            return index;
+        }
+        for (Object value : values) {
+            statement.setObject(index++, value);
+        }
+        return index;
+    }
+
+    /**
+     * Compares the key with parameters, a row constructor is used for keys with multiple columns.
+     */
+    private String compare(List<String> key, String operator) {
+        if (key.size() == 1) {
+            return quote(key.get(0)) + " " + operator + " ?";
+        }
+        return "(" + list(key, "", ", ") + ") " + operator + " (" + String.join(", ", Collections.nCopies(key.size(), "?")) + ")";
+    }
+
+    private String matchKey(List<String> key, String prefix) {
+        List<String> conditions = new ArrayList<>();
+        for (String column : key) {
+            conditions.add(quote(column) + " = " + prefix + quote(column));
+        }
+        return String.join(" AND ", conditions);
+    }
+
+    private String list(List<String> columns, String prefix, String separator) {
+        List<String> quoted = new ArrayList<>();
+        for (String column : columns) {
+            quoted.add(prefix + quote(column));
+        }
+        return String.join(separator, quoted);
+    }
+
+    private List<String> primaryKey() throws SQLException {
+        // The columns are returned by name, they are sorted by their position in the key.
+        Map<Short, String> key = new TreeMap<>();
+        try (ResultSet set = connection.getMetaData().getPrimaryKeys(connection.getCatalog(), null, table)) {
+            while (set.next()) {
+                key.put(set.getShort("KEY_SEQ"), set.getString("COLUMN_NAME"));
+            }
+        }
+        return new ArrayList<>(key.values());
+    }
+
+    private List<String> columns(String table) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        try (ResultSet set = connection.getMetaData().getColumns(connection.getCatalog(), null, table, null)) {
+            while (set.next()) {
+                columns.add(set.getString("COLUMN_NAME"));
+            }
+        }
+        return columns;
+    }
+
+    private void checkForeignKeys() throws SQLException {
+        try (ResultSet set = connection.getMetaData().getExportedKeys(connection.getCatalog(), null, table)) {
+            if (set.next()) {
+                throw new SQLException(String.format("The table %s is referenced by a foreign key of %s, it can't be altered online.",
+                        table, set.getString("FKTABLE_NAME")));
+            }
+        }
+    }
+
+    /**
+     * Quotes a table or column name.
+     * @param identifier The name
+     * @return The quoted name
+     */
+    protected String quote(String identifier) {
+        return '`' + identifier.replace("`", "``") + '`';
+    }
+
+    /**
+     * Creates the shadow table with the definition of the table.
+     * @param statement The statement to use
+     * @throws SQLException When the table could not be created
+     */
+    protected void createShadowTable(Statement statement) throws SQLException {
+        statement.execute(String.format("CREATE TABLE %s LIKE %s", quote(shadowTable), quote(table)));
+    }
+
+    /**
+     * Replaces the table by the shadow table, the table is renamed to the old table.
+     * @param statement The statement to use
+     * @throws SQLException When the tables could not be swapped
+     */
+    protected void swapTables(Statement statement) throws SQLException {
+        // A single RENAME TABLE is atomic, queries never see the table missing.
+        statement.execute(String.format("RENAME TABLE %s TO %s, %s TO %s", quote(table), quote(oldTable), quote(shadowTable), quote(table)));
+    }
+
+    /**
+     * The estimated amount of rows in the table, only used for the progress.
+     * @return The estimate or -1 if unknown
+     * @throws SQLException When the estimate could not be read
+     */
+    protected long estimateRows() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT TABLE_ROWS FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            statement.setString(1, table);
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next() ? set.getLong(1) : -1;
+            }
+        }
+    }
+
+    protected String replaceInto() {
+        return "REPLACE INTO";
+    }
+}
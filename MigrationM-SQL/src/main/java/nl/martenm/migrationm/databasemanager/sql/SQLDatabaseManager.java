@@ -1,155 +1,79 @@
 package nl.martenm.migrationm.databasemanager.sql;
 
-import nl.martenm.migrationm.api.DatabaseManager;
-import nl.martenm.migrationm.api.Migration;
-import nl.martenm.migrationm.util.ProgramInfo;
+import nl.martenm.migrationm.api.MigrationLock;
 import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.databasemanager.JdbcDatabaseManager;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.databasemanager.RetryPolicy;
+import nl.martenm.migrationm.util.ProgramInfo;
 
 import javax.sql.DataSource;
-import java.sql.*;
-import java.time.LocalDateTime;
-import java.util.Scanner;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
 
 /**
  * Used to keep track of migrations that apply to an SQL database using a SQL datasource.
  *
- * Tables:
- *   migrations
- *      program (VARCHAR) (KEY) - version (VARCHAR(12)) - last_migration LONG
+ * The tables that are used are described in the {@link JdbcDatabaseManager}.
  */
-public class SQLDatabaseManager implements DatabaseManager {
+public class SQLDatabaseManager extends JdbcDatabaseManager {
 
-    private String tableName = "migrations";
-    private DataSource source;
+    private int onlineChunkSize = 1000;
+    private double onlineThrottle = 0.5;
 
     public SQLDatabaseManager(DataSource source) {
-        this.source = source;
+        this(source, "migrations");
     }
 
     public SQLDatabaseManager(DataSource source, String tableName) {
-        this(source);
-        this.tableName = tableName;
+        super(source, tableName);
     }
 
-    private boolean updateLastMigration(ProgramInfo info, LocalDateTime localDateTime) {
-        try (Connection connection = source.getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(
-                    String.format("INSERT INTO %s (program, version, last_migration) VALUES (?, ?, ?)" +
-                            " ON DUPLICATE KEY UPDATE version=?, last_migration=?", tableName));
-
-            statement.setString(1, info.getName());
-            statement.setString(2, info.getVersion());
-            statement.setTimestamp(3, Timestamp.valueOf(localDateTime));
-
-            statement.setString(4, info.getVersion());
-            statement.setTimestamp(5, Timestamp.valueOf(localDateTime));
-
-            statement.execute();
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            return false;
-        }
-
-        return true;
+    /**
+     * Sets the amount of rows that an online ALTER TABLE (marked with /* @online *&#47;) copies per transaction.
+     * @param onlineChunkSize The amount of rows
+     */
+    public void setOnlineChunkSize(int onlineChunkSize) {
+        this.onlineChunkSize = onlineChunkSize;
     }
 
-    public LocalDateTime lastMigration(ProgramInfo info) {
-        LocalDateTime dateTime = null;
-
-        try (Connection connection = source.getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(
-                    String.format("SELECT last_migration FROM %s WHERE program = ?", tableName));
-
-            statement.setString(1, info.getName());
-
-            ResultSet set = statement.executeQuery();
-            if (set.next()) {
-                dateTime = set.getTimestamp("last_migration").toLocalDateTime();
-            }
-
-        } catch (SQLException throwable) {
-            throwable.printStackTrace();
-        }
-
-        return dateTime;
+    public int getOnlineChunkSize() {
+        return onlineChunkSize;
     }
 
-    public boolean isSetup() {
-        boolean tableExists = false;
-
-        try (Connection connection = source.getConnection()) {
-
-            PreparedStatement statement = connection.prepareStatement("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?");
-            statement.setString(1, tableName);
-
-            ResultSet set = statement.executeQuery();
-            if (set.next()) {
-                tableExists = true;
-            }
-
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            return false;
-        }
-
-        return tableExists;
+    /**
+     * Sets how long an online ALTER TABLE pauses after every chunk, as a fraction of the time the chunk took.
+     * With the default of 0.5 the copy uses about two thirds of the time and backs off when the database is busy.
+     * @param onlineThrottle The fraction, 0 copies without pausing
+     */
+    public void setOnlineThrottle(double onlineThrottle) {
+        this.onlineThrottle = onlineThrottle;
     }
 
-    public void setup() {
-        try (Connection connection = source.getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(String.format("CREATE TABLE %s (" +
-                    "program VARCHAR(64) PRIMARY KEY," +
-                    "version VARCHAR(12) NOT NULL," +
-                    "last_migration TIMESTAMP NOT NULL" +
-                    ");", tableName));
-
-            statement.execute();
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+    public double getOnlineThrottle() {
+        return onlineThrottle;
     }
 
-    public void executeMigration(ProgramInfo info, Migration migration) throws MigrationException {
-
-        Scanner scanner = new Scanner(migration.getInputStream());
-        scanner.useDelimiter(";");
-
-        String sql = "No query loaded";
-
-        Connection connection = null;
-        try {
-
-            /*
-             * Execute the whole file, query per query.
-             * Only if all rows succeed commit the changes.
-             */
-
-            connection = source.getConnection();
-            connection.setAutoCommit(false);
-
-            while(scanner.hasNext()) {
-                sql = scanner.next();
-                PreparedStatement statement = connection.prepareStatement(sql);
-                statement.execute();
-            }
-
-            connection.commit();
-
-        } catch (SQLException ex) {
-            // Abort the the transaction and close the connection.
-            if (connection != null) {
-                try {
-                    connection.rollback();
-                    connection.close();
-                } catch (SQLException throwable) {
-                    throwable.printStackTrace();
-                }
-            }
-
-            throw new MigrationException("Failed to execute query SQL: " + sql + " Original message: " + ex.getMessage(), ex);
-        }
+    @Override
+    protected JdbcMigrationSession createSession(Connection connection) {
+        return new SQLMigrationSession(this, connection);
+    }
 
+    /**
+     * A deadlock (1213) rolls back the transaction. A lock wait timeout (1205) only rolls back the statement,
+     * unless innodb_rollback_on_timeout is enabled, then the whole migration is retried instead.
+     */
+    @Override
+    protected RetryPolicy createRetryPolicy() {
+        return RetryPolicy.standard()
+                .vendorCode(1213, RetryPolicy.Scope.TRANSACTION)
+                .vendorCode(1205, RetryPolicy.Scope.STATEMENT);
+    }
 
-        updateLastMigration(info, migration.getDate());
+    @Override
+    protected MigrationLock createLock(Connection connection, ProgramInfo info, Duration timeout) throws SQLException, MigrationException {
+        // Named locks are server wide, the table name keeps programs of different tracking tables apart.
+        return AdvisoryLock.acquire(connection, getTableName() + "." + info.getName(), timeout);
     }
 }
@@ -0,0 +1,237 @@
+package nl.martenm.migrationm.databasemanager.sql;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.util.ProgramInfo;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The MySQL flavoured session used by the {@link SQLDatabaseManager}.
+ */
+class SQLMigrationSession extends JdbcMigrationSession {
+
+    /**
+     * Statements that cause an implicit commit, see "Statements That Cause an Implicit Commit" in the MySQL manual.
+     */
+    private static final Set<String> IMPLICIT_COMMITS = new HashSet<>(Arrays.asList(
+            "ALTER", "CREATE", "DROP", "RENAME", "TRUNCATE", "GRANT", "REVOKE", "INSTALL", "UNINSTALL",
+            "LOCK", "UNLOCK", "ANALYZE", "OPTIMIZE", "REPAIR", "CHECK", "FLUSH", "RESET", "CACHE", "LOAD INDEX"
+    ));
+
+    private final int onlineChunkSize;
+    private final double onlineThrottle;
+
+    private Boolean rollbackOnTimeout = null;
+
+    SQLMigrationSession(SQLDatabaseManager manager, Connection connection) {
+        super(manager, connection);
+        this.onlineChunkSize = manager.getOnlineChunkSize();
+        this.onlineThrottle = manager.getOnlineThrottle();
+    }
+
+    @Override
+    protected boolean tableExists(String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?")) {
+            statement.setString(1, table);
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next();
+            }
+        }
+    }
+
+    @Override
+    protected void updateLastMigration(ProgramInfo info, LocalDateTime localDateTime) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                String.format("INSERT INTO %s (program, version, last_migration, baseline_at) VALUES (?, ?, ?, ?)" +
+                        " ON DUPLICATE KEY UPDATE version=?, last_migration=GREATEST(last_migration, ?)", tableName))) {
+
+            statement.setString(1, info.getName());
+            statement.setString(2, info.getVersion());
+            statement.setTimestamp(3, Timestamp.valueOf(localDateTime));
+            statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+
+            statement.setString(5, info.getVersion());
+            statement.setTimestamp(6, Timestamp.valueOf(localDateTime));
+
+            statement.execute();
+        }
+    }
+
+    @Override
+    protected boolean backslashEscapes() {
+        return true;
+    }
+
+    @Override
+    protected boolean doubleQuotedStrings() {
+        return true;
+    }
+
+    @Override
+    protected boolean hashComments() {
+        return true;
+    }
+
+    @Override
+    protected String quoteIdentifier(String identifier) {
+        return '`' + identifier.replace("`", "``") + '`';
+    }
+
+    @Override
+    protected int rowsPerInsert(int columns) {
+        // Connector/J sends a batch as separate statements unless rewriteBatchedStatements is set,
+        // a multi-row INSERT is a single round trip. A statement can have at most 65535 placeholders.
+        return Math.max(1, Math.min(manager.getBatchSize(), 65535 / columns));
+    }
+
+    @Override
+    protected boolean implicitCommits() {
+        return true;
+    }
+
+    @Override
+    protected boolean commitsImplicitly(String sql) {
+        return isImplicitCommit(sql);
+    }
+
+    /**
+     * Checks if MySQL commits before executing the statement, e.g. /*!40101 ALTER TABLE ... *&#47; in a dump.
+     * @param sql The statement
+     * @return True if the statement commits implicitly
+     */
+    static boolean isImplicitCommit(String sql) {
+        List<String> words = leadingWords(sql, 2);
+        String first = words.isEmpty() ? "" : words.get(0).toUpperCase(Locale.ROOT);
+        String second = words.size() > 1 ? words.get(1).toUpperCase(Locale.ROOT) : "";
+
+        // Temporary tables are the exception, they are part of the transaction.
+        if ((first.equals("CREATE") || first.equals("DROP")) && second.equals("TEMPORARY")) {
+            return false;
+        }
+        return IMPLICIT_COMMITS.contains(first) || IMPLICIT_COMMITS.contains(first + " " + second);
+    }
+
+    /**
+     * The first words of a statement. Comments are skipped, the contents of executable comments (/*! ... *&#47;)
+     * are read like the rest of the statement because MySQL executes them.
+     */
+    private static List<String> leadingWords(String sql, int count) {
+        List<String> words = new ArrayList<>(count);
+        StringBuilder word = new StringBuilder();
+        boolean executable = false;
+
+        int length = sql.length();
+        int i = 0;
+        while (i < length && words.size() < count) {
+            char ch = sql.charAt(i);
+            char next = i + 1 < length ? sql.charAt(i + 1) : ' ';
+
+            int skip = 0;
+            if (ch == '/' && next == '*') {
+                if (i + 2 < length && sql.charAt(i + 2) == '!') {
+                    // The version of an executable comment, e.g. /*!50003, is not part of the statement.
+                    skip = 3;
+                    while (i + skip < length && Character.isDigit(sql.charAt(i + skip))) skip++;
+                    executable = true;
+                } else {
+                    int end = sql.indexOf("*/", i + 2);
+                    skip = (end < 0 ? length : end + 2) - i;
+                }
+            } else if (ch == '*' && next == '/' && executable) {
+                skip = 2;
+                executable = false;
+            } else if (ch == '#' || (ch == '-' && next == '-' && (i + 2 >= length || Character.isWhitespace(sql.charAt(i + 2))))) {
+                int end = sql.indexOf('\n', i);
+                skip = (end < 0 ? length : end) - i;
+            } else if (Character.isWhitespace(ch)) {
+                skip = 1;
+            }
+
+            if (skip == 0) {
+                word.append(ch);
+                i++;
+                continue;
+            }
+
+            if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+            i += skip;
+        }
+
+        if (word.length() > 0 && words.size() < count) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    @Override
+    protected boolean keepsTransaction(SQLException ex) {
+        if (rollbackOnTimeout == null) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet set = statement.executeQuery("SELECT @@innodb_rollback_on_timeout")) {
+                rollbackOnTimeout = set.next() && set.getBoolean(1);
+            } catch (SQLException throwable) {
+                // Not InnoDB or not MySQL, there is no telling what has been rolled back.
+                ex.addSuppressed(throwable);
+                return false;
+            }
+        }
+        return !rollbackOnTimeout;
+    }
+
+    @Override
+    protected boolean executesItself(String sql) {
+        return OnlineSchemaChange.isMarked(sql);
+    }
+
+    @Override
+    protected long executeStatement(ProgramInfo info, Migration migration, String sql) throws SQLException {
+        String[] parsed = OnlineSchemaChange.parse(sql);
+        return new OnlineSchemaChange(connection, parsed[0], parsed[1], onlineChunkSize, onlineThrottle,
+                info.getLogger()).execute();
+    }
+
+    @Override
+    protected long explainRows(String sql) throws SQLException {
+        // The estimated rows of every table in the plan, the statement is not executed.
+        long rows = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery("EXPLAIN " + sql)) {
+            while (set.next()) {
+                rows += set.getLong("rows");
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    protected long tableRows(String table) throws SQLException {
+        int dot = table.indexOf('.');
+        String query = "SELECT TABLE_ROWS FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = " +
+                (dot < 0 ? "DATABASE()" : "?") + " AND TABLE_NAME = ?";
+
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            if (dot < 0) {
+                statement.setString(1, table);
+            } else {
+                statement.setString(1, table.substring(0, dot));
+                statement.setString(2, table.substring(dot + 1));
+            }
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next() ? set.getLong("TABLE_ROWS") : -1;
+            }
+        }
+    }
+}
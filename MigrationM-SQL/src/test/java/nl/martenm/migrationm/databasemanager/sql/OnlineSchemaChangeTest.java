@@ -0,0 +1,206 @@
+package nl.martenm.migrationm.databasemanager.sql;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Runs the online schema change against SQLite, which stands in for MySQL.
+ */
+public class OnlineSchemaChangeTest {
+
+    Logger logger = Logger.getAnonymousLogger();
+
+    @TempDir
+    Path directory;
+
+    /**
+     * The statements that SQLite writes differently. DDL is transactional in SQLite, so the swap is atomic as well.
+     */
+    private class SQLiteSchemaChange extends OnlineSchemaChange {
+
+        SQLiteSchemaChange(Connection connection, String sql, int chunkSize, double throttle) throws SQLException {
+            super(connection, parse(sql)[0], parse(sql)[1], chunkSize, throttle, logger);
+        }
+
+        @Override
+        protected void createShadowTable(Statement statement) throws SQLException {
+            try (ResultSet set = statement.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = '" + table + "'")) {
+                set.next();
+                statement.execute(set.getString(1).replaceFirst("^CREATE TABLE \\S+", "CREATE TABLE " + quote(shadowTable)));
+            }
+        }
+
+        @Override
+        protected void swapTables(Statement statement) throws SQLException {
+            for (String trigger : triggers) {
+                statement.execute("DROP TRIGGER " + quote(trigger));
+            }
+            statement.execute(String.format("ALTER TABLE %s RENAME TO %s", quote(table), quote(oldTable)));
+            statement.execute(String.format("ALTER TABLE %s RENAME TO %s", quote(shadowTable), quote(table)));
+        }
+
+        @Override
+        protected long estimateRows() throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet set = statement.executeQuery("SELECT COUNT(*) FROM " + quote(table))) {
+                set.next();
+                return set.getLong(1);
+            }
+        }
+    }
+
+    private Connection connect(boolean autoCommit) throws SQLException {
+        SQLiteDataSource source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+        source.setBusyTimeout(10000);
+        // Writers take the lock at the start of a transaction, a read lock is never upgraded.
+        source.setTransactionMode("IMMEDIATE");
+
+        Connection connection = source.getConnection();
+        connection.setAutoCommit(autoCommit);
+        return connection;
+    }
+
+    @Test
+    public void testMarked() throws SQLException {
+        Assertions.assertTrue(OnlineSchemaChange.isMarked("ALTER TABLE items /* @online */ ADD COLUMN price INT"));
+        Assertions.assertTrue(OnlineSchemaChange.isMarked("alter table `my items` /*@online*/ ADD COLUMN price INT"));
+        Assertions.assertFalse(OnlineSchemaChange.isMarked("ALTER TABLE items ADD COLUMN price INT"));
+        Assertions.assertFalse(OnlineSchemaChange.isMarked("UPDATE items SET name = '/* @online */'"));
+
+        String[] parsed = OnlineSchemaChange.parse("ALTER TABLE `my ``items` /* @online */ ADD COLUMN price INT");
+        Assertions.assertEquals("my `items", parsed[0]);
+        Assertions.assertEquals("ADD COLUMN price INT", parsed[1]);
+    }
+
+    @Test
+    public void testRenameRejected() throws SQLException {
+        // The copy matches the columns by name, a renamed column would be left empty.
+        Assertions.assertThrows(SQLException.class, () -> OnlineSchemaChange.parse("ALTER TABLE items /* @online */ RENAME COLUMN name TO title"));
+        Assertions.assertThrows(SQLException.class, () -> OnlineSchemaChange.parse("ALTER TABLE items /* @online */ CHANGE name title TEXT"));
+        Assertions.assertThrows(SQLException.class, () -> OnlineSchemaChange.parse("ALTER TABLE items /* @online */ ADD COLUMN price INT, CHANGE COLUMN name title TEXT"));
+
+        Assertions.assertEquals("ADD COLUMN `change` TEXT COMMENT 'rename column'",
+                OnlineSchemaChange.parse("ALTER TABLE items /* @online */ ADD COLUMN `change` TEXT COMMENT 'rename column'")[1]);
+        Assertions.assertEquals("RENAME INDEX a TO b", OnlineSchemaChange.parse("ALTER TABLE items /* @online */ RENAME INDEX a TO b")[1]);
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        Map<Integer, String> expected = new HashMap<>();
+        try (Connection connection = connect(true); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+            connection.setAutoCommit(false);
+            for (int i = 1; i <= 5000; i++) {
+                statement.execute("INSERT INTO items (id, name) VALUES (" + i + ", 'item " + i + "')");
+                expected.put(i, "item " + i);
+            }
+            connection.commit();
+        }
+
+        // Another server keeps writing to the table while it's being copied.
+        AtomicBoolean done = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> writes = executor.submit(() -> {
+            int count = 0;
+            try (Connection connection = connect(true); Statement statement = connection.createStatement()) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!done.get()) {
+                    int id = random.nextInt(1, 6000);
+                    switch (count % 3) {
+                        case 0:
+                            statement.execute("INSERT OR REPLACE INTO items (id, name) VALUES (" + id + ", 'new " + count + "')");
+                            expected.put(id, "new " + count);
+                            break;
+                        case 1:
+                            statement.execute("UPDATE items SET name = 'updated " + count + "' WHERE id = " + id);
+                            expected.replace(id, "updated " + count);
+                            break;
+                        default:
+                            statement.execute("DELETE FROM items WHERE id = " + id);
+                            expected.remove(id);
+                    }
+                    count++;
+                    Thread.sleep(1);
+                }
+            }
+            return count;
+        });
+
+        long copied;
+        try (Connection connection = connect(false)) {
+            copied = new SQLiteSchemaChange(connection, "ALTER TABLE items /* @online */ ADD COLUMN price INT NOT NULL DEFAULT 5", 100, 1).execute();
+        } finally {
+            done.set(true);
+        }
+        Assertions.assertTrue(writes.get(1, TimeUnit.MINUTES) > 0);
+        Assertions.assertTrue(copied > 0);
+        executor.shutdown();
+
+        Map<Integer, String> actual = new HashMap<>();
+        try (Connection connection = connect(true); Statement statement = connection.createStatement()) {
+            try (ResultSet set = statement.executeQuery("SELECT id, name, price FROM items")) {
+                while (set.next()) {
+                    actual.put(set.getInt("id"), set.getString("name"));
+                    Assertions.assertEquals(5, set.getInt("price"));
+                }
+            }
+            try (ResultSet set = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE name LIKE '\\_items\\_%' ESCAPE '\\'")) {
+                set.next();
+                Assertions.assertEquals(0, set.getInt(1), "The shadow table and triggers should be gone");
+            }
+        }
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testFailedChange() throws Exception {
+        // The shadow table has been created when the alteration fails.
+        try (Connection connection = connect(true); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+            statement.execute("INSERT INTO items (id, name) VALUES (1, 'item')");
+        }
+
+        try (Connection connection = connect(false)) {
+            Assertions.assertThrows(SQLException.class, () ->
+                    new SQLiteSchemaChange(connection, "ALTER TABLE items /* @online */ ADD COLUMN price INT DEFAULT", 100, 0).execute());
+        }
+
+        try (Connection connection = connect(true); Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery("SELECT name FROM sqlite_master ORDER BY name")) {
+            Assertions.assertTrue(set.next());
+            Assertions.assertEquals("items", set.getString(1));
+            Assertions.assertFalse(set.next());
+        }
+    }
+
+    @Test
+    public void testRowsDontFit() throws Exception {
+        try (Connection connection = connect(true); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+            statement.execute("INSERT INTO items (id, name) VALUES (1, 'item'), (2, 'a much longer name')");
+        }
+
+        // Like shortening a VARCHAR on MySQL, the long name would be cut off or skipped by INSERT IGNORE.
+        try (Connection connection = connect(false)) {
+            Assertions.assertThrows(SQLException.class, () -> new SQLiteSchemaChange(connection,
+                    "ALTER TABLE items /* @online */ ADD COLUMN code TEXT CHECK (length(name) <= 10)", 100, 0).execute());
+        }
+
+        try (Connection connection = connect(true); Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery("SELECT name FROM items WHERE id = 2")) {
+            Assertions.assertTrue(set.next());
+            Assertions.assertEquals("a much longer name", set.getString(1));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package nl.martenm.migrationm.databasemanager.sql;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SQLMigrationSessionTest {
+
+    @Test
+    public void testImplicitCommits() {
+        Assertions.assertTrue(SQLMigrationSession.isImplicitCommit("ALTER TABLE items ADD COLUMN price INT"));
+        Assertions.assertTrue(SQLMigrationSession.isImplicitCommit("load index into cache items"));
+        Assertions.assertFalse(SQLMigrationSession.isImplicitCommit("CREATE TEMPORARY TABLE items (id INT)"));
+        Assertions.assertFalse(SQLMigrationSession.isImplicitCommit("INSERT INTO items (id) VALUES (1)"));
+
+        // Leading comments are skipped.
+        Assertions.assertTrue(SQLMigrationSession.isImplicitCommit("-- Add the price\n/* online later */ ALTER TABLE items ADD COLUMN price INT"));
+        Assertions.assertTrue(SQLMigrationSession.isImplicitCommit("# hash comment\nDROP TABLE items"));
+        Assertions.assertFalse(SQLMigrationSession.isImplicitCommit("/* CREATE */ UPDATE items SET price = 1"));
+
+        // MySQL executes the contents of executable comments, e.g. in a dump.
+        Assertions.assertTrue(SQLMigrationSession.isImplicitCommit("/*!40000 ALTER TABLE `items` DISABLE KEYS */"));
+        Assertions.assertTrue(SQLMigrationSession.isImplicitCommit("/*!50003 CREATE*/ /*!50017 DEFINER=`root`@`%`*/ /*!50003 TRIGGER t BEFORE INSERT ON items FOR EACH ROW SET NEW.id = 1 */"));
+        Assertions.assertFalse(SQLMigrationSession.isImplicitCommit("/*!40101 SET NAMES utf8mb4 */"));
+        Assertions.assertFalse(SQLMigrationSession.isImplicitCommit("DROP /*!32323 TEMPORARY */ TABLE items"));
+    }
+}
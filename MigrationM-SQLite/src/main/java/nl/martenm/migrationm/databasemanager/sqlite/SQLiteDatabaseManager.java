@@ -1,143 +1,67 @@
 package nl.martenm.migrationm.databasemanager.sqlite;
 
-import nl.martenm.migrationm.api.DatabaseManager;
-import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.MigrationLock;
 import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.databasemanager.JdbcDatabaseManager;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.databasemanager.RetryPolicy;
 import nl.martenm.migrationm.util.ProgramInfo;
 
 import javax.sql.DataSource;
-import java.sql.*;
-import java.time.LocalDateTime;
-import java.util.Scanner;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
 
-public class SQLiteDatabaseManager implements DatabaseManager {
+public class SQLiteDatabaseManager extends JdbcDatabaseManager {
 
-    private String tableName = "migrations";
-    private DataSource source;
+    private boolean bulkMode = false;
 
     public SQLiteDatabaseManager(DataSource source) {
-        this.source = source;
+        this(source, "migrations");
     }
 
-    private boolean updateLastMigration(ProgramInfo info, LocalDateTime localDateTime) {
-        try (Connection connection = source.getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(
-                    String.format("REPLACE INTO %s (program, version, last_migration) VALUES (?, ?, ?)", tableName));
-
-            statement.setString(1, info.getName());
-            statement.setString(2, info.getVersion());
-            statement.setTimestamp(3, Timestamp.valueOf(localDateTime));
-
-            statement.execute();
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            return false;
-        }
-
-        return true;
+    public SQLiteDatabaseManager(DataSource source, String tableName) {
+        super(source, tableName);
     }
 
-    @Override
-    public LocalDateTime lastMigration(ProgramInfo info) {
-        LocalDateTime dateTime = null;
-
-        try (Connection connection = source.getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(
-                    String.format("SELECT last_migration FROM %s WHERE program = ?", tableName));
-
-            statement.setString(1, info.getName());
-
-            ResultSet set = statement.executeQuery();
-            if (set.next()) {
-                dateTime = set.getTimestamp("last_migration").toLocalDateTime();
-            }
-
-        } catch (SQLException throwable) {
-            throwable.printStackTrace();
-        }
+    /**
+     * Enables the bulk mode for large data migrations. While migrations are executed the database uses
+     * a write-ahead log, only syncs at checkpoints, keeps up to 64 MiB of pages and temporary tables in memory.
+     * Once the session ends the statistics of the query planner are updated and the previous settings are restored.
+     *
+     * With synchronous=NORMAL a power loss can undo the last committed migrations, but it never corrupts the database.
+     * @param bulkMode True to enable the bulk mode
+     */
+    public void setBulkMode(boolean bulkMode) {
+        this.bulkMode = bulkMode;
+    }
 
-        return dateTime;
+    public boolean isBulkMode() {
+        return bulkMode;
     }
 
     @Override
-    public boolean isSetup() {
-        boolean tableExists = false;
-
-        try (Connection connection = source.getConnection()) {
-
-            PreparedStatement statement = connection.prepareStatement("SELECT name FROM sqlite_master WHERE type='table' AND name=?");
-            statement.setString(1, tableName);
-
-            ResultSet set = statement.executeQuery();
-            if (set.next()) {
-                tableExists = true;
-            }
-
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            return false;
-        }
-
-        return tableExists;
+    protected JdbcMigrationSession createSession(Connection connection) {
+        return new SQLiteMigrationSession(this, connection);
     }
 
+    /**
+     * SQLITE_BUSY (5) and SQLITE_LOCKED (6) leave the transaction open, the statement is executed again once the
+     * other connection is done. These only reach the migration after the busy timeout of the connection.
+     */
     @Override
-    public void setup() {
-        try (Connection connection = source.getConnection()) {
-            PreparedStatement statement = connection.prepareStatement(String.format("CREATE TABLE %s (" +
-                    "program VARCHAR(64) PRIMARY KEY," +
-                    "version VARCHAR(12) NOT NULL," +
-                    "last_migration TIMESTAMP NOT NULL" +
-                    ");", tableName));
-
-            statement.execute();
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+    protected RetryPolicy createRetryPolicy() {
+        return RetryPolicy.none()
+                .vendorCode(5, RetryPolicy.Scope.STATEMENT)
+                .vendorCode(6, RetryPolicy.Scope.STATEMENT);
     }
 
+    /**
+     * SQLite has no advisory locks and the open migration transaction would block the renewal of a lease,
+     * so the lock is a file lock next to the database instead, e.g. test.db-migrations_lock.
+     */
     @Override
-    public void executeMigration(ProgramInfo info, Migration migration) throws MigrationException {
-
-        Scanner scanner = new Scanner(migration.getInputStream());
-        scanner.useDelimiter(";");
-
-        String sql = "No query loaded";
-
-        Connection connection = null;
-        try {
-
-            /*
-             * Execute the whole file, query per query.
-             * Only if all rows succeed commit the changes.
-             */
-
-            connection = source.getConnection();
-            connection.setAutoCommit(false);
-
-            while(scanner.hasNext()) {
-                sql = scanner.next();
-                PreparedStatement statement = connection.prepareStatement(sql);
-                statement.execute();
-            }
-
-            connection.commit();
-
-        } catch (SQLException ex) {
-            // Abort the the transaction and close the connection.
-            if (connection != null) {
-                try {
-                    connection.rollback();
-                    connection.close();
-                } catch (SQLException throwable) {
-                    throwable.printStackTrace();
-                }
-            }
-
-            throw new MigrationException("Failed to execute query SQLite: " + sql + " Original message: " + ex.getMessage(), ex);
-        }
-
-
-        updateLastMigration(info, migration.getDate());
+    protected MigrationLock createLock(Connection connection, ProgramInfo info, Duration timeout) throws SQLException, MigrationException {
+        return SQLiteFileLock.acquire(connection, getLockTableName(), timeout);
     }
 }
@@ -0,0 +1,159 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.Backoff;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * A lock on a file next to the database.
+ *
+ * SQLite allows a single writer, so an open migration transaction blocks every other connection that writes.
+ * A lease row would have to be renewed on another connection while that transaction is open, and the lease could
+ * expire halfway through a long migration. The operating system releases a file lock when the holder crashes,
+ * so no lease is needed. Waiting nodes poll the file with a jittered exponential backoff.
+ *
+ * Programs that share a database share the lock file, they migrate one after another.
+ */
+class SQLiteFileLock implements MigrationLock {
+
+    private final Connection connection;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final boolean contended;
+
+    private SQLiteFileLock(Connection connection, FileChannel channel, FileLock lock, boolean contended) {
+        this.connection = connection;
+        this.channel = channel;
+        this.lock = lock;
+        this.contended = contended;
+    }
+
+    /**
+     * Acquires the lock, waiting for the current holder if there is one.
+     * @param connection A connection to the database, it's closed together with the lock
+     * @param suffix The suffix of the lock file, e.g. "migrations_lock" for test.db-migrations_lock
+     * @param timeout How long to wait for the lock
+     * @return The lock or {@link MigrationLock#NONE} for an in-memory database
+     * @throws SQLException When the database file could not be determined
+     * @throws MigrationException When the lock could not be acquired in time
+     */
+    static MigrationLock acquire(Connection connection, String suffix, Duration timeout) throws SQLException, MigrationException {
+        Path database = databaseFile(connection.getMetaData().getURL());
+        if (database == null) {
+            // Every connection to an in-memory database has a database of its own.
+            connection.close();
+            return MigrationLock.NONE;
+        }
+
+        Path path = database.resolveSibling(database.getFileName() + "-" + suffix);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            throw new MigrationException("Failed to open the lock file " + path + ". Original message: " + ex.getMessage(), ex);
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Backoff backoff = new Backoff(Duration.ofMillis(100), Duration.ofSeconds(2));
+
+        try {
+            while (true) {
+                FileLock lock = tryLock(channel);
+                if (lock != null) {
+                    return new SQLiteFileLock(connection, channel, lock, backoff.getAttempts() > 0);
+                }
+
+                if (System.nanoTime() >= deadline) {
+                    throw new MigrationException(String.format("Timed out after %d seconds waiting for the migration lock %s.",
+                            timeout.getSeconds(), path), null);
+                }
+
+                backoff.sleep(deadline);
+            }
+        } catch (IOException ex) {
+            close(channel, ex);
+            throw new MigrationException("Failed to lock " + path + ". Original message: " + ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            close(channel, ex);
+            throw new MigrationException("Interrupted while waiting for the migration lock " + path + ".", ex);
+        } catch (MigrationException | RuntimeException ex) {
+            close(channel, ex);
+            throw ex;
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            // File locks belong to the whole JVM, another manager of this JVM holds it.
+            return null;
+        }
+    }
+
+    /**
+     * The database file of a connection URL, e.g. jdbc:sqlite:file:/data/test.db?mode=rwc.
+     * @return The file or NULL for an in-memory database
+     */
+    static Path databaseFile(String url) {
+        String file = url.startsWith("jdbc:sqlite:") ? url.substring("jdbc:sqlite:".length()) : url;
+        if (file.startsWith("file:")) {
+            file = file.substring("file:".length());
+        }
+
+        int query = file.indexOf('?');
+        String parameters = query < 0 ? "" : file.substring(query + 1);
+        file = query < 0 ? file : file.substring(0, query);
+
+        if (file.isEmpty() || file.startsWith(":memory:") || parameters.contains("mode=memory")) {
+            return null;
+        }
+        return Paths.get(file).toAbsolutePath();
+    }
+
+    private static void close(FileChannel channel, Exception cause) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    @Override
+    public boolean isContended() {
+        return contended;
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.release();
+        } catch (IOException ex) {
+            // Closing the channel releases the lock as well.
+            ex.printStackTrace();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.util.ProgramInfo;
+import nl.martenm.migrationm.util.StatementBatcher;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The session used by the {@link SQLiteDatabaseManager}.
+ */
+class SQLiteMigrationSession extends JdbcMigrationSession {
+
+    /**
+     * The settings of the bulk mode. The journal mode comes first, it can't be changed once the others are.
+     */
+    private static final Map<String, String> BULK_SETTINGS = new LinkedHashMap<>();
+
+    static {
+        BULK_SETTINGS.put("journal_mode", "WAL");
+        BULK_SETTINGS.put("synchronous", "NORMAL");
+        BULK_SETTINGS.put("cache_size", "-65536");
+        BULK_SETTINGS.put("temp_store", "MEMORY");
+    }
+
+    private final boolean bulkMode;
+
+    /**
+     * The settings before the bulk mode was enabled, NULL while it's not enabled.
+     */
+    private Map<String, String> previousSettings = null;
+    private boolean executed = false;
+
+    SQLiteMigrationSession(SQLiteDatabaseManager manager, Connection connection) {
+        super(manager, connection);
+        this.bulkMode = manager.isBulkMode();
+    }
+
+    @Override
+    public void executeMigration(ProgramInfo info, Migration migration, LocalDateTime lastMigration) throws MigrationException {
+        if (bulkMode && previousSettings == null) {
+            enableBulkMode();
+        }
+
+        super.executeMigration(info, migration, lastMigration);
+        executed = true;
+    }
+
+    private void enableBulkMode() throws MigrationException {
+        Map<String, String> previous = new LinkedHashMap<>();
+
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> setting : BULK_SETTINGS.entrySet()) {
+                previous.put(setting.getKey(), pragma(statement, setting.getKey()));
+                statement.execute(String.format("PRAGMA %s = %s", setting.getKey(), setting.getValue()));
+            }
+        } catch (SQLException ex) {
+            // Put back what has been changed already.
+            previousSettings = previous;
+            restoreSettings();
+            throw new MigrationException("Failed to enable the bulk mode. Original message: " + ex.getMessage(), ex);
+        }
+
+        previousSettings = previous;
+    }
+
+    private String pragma(Statement statement, String name) throws SQLException {
+        try (ResultSet set = statement.executeQuery("PRAGMA " + name)) {
+            return set.next() ? set.getString(1) : null;
+        }
+    }
+
+    /**
+     * Restores the settings in reverse order, every setting is restored even if another one fails.
+     */
+    private void restoreSettings() {
+        String[] names = previousSettings.keySet().toArray(new String[0]);
+
+        try (Statement statement = connection.createStatement()) {
+            for (int i = names.length - 1; i >= 0; i--) {
+                String value = previousSettings.get(names[i]);
+                if (value == null) continue;
+
+                try {
+                    statement.execute(String.format("PRAGMA %s = %s", names[i], value));
+                } catch (SQLException ex) {
+                    // Leaving WAL fails while other connections use the database, the database is still consistent.
+                    ex.printStackTrace();
+                }
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+
+        previousSettings = null;
+    }
+
+    /**
+     * Updates the statistics of the query planner after bulk changes. The analysis is limited per index,
+     * so large tables don't have to be scanned completely. The limit is restored afterwards, like the bulk settings.
+     */
+    private void analyze() {
+        try (Statement statement = connection.createStatement()) {
+            String limit = pragma(statement, "analysis_limit");
+            statement.execute("PRAGMA analysis_limit = 1000");
+
+            try {
+                statement.execute("ANALYZE");
+                statement.execute("PRAGMA optimize");
+            } finally {
+                if (limit != null) {
+                    statement.execute("PRAGMA analysis_limit = " + limit);
+                }
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (previousSettings != null) {
+            if (executed) {
+                analyze();
+            }
+            restoreSettings();
+        }
+
+        super.close();
+    }
+
+    @Override
+    protected StatementBatcher createBatcher() {
+        return new SQLiteStatementBatcher(connection, manager.getBatchSize(), doubleQuotedStrings(), backslashEscapes());
+    }
+
+    @Override
+    protected boolean keepsTransaction(SQLException ex) {
+        // A snapshot that is outdated can only be fixed by starting the transaction again.
+        return !(ex instanceof SQLiteException) || ((SQLiteException) ex).getResultCode() != SQLiteErrorCode.SQLITE_BUSY_SNAPSHOT;
+    }
+
+    @Override
+    protected boolean tableExists(String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT name FROM sqlite_master WHERE type='table' AND name=?")) {
+            statement.setString(1, table);
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next();
+            }
+        }
+    }
+
+    @Override
+    protected void updateLastMigration(ProgramInfo info, LocalDateTime localDateTime) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                String.format("INSERT INTO %s (program, version, last_migration, baseline_at) VALUES (?, ?, ?, ?)" +
+                        " ON CONFLICT (program) DO UPDATE SET version = excluded.version," +
+                        " last_migration = MAX(last_migration, excluded.last_migration)", tableName))) {
+
+            statement.setString(1, info.getName());
+            statement.setString(2, info.getVersion());
+            statement.setTimestamp(3, Timestamp.valueOf(localDateTime));
+            statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+
+            statement.execute();
+        }
+    }
+
+    @Override
+    protected long explainRows(String sql) throws SQLException {
+        // SQLite's plan has no row estimates: a scan costs the whole table, an index search is counted as one row.
+        long rows = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (set.next()) {
+                String[] detail = set.getString("detail").split(" ");
+                int table = detail.length > 2 && detail[1].equals("TABLE") ? 2 : 1;
+                if (detail.length <= table) continue;
+
+                if (detail[0].equals("SCAN") && !detail[table].equals("CONSTANT")) {
+                    rows += Math.max(0, tableRows(detail[table]));
+                } else if (detail[0].equals("SEARCH")) {
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    protected long tableRows(String table) throws SQLException {
+        // The first number of the statistics is the amount of rows, they only exist after ANALYZE.
+        if (tableExists("sqlite_stat1")) {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT stat FROM sqlite_stat1 WHERE tbl = ? LIMIT 1")) {
+                statement.setString(1, table);
+
+                try (ResultSet set = statement.executeQuery()) {
+                    if (set.next()) {
+                        return Long.parseLong(set.getString("stat").split(" ")[0]);
+                    }
+                }
+            }
+        }
+
+        // The largest rowid is found in the b-tree without a scan.
+        try (Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery(String.format("SELECT MAX(rowid) FROM %s", quoteIdentifier(table)))) {
+            return set.next() ? set.getLong(1) : -1;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.util.StatementBatcher;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A {@link StatementBatcher} that binds decimal literals as REAL.
+ *
+ * The SQLite driver binds a BigDecimal as TEXT, a batched 1.5 would no longer be equal to the literal 1.5.
+ */
+class SQLiteStatementBatcher extends StatementBatcher {
+
+    SQLiteStatementBatcher(Connection connection, int batchSize, boolean doubleQuotedStrings, boolean backslashEscapes) {
+        super(connection, batchSize, doubleQuotedStrings, backslashEscapes);
+    }
+
+    @Override
+    protected void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value instanceof BigDecimal) {
+            // SQLite reads a decimal literal as an 8-byte floating point number.
+            statement.setDouble(index, ((BigDecimal) value).doubleValue());
+        } else {
+            super.bind(statement, index, value);
+        }
+    }
+}
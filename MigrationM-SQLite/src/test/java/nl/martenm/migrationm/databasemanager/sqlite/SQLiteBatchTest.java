@@ -0,0 +1,88 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.util.MigrationNames;
+import nl.martenm.migrationm.util.ProgramInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+public class SQLiteBatchTest {
+
+    ProgramInfo info = new ProgramInfo("test-program", "1.0.0", Logger.getAnonymousLogger());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testLiteralsKeepTheirMeaning() throws Exception {
+        SQLiteDataSource source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+        SQLiteDatabaseManager manager = new SQLiteDatabaseManager(source);
+        manager.setup();
+
+        String sql = "CREATE TABLE items (a TEXT, b INTEGER);\n" +
+                "CREATE TABLE totals (a TEXT, b INTEGER);\n" +
+                "CREATE TABLE prices (id INTEGER, price TEXT);\n" +
+                "INSERT INTO items (a, b) VALUES ('x', 1);\n" +
+                "INSERT INTO items (a, b) VALUES ('x', 2);\n" +
+                "INSERT INTO items (a, b) VALUES ('y', 3);\n" +
+                // A bound ordinal would group all rows into one.
+                "INSERT INTO totals (a, b) SELECT a, SUM(b) FROM items GROUP BY 1;\n" +
+                // A bound type argument is a syntax error.
+                "INSERT INTO prices (id, price) SELECT b, CAST(b AS DECIMAL(10,2)) FROM items WHERE a = 'y';";
+
+        try (JdbcMigrationSession session = manager.openSession()) {
+            session.executeMigration(info, migration("2020-1-1-10.00-totals.sql", sql));
+        }
+
+        Assertions.assertEquals(2, count(source, "SELECT COUNT(*) FROM totals"));
+        Assertions.assertEquals(3, count(source, "SELECT b FROM totals WHERE a = 'x'"));
+        Assertions.assertEquals(1, count(source, "SELECT COUNT(*) FROM prices WHERE id = 3"));
+        Assertions.assertEquals(6, count(source, "SELECT row_count FROM migrations_history"));
+    }
+
+    @Test
+    public void testDecimalsStayReal() throws Exception {
+        SQLiteDataSource source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+        SQLiteDatabaseManager manager = new SQLiteDatabaseManager(source);
+        manager.setup();
+
+        String sql = "CREATE TABLE prices (id INTEGER, v);\n" +
+                "INSERT INTO prices (id, v) VALUES (1, 1.5);\n" +
+                "INSERT INTO prices (id, v) VALUES (2, 2.25);\n" +
+                "INSERT INTO prices (id, v) VALUES (3, 1.5);";
+
+        try (JdbcMigrationSession session = manager.openSession()) {
+            session.executeMigration(info, migration("2020-1-1-10.00-prices.sql", sql));
+        }
+
+        Assertions.assertEquals(3, count(source, "SELECT COUNT(*) FROM prices WHERE typeof(v) = 'real'"));
+        Assertions.assertEquals(2, count(source, "SELECT COUNT(*) FROM prices WHERE v = 1.5"));
+    }
+
+    private static Migration migration(String name, String sql) {
+        return new Migration(MigrationNames.parseDate(name), name, () -> new ByteArrayInputStream(sql.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static long count(SQLiteDataSource source, String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery(sql)) {
+            set.next();
+            return set.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.util.MigrationNames;
+import nl.martenm.migrationm.util.ProgramInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+public class SQLiteCheckpointTest {
+
+    ProgramInfo info = new ProgramInfo("test-program", "1.0.0", Logger.getAnonymousLogger());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testFailedImplicitCommit() throws Exception {
+        SQLiteDataSource source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+
+        // Behaves like MySQL: CREATE commits the open transaction before it is executed.
+        SQLiteDatabaseManager manager = new SQLiteDatabaseManager(source) {
+            @Override
+            protected JdbcMigrationSession createSession(Connection connection) {
+                return new SQLiteMigrationSession(this, connection) {
+                    @Override
+                    protected boolean implicitCommits() {
+                        return true;
+                    }
+
+                    @Override
+                    protected boolean commitsImplicitly(String sql) {
+                        return sql.trim().toUpperCase(Locale.ROOT).startsWith("CREATE");
+                    }
+                };
+            }
+        };
+        manager.setup();
+        execute(source, "CREATE TABLE log (id INTEGER)");
+        execute(source, "CREATE TABLE items (id INTEGER)");
+
+        Migration migration = migration("2020-1-1-10.00-items.sql",
+                "INSERT INTO log (id) VALUES (1);\nINSERT INTO log (id) VALUES (2);\nCREATE TABLE items (id INTEGER);\nINSERT INTO log (id) VALUES (3);");
+
+        // The CREATE fails, the INSERTs before it have been committed with their checkpoint.
+        try (JdbcMigrationSession session = manager.openSession()) {
+            Assertions.assertThrows(MigrationException.class, () -> session.executeMigration(info, migration));
+        }
+        Assertions.assertEquals(2, count(source, "SELECT COUNT(*) FROM log"));
+        Assertions.assertEquals(2, count(source, "SELECT position FROM migrations_checkpoints"));
+
+        // The next run resumes at the CREATE, the INSERTs are not executed again.
+        execute(source, "DROP TABLE items");
+        try (JdbcMigrationSession session = manager.openSession()) {
+            session.executeMigration(info, migration);
+        }
+        Assertions.assertEquals(3, count(source, "SELECT COUNT(*) FROM log"));
+        Assertions.assertEquals(0, count(source, "SELECT COUNT(*) FROM migrations_checkpoints"));
+    }
+
+    private static Migration migration(String name, String sql) {
+        return new Migration(MigrationNames.parseDate(name), name, () -> new ByteArrayInputStream(sql.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void execute(SQLiteDataSource source, String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static long count(SQLiteDataSource source, String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery(sql)) {
+            set.next();
+            return set.getLong(1);
+        }
+    }
+}
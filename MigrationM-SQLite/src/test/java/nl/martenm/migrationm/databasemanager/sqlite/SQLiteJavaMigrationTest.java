@@ -0,0 +1,103 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.MigrationM;
+import nl.martenm.migrationm.api.JavaMigration;
+import nl.martenm.migrationm.api.MigrationContext;
+import nl.martenm.migrationm.util.ProgramInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class SQLiteJavaMigrationTest {
+
+    Logger logger = Logger.getAnonymousLogger();
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Converts the prices to cents, the first run fails in the second chunk.
+     */
+    private static class BackfillCents extends JavaMigration {
+
+        private final List<Long> chunks = new ArrayList<>();
+        private boolean fail = true;
+
+        BackfillCents() {
+            super("2020-1-2-10.00-backfill_cents");
+        }
+
+        @Override
+        public void migrate(MigrationContext context) throws Exception {
+            context.backfill("items", "id")
+                    .chunkSize(1000)
+                    .rowsPerSecond(10000)
+                    .run((connection, from, to) -> {
+                        chunks.add(from);
+                        try (Statement statement = connection.createStatement()) {
+                            statement.executeUpdate("UPDATE items SET cents = price * 100 WHERE id BETWEEN " + from + " AND " + to);
+                        }
+                        if (fail && from > 1) {
+                            fail = false;
+                            throw new SQLException("Connection lost");
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void testBackfill() throws Exception {
+        SQLiteDataSource source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+
+        StringBuilder sql = new StringBuilder("CREATE TABLE items (id INTEGER PRIMARY KEY, price INTEGER NOT NULL, cents INTEGER);\n");
+        for (int i = 1; i <= 2500; i++) {
+            sql.append("INSERT INTO items (id, price) VALUES (").append(i).append(", ").append(i % 10).append(");\n");
+        }
+
+        BackfillCents backfill = new BackfillCents();
+        MigrationM migrationM = new MigrationM(new ProgramInfo("test-program", "1.0.0", logger), new SQLiteDatabaseManager(source));
+        migrationM.addMigration(backfill);
+        migrationM.addMigration("2020-1-1-10.00-items.sql", () -> new ByteArrayInputStream(sql.toString().getBytes(StandardCharsets.UTF_8)));
+
+        // The first chunk has been committed before the second one failed.
+        Assertions.assertFalse(migrationM.migrate());
+        Assertions.assertEquals(1000, count(source, "SELECT COUNT(*) FROM items WHERE cents IS NOT NULL"));
+        Assertions.assertEquals(1000, count(source, "SELECT position FROM migrations_checkpoints"));
+
+        long start = System.nanoTime();
+        Assertions.assertTrue(migrationM.migrate());
+        Assertions.assertTrue(System.nanoTime() - start >= 100_000_000, "The rows per second should be limited");
+
+        Assertions.assertEquals(1, backfill.chunks.get(0).intValue());
+        Assertions.assertEquals(1001, backfill.chunks.get(1).intValue());
+        Assertions.assertEquals(1001, backfill.chunks.get(2).intValue());
+        Assertions.assertEquals(2001, backfill.chunks.get(3).intValue());
+        Assertions.assertEquals(4, backfill.chunks.size());
+
+        Assertions.assertEquals(0, count(source, "SELECT COUNT(*) FROM items WHERE cents IS NULL OR cents != price * 100"));
+        Assertions.assertEquals(0, count(source, "SELECT COUNT(*) FROM migrations_checkpoints"));
+        Assertions.assertEquals(1500, count(source, "SELECT row_count FROM migrations_history WHERE name = '2020-1-2-10.00-backfill_cents'"));
+    }
+
+    private static long count(SQLiteDataSource source, String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery(sql)) {
+            set.next();
+            return set.getLong(1);
+        }
+    }
+}
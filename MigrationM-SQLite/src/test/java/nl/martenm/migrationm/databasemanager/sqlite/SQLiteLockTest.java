@@ -0,0 +1,170 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.MigrationM;
+import nl.martenm.migrationm.api.MigrationLock;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.util.ProgramInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+public class SQLiteLockTest {
+
+    Logger logger = Logger.getAnonymousLogger();
+
+    @TempDir
+    Path directory;
+
+    private SQLiteDataSource dataSource() {
+        SQLiteDataSource source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+        source.setBusyTimeout(10000);
+        return source;
+    }
+
+    private MigrationM migrationM(SQLiteDatabaseManager manager) {
+        MigrationM migrationM = new MigrationM(new ProgramInfo("test-program", "1.0.0", logger), manager);
+        // Neither migration can be executed twice.
+        migrationM.addMigration("2020-1-1-10.00.sql", () -> stream("CREATE TABLE items (id INTEGER PRIMARY KEY);"));
+        migrationM.addMigration("2020-1-2-10.00.sql", () -> stream("INSERT INTO items (id) VALUES (1);"));
+        return migrationM;
+    }
+
+    private static ByteArrayInputStream stream(String sql) {
+        return new ByteArrayInputStream(sql.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testOneNodeMigrates() throws Exception {
+        int nodes = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(nodes);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            SQLiteDatabaseManager manager = new SQLiteDatabaseManager(dataSource());
+            manager.setNode("node-" + i);
+            MigrationM migrationM = migrationM(manager);
+
+            results.add(executor.submit(() -> {
+                start.await();
+                return migrationM.migrate();
+            }));
+        }
+
+        start.countDown();
+        for (Future<Boolean> result : results) {
+            Assertions.assertTrue(result.get(1, TimeUnit.MINUTES));
+        }
+        executor.shutdown();
+
+        try (Connection connection = dataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(1, count(statement, "SELECT COUNT(*) FROM items"));
+            Assertions.assertEquals(2, count(statement, "SELECT COUNT(*) FROM migrations_history"));
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        SQLiteDatabaseManager manager = new SQLiteDatabaseManager(dataSource());
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+        try (MigrationLock lock = manager.acquireLock(info, Duration.ZERO)) {
+            Assertions.assertFalse(lock.isContended());
+            Assertions.assertThrows(MigrationException.class, () -> manager.acquireLock(info, Duration.ofMillis(300)));
+        }
+
+        // Released locks can be acquired again without waiting.
+        try (MigrationLock lock = manager.acquireLock(info, Duration.ZERO)) {
+            Assertions.assertFalse(lock.isContended());
+        }
+    }
+
+    @Test
+    public void testLockFile() throws Exception {
+        SQLiteDatabaseManager manager = new SQLiteDatabaseManager(dataSource());
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+        // The lock is held next to the database, a long migration transaction can't make it expire.
+        try (MigrationLock lock = manager.acquireLock(info, Duration.ZERO)) {
+            Assertions.assertTrue(Files.exists(directory.resolve("test.db-migrations_lock")));
+            Assertions.assertFalse(lock.isContended());
+        }
+
+        Assertions.assertEquals(directory.resolve("test.db").toAbsolutePath(),
+                SQLiteFileLock.databaseFile("jdbc:sqlite:file:" + directory.resolve("test.db") + "?mode=rwc"));
+        Assertions.assertNull(SQLiteFileLock.databaseFile("jdbc:sqlite::memory:"));
+        Assertions.assertNull(SQLiteFileLock.databaseFile("jdbc:sqlite:file:test?mode=memory&cache=shared"));
+    }
+
+    @Test
+    public void testContended() throws Exception {
+        SQLiteDatabaseManager manager = new SQLiteDatabaseManager(dataSource());
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+        MigrationLock first = manager.acquireLock(info, Duration.ZERO);
+        new Thread(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException ex) {
+                ex.printStackTrace();
+            }
+            first.close();
+        }).start();
+
+        try (MigrationLock lock = manager.acquireLock(info, Duration.ofSeconds(10))) {
+            Assertions.assertTrue(lock.isContended());
+        }
+    }
+
+    @Test
+    public void testFollowerSkipsMigrations() throws Exception {
+        SQLiteDatabaseManager manager = new SQLiteDatabaseManager(dataSource());
+        ProgramInfo info = new ProgramInfo("test-program", "1.0.0", logger);
+
+        MigrationM follower = migrationM(new SQLiteDatabaseManager(dataSource()));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> result;
+        try (MigrationLock lock = manager.acquireLock(info, Duration.ZERO)) {
+            result = executor.submit(follower::migrate);
+
+            // The leader migrates while the follower waits.
+            Assertions.assertTrue(migrationM(new SQLiteDatabaseManager(dataSource()) {
+                @Override
+                public MigrationLock acquireLock(ProgramInfo info, Duration timeout) {
+                    return MigrationLock.NONE;
+                }
+            }).migrate());
+        }
+
+        Assertions.assertTrue(result.get(1, TimeUnit.MINUTES));
+        executor.shutdown();
+        try (Connection connection = dataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(1, count(statement, "SELECT COUNT(*) FROM items"));
+        }
+    }
+
+    private static long count(Statement statement, String sql) throws SQLException {
+        try (ResultSet set = statement.executeQuery(sql)) {
+            set.next();
+            return set.getLong(1);
+        }
+    }
+}
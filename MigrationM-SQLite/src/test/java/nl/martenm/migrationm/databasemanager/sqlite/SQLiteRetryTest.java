@@ -0,0 +1,130 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.api.Migration;
+import nl.martenm.migrationm.api.exceptions.MigrationException;
+import nl.martenm.migrationm.databasemanager.JdbcMigrationSession;
+import nl.martenm.migrationm.databasemanager.RetryPolicy;
+import nl.martenm.migrationm.util.MigrationNames;
+import nl.martenm.migrationm.util.ProgramInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.logging.Logger;
+
+public class SQLiteRetryTest {
+
+    ProgramInfo info = new ProgramInfo("test-program", "1.0.0", Logger.getAnonymousLogger());
+
+    @TempDir
+    Path directory;
+
+    private SQLiteDataSource source;
+    private SQLiteDatabaseManager manager;
+    private Connection blocker;
+    private Thread release;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+        source.setBusyTimeout(50);
+
+        manager = new SQLiteDatabaseManager(source);
+        manager.getRetryPolicy().maxRetries(20).backoff(Duration.ofMillis(50), Duration.ofMillis(100));
+        manager.setup();
+        execute("CREATE TABLE items (id INTEGER PRIMARY KEY)");
+        execute("INSERT INTO items (id) VALUES (1)");
+
+        // Another connection holds the write lock for a while, like a server that takes traffic.
+        blocker = source.getConnection();
+        try (Statement statement = blocker.createStatement()) {
+            statement.execute("BEGIN IMMEDIATE");
+        }
+        release = new Thread(() -> {
+            try {
+                Thread.sleep(400);
+                try (Statement statement = blocker.createStatement()) {
+                    statement.execute("COMMIT");
+                }
+            } catch (InterruptedException | SQLException ex) {
+                ex.printStackTrace();
+            }
+        });
+        release.start();
+    }
+
+    @AfterEach
+    public void close() throws SQLException, InterruptedException {
+        release.join();
+        blocker.close();
+    }
+
+    @Test
+    public void testStatementRetry() throws Exception {
+        // DDL is executed on its own, it can be executed again without the rest of the migration.
+        try (JdbcMigrationSession session = manager.openSession()) {
+            session.executeMigration(info, migration("2020-1-1-10.00-update.sql", "CREATE TABLE other (id INTEGER);\nUPDATE items SET id = 2 WHERE id = 1;"));
+        }
+
+        RetryPolicy policy = manager.getRetryPolicy();
+        Assertions.assertTrue(policy.getStatementRetries() > 0);
+        Assertions.assertEquals(0, policy.getTransactionRetries());
+        Assertions.assertEquals(1, count("SELECT COUNT(*) FROM items WHERE id = 2"));
+        Assertions.assertEquals(1, count("SELECT COUNT(*) FROM migrations_history"));
+    }
+
+    @Test
+    public void testTransactionRetry() throws Exception {
+        // A failed batch can't be executed again on its own, the whole migration is executed again.
+        try (JdbcMigrationSession session = manager.openSession()) {
+            session.executeMigration(info, migration("2020-1-1-10.00-insert.sql", "INSERT INTO items (id) VALUES (2);\nINSERT INTO items (id) VALUES (3);"));
+        }
+
+        RetryPolicy policy = manager.getRetryPolicy();
+        Assertions.assertTrue(policy.getTransactionRetries() > 0);
+        Assertions.assertEquals(3, count("SELECT COUNT(*) FROM items"));
+    }
+
+    @Test
+    public void testNoRetry() throws Exception {
+        manager.setRetryPolicy(RetryPolicy.none());
+
+        try (JdbcMigrationSession session = manager.openSession()) {
+            Assertions.assertThrows(MigrationException.class, () ->
+                    session.executeMigration(info, migration("2020-1-1-10.00-update.sql", "UPDATE items SET id = 2 WHERE id = 1;")));
+        }
+        Assertions.assertEquals(0, manager.getRetryPolicy().getStatementRetries());
+    }
+
+    private static Migration migration(String name, String sql) {
+        return new Migration(MigrationNames.parseDate(name), name, () -> new ByteArrayInputStream(sql.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery(sql)) {
+            set.next();
+            return set.getLong(1);
+        }
+    }
+}
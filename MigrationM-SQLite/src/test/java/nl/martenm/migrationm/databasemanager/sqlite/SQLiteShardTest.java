@@ -0,0 +1,102 @@
+package nl.martenm.migrationm.databasemanager.sqlite;
+
+import nl.martenm.migrationm.MigrationM;
+import nl.martenm.migrationm.ShardedMigrationM;
+import nl.martenm.migrationm.api.MigrationResult;
+import nl.martenm.migrationm.util.ProgramInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class SQLiteShardTest {
+
+    Logger logger = Logger.getAnonymousLogger();
+
+    @TempDir
+    Path directory;
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private MigrationM template() {
+        StringBuilder sql = new StringBuilder("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT NOT NULL);\n");
+        for (int i = 1; i <= 100; i++) {
+            sql.append("INSERT INTO items (id, name) VALUES (").append(i).append(", 'item ").append(i).append("');\n");
+        }
+
+        MigrationM template = new MigrationM(new ProgramInfo("test-program", "1.0.0", logger), null);
+        template.addMigration("2020-1-1-10.00-items.sql", () -> {
+            reads.incrementAndGet();
+            return new ByteArrayInputStream(sql.toString().getBytes(StandardCharsets.UTF_8));
+        });
+        return template;
+    }
+
+    private SQLiteDataSource source(String name) {
+        SQLiteDataSource source = new SQLiteDataSource();
+        source.setUrl("jdbc:sqlite:" + directory.resolve(name + ".db"));
+        return source;
+    }
+
+    @Test
+    public void testShards() throws SQLException {
+        ShardedMigrationM sharded = new ShardedMigrationM(template(), 3);
+        sharded.setVirtualThreads(true);
+        for (int i = 0; i < 6; i++) {
+            sharded.addShard("tenant-" + i, new SQLiteDatabaseManager(source("tenant-" + i)));
+        }
+
+        Map<String, MigrationResult> results = sharded.migrate();
+
+        Assertions.assertEquals(6, results.size());
+        for (int i = 0; i < 6; i++) {
+            Assertions.assertTrue(results.get("tenant-" + i).isSuccessful());
+            Assertions.assertEquals(100, count(source("tenant-" + i), "SELECT COUNT(*) FROM items"));
+        }
+
+        // The file has been read and split once for all shards.
+        Assertions.assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void testFailFast() throws SQLException {
+        // The second shard already has a table with the same name.
+        try (Connection connection = source("tenant-1").getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE items (id INTEGER PRIMARY KEY)");
+        }
+
+        ShardedMigrationM sharded = new ShardedMigrationM(template(), 1);
+        sharded.setFailFast(true);
+        for (int i = 0; i < 4; i++) {
+            sharded.addShard("tenant-" + i, new SQLiteDatabaseManager(source("tenant-" + i)));
+        }
+
+        Map<String, MigrationResult> results = sharded.migrate();
+
+        Assertions.assertTrue(results.get("tenant-0").isSuccessful());
+        Assertions.assertFalse(results.get("tenant-1").isSuccessful());
+        Assertions.assertTrue(results.get("tenant-3").getFailure().getMessage().contains("Skipped"));
+        Assertions.assertFalse(directory.resolve("tenant-3.db").toFile().exists());
+    }
+
+    private long count(SQLiteDataSource source, String sql) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery(sql)) {
+            set.next();
+            return set.getLong(1);
+        }
+    }
+}